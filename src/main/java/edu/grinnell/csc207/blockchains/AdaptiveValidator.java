@@ -0,0 +1,319 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Validators whose difficulty is retuned every few blocks so that blocks
+ * get added to the chain at a steady rate. Every <code>interval</code>
+ * blocks, we compare how long those blocks took to arrive with how long
+ * they should have taken and scale the target of a
+ * <code>DifficultyValidator</code> by the ratio (by no more than a factor
+ * of four either way). Since targets are 256-bit numbers, the difficulty
+ * can change by much less than a byte, or even a bit, of leading zeros.
+ *
+ * We remember the target for every block, so that a chain can check old
+ * blocks against the difficulty that was in force when they were mined
+ * (see <code>forBlock</code>).
+ *
+ * An adaptive validator learns when blocks were mined from the chain
+ * that it validates, so it should only be used with one chain. Each
+ * block records the time at which it was mined, and the hash covers
+ * that time, so when a chain is reopened from a store, a new validator
+ * works out the same targets from the blocks and no one can change a
+ * time without mining the block again. The chain only accepts a block
+ * whose time is no earlier than that of the block before it and within
+ * <code>MAX_DRIFT</code> of our clock. Our clock counts nanoseconds
+ * since the epoch, but it advances with <code>System.nanoTime</code>,
+ * so changes to the wall clock while we run don't change how long
+ * blocks seem to take.
+ *
+ * @author Your Name Here
+ */
+public class AdaptiveValidator implements HashValidator {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most we change the target at once.
+   */
+  static final int MAX_FACTOR = 4;
+
+  /**
+   * The largest possible target.
+   */
+  static final BigInteger MAX_TARGET =
+      BigInteger.ONE.shiftLeft(8 * DifficultyValidator.HASH_BYTES)
+          .subtract(BigInteger.ONE);
+
+  /**
+   * The time we record for blocks that arrived before we were watching
+   * (e.g., blocks of a chain loaded from a store).
+   */
+  static final long UNKNOWN = Block.NO_TIME;
+
+  /**
+   * How far the time of a new block may be from our clock, in
+   * nanoseconds.
+   */
+  static final long MAX_DRIFT = Duration.ofMinutes(2).toNanos();
+
+  /**
+   * The value of <code>System.nanoTime</code> when we read the wall
+   * clock.
+   */
+  static final long NANO_BASE = System.nanoTime();
+
+  /**
+   * The wall clock, in nanoseconds since the epoch, when we first looked.
+   */
+  static final long EPOCH_BASE =
+      ChronoUnit.NANOS.between(Instant.EPOCH, Instant.now());
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of blocks between retargets.
+   */
+  int interval;
+
+  /**
+   * How long a block should take, in nanoseconds.
+   */
+  long blockNanos;
+
+  /**
+   * Where we get the time.
+   */
+  LongSupplier clock;
+
+  /**
+   * The first block for which each target is in force, in increasing
+   * order.
+   */
+  ArrayList<Integer> starts = new ArrayList<Integer>();
+
+  /**
+   * The targets, in the same order as the starts.
+   */
+  ArrayList<DifficultyValidator> targets = new ArrayList<DifficultyValidator>();
+
+  /**
+   * The times of the blocks that start intervals (blocks 0,
+   * <code>interval</code>, <code>2*interval</code>, and so on), which are
+   * the only ones that retargets look at.
+   */
+  ArrayList<Long> times = new ArrayList<Long>();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new adaptive validator.
+   *
+   * @param initial
+   *   The validator to use for the first blocks.
+   * @param interval
+   *   The number of blocks between retargets.
+   * @param blockTime
+   *   How long each block should take.
+   *
+   * @throws IllegalArgumentException
+   *   If the interval or block time is not positive.
+   */
+  public AdaptiveValidator(DifficultyValidator initial, int interval,
+      Duration blockTime) {
+    this(initial, interval, blockTime, AdaptiveValidator::now);
+  } // AdaptiveValidator(DifficultyValidator, int, Duration)
+
+  /**
+   * Create a new adaptive validator with a particular clock.
+   *
+   * @param initial
+   *   The validator to use for the first blocks.
+   * @param interval
+   *   The number of blocks between retargets.
+   * @param blockTime
+   *   How long each block should take.
+   * @param clock
+   *   Where we get the time, in nanoseconds since the epoch.
+   *
+   * @throws IllegalArgumentException
+   *   If the interval or block time is not positive.
+   */
+  AdaptiveValidator(DifficultyValidator initial, int interval,
+      Duration blockTime, LongSupplier clock) {
+    if ((interval < 1) || blockTime.isNegative() || blockTime.isZero()) {
+      throw new IllegalArgumentException(
+          "Interval and block time must be positive");
+    } // if
+    this.interval = interval;
+    this.blockNanos = blockTime.toNanos();
+    this.clock = clock;
+    this.starts.add(0);
+    this.targets.add(initial);
+  } // AdaptiveValidator(DifficultyValidator, int, Duration, LongSupplier)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get the current time. We read the wall clock once and then count
+   * with the monotonic clock, so the time never goes backwards while
+   * we run.
+   *
+   * @return the number of nanoseconds since the epoch.
+   */
+  static long now() {
+    return EPOCH_BASE + (System.nanoTime() - NANO_BASE);
+  } // now()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if a hash meets the current target, which is the one for
+   * the next block.
+   *
+   * @param hash
+   *   The hash we're checking.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  public boolean isValid(Hash hash) {
+    return this.current().isValid(hash);
+  } // isValid(Hash)
+
+  /**
+   * Get the validator that was (or will be) in force for a block.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the validator for that block.
+   */
+  public DifficultyValidator forBlock(int num) {
+    int lo = 0;
+    int hi = this.starts.size() - 1;
+    // Find the last start that is at most num.
+    while (lo < hi) {
+      int mid = (lo + hi + 1) / 2;
+      if (this.starts.get(mid) <= num) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      } // if/else
+    } // while
+    return this.targets.get(lo);
+  } // forBlock(int)
+
+  /**
+   * Get the current validator.
+   *
+   * @return the validator for the next block.
+   */
+  public DifficultyValidator current() {
+    return this.targets.get(this.targets.size() - 1);
+  } // current()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the time at which a block is mined now.
+   *
+   * @return the time, in nanoseconds since the epoch.
+   */
+  long time() {
+    return this.clock.getAsLong();
+  } // time()
+
+  /**
+   * Note that a block has been added to the chain, retargeting if it
+   * ends an interval.
+   *
+   * @param num
+   *   The number of the block.
+   * @param time
+   *   When the block was mined (or UNKNOWN).
+   */
+  void appended(int num, long time) {
+    if (num % this.interval != 0) {
+      return;
+    } // if
+    int boundary = num / this.interval;
+    while (this.times.size() > boundary) {
+      this.times.remove(this.times.size() - 1);
+    } // while
+    while (this.times.size() < boundary) {
+      this.times.add(UNKNOWN);
+    } // while
+    this.times.add(time);
+    if ((boundary > 0) && (time != UNKNOWN)
+        && (this.times.get(boundary - 1) != UNKNOWN)) {
+      long elapsed = time - this.times.get(boundary - 1);
+      this.starts.add(num + 1);
+      this.targets.add(retarget(this.forBlock(num),
+          Math.max(elapsed, 1), this.interval * this.blockNanos));
+    } // if
+  } // appended(int, long)
+
+  /**
+   * Note that a block has been removed from the chain, forgetting any
+   * retargets that it caused.
+   *
+   * @param num
+   *   The number of the block.
+   */
+  void removed(int num) {
+    int boundaries = (num + this.interval - 1) / this.interval;
+    while (this.times.size() > boundaries) {
+      this.times.remove(this.times.size() - 1);
+    } // while
+    while (this.starts.get(this.starts.size() - 1) > num) {
+      this.starts.remove(this.starts.size() - 1);
+      this.targets.remove(this.targets.size() - 1);
+    } // while
+  } // removed(int)
+
+  /**
+   * Scale a target by how long blocks actually took compared to how
+   * long they should have taken.
+   *
+   * @param old
+   *   The old validator.
+   * @param actual
+   *   How long the blocks took.
+   * @param expected
+   *   How long the blocks should have taken.
+   *
+   * @return the new validator.
+   */
+  static DifficultyValidator retarget(DifficultyValidator old, long actual,
+      long expected) {
+    BigInteger target = new BigInteger(1, old.getTarget().data);
+    BigInteger scaled = target.multiply(BigInteger.valueOf(actual))
+        .divide(BigInteger.valueOf(expected));
+    BigInteger lo = target.divide(BigInteger.valueOf(MAX_FACTOR));
+    BigInteger hi = target.multiply(BigInteger.valueOf(MAX_FACTOR));
+    scaled = scaled.max(lo).min(hi).min(MAX_TARGET).max(BigInteger.ONE);
+
+    byte[] bytes = new byte[DifficultyValidator.HASH_BYTES];
+    byte[] magnitude = scaled.toByteArray();
+    int len = Math.min(magnitude.length, bytes.length);
+    System.arraycopy(magnitude, magnitude.length - len, bytes,
+        bytes.length - len, len);
+    return new DifficultyValidator(new Hash(bytes));
+  } // retarget(DifficultyValidator, long, long)
+} // class AdaptiveValidator
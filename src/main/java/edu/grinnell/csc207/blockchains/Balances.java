@@ -0,0 +1,64 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+
+/**
+ * Balances of users, indexed by their ids in the
+ * <code>UserDictionary</code>. Since ids are dense, we keep the balances
+ * in an array that grows as needed.
+ *
+ * @author Your Name Here
+ */
+class Balances {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The balances, indexed by id.
+   */
+  int[] amounts = new int[16];
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the balance of a user.
+   *
+   * @param id
+   *   The id of the user.
+   *
+   * @return the balance (0 if the user has never been seen).
+   */
+  int get(int id) {
+    return (id < this.amounts.length) ? this.amounts[id] : 0;
+  } // get(int)
+
+  /**
+   * Make a copy of these balances.
+   *
+   * @return the copy.
+   */
+  Balances copy() {
+    Balances result = new Balances();
+    result.amounts = this.amounts.clone();
+    return result;
+  } // copy()
+
+  /**
+   * Change the balance of a user.
+   *
+   * @param id
+   *   The id of the user.
+   * @param delta
+   *   The amount to add to the balance (negative to subtract).
+   */
+  void add(int id, int delta) {
+    if (id >= this.amounts.length) {
+      this.amounts = Arrays.copyOf(this.amounts,
+          Math.max(id + 1, 2 * this.amounts.length));
+    } // if
+    this.amounts[id] += delta;
+  } // add(int, int)
+} // class Balances
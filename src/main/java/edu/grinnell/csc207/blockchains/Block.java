@@ -1,26 +1,112 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * Blocks to be stored in blockchains.
+ * Blocks to be stored in blockchains. A block holds either a single
+ * transaction or a batch of transactions. The hash of a batched block
+ * covers the Merkle root of the batch in place of the transaction, so
+ * one nonce covers every transaction in the batch.
+ *
+ * Blocks also have a canonical binary encoding for storage, which is
+ * separate from the bytes we hash: the number (an int), a kind byte
+ * (<code>SINGLE</code> or <code>BATCH</code>), for a batch the number of
+ * transactions (an int), the encoded transactions, the length of the
+ * previous hash (an int), the previous hash, the nonce (a long), and
+ * the time (a long).
+ *
+ * The time is when the block was mined, which chains with adaptive
+ * validators require so that they can work out the difficulty for each
+ * block from the blocks themselves. A block that has a time hashes it
+ * after the rest of the prefix, so it is covered by the proof of work;
+ * a block without one (<code>NO_TIME</code>) hashes just as it always
+ * has.
  *
  * @author Your Name Here
  * @author Samuel A. Rebelsky
  */
 public class Block {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The name of the hash algorithm we use.
+   */
+  static final String ALGORITHM = "sha-256";
+
+  /**
+   * The kind byte of an encoded block that holds a single transaction.
+   */
+  static final byte SINGLE = 0;
+
+  /**
+   * The kind byte of an encoded block that holds a batch.
+   */
+  static final byte BATCH = 1;
+
+  /**
+   * The time of a block that no one has recorded a time for.
+   */
+  public static final long NO_TIME = Long.MIN_VALUE;
+
+  // +---------------+-----------------------------------------------
+  // | Static fields |
+  // +---------------+
+
+  /**
+   * One message digest per thread, since digests are not thread safe
+   * and are expensive to look up.
+   */
+  static final ThreadLocal<MessageDigest> DIGESTS =
+      ThreadLocal.withInitial(Block::newDigest);
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The transaction.
+   * The number of the block.
+   */
+  int num;
+
+  /**
+   * The transaction, or null if the block holds a batch.
    */
   Transaction transaction;
 
+  /**
+   * The transactions, or null if the block holds a single transaction.
+   */
+  Transaction[] batch;
+
+  /**
+   * The hash of the previous block.
+   */
+  Hash prevHash;
+
   /**
    * The nonce.
    */
   long nonce;
 
+  /**
+   * The hash of this block.
+   */
+  Hash hash;
+
+  /**
+   * When the block was mined, in nanoseconds since the epoch (or
+   * NO_TIME).
+   */
+  long time = NO_TIME;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -28,7 +114,8 @@ public class Block {
   /**
    * Create a new block from the specified block number, transaction, and
    * previous hash, mining to choose a nonce that meets the requirements
-   * of the validator.
+   * of the validator. The nonces are searched in order, so the nonce
+   * chosen is the smallest non-negative one that works.
    *
    * @param num
    *   The number of the block.
@@ -41,9 +128,38 @@ public class Block {
    */
   public Block(int num, Transaction transaction, Hash prevHash,
       HashValidator check) {
-    // STUB
+    this(num, transaction, prevHash, NO_TIME, check);
   } // Block(int, Transaction, Hash, HashValidator)
 
+  /**
+   * Create a new block that was mined at a particular time, choosing the
+   * smallest non-negative nonce that meets the requirements of the
+   * validator.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block was mined, in nanoseconds since the epoch (or
+   *   NO_TIME).
+   * @param check
+   *   The validator used to check the block.
+   */
+  public Block(int num, Transaction transaction, Hash prevHash, long time,
+      HashValidator check) {
+    this.num = num;
+    this.transaction = transaction;
+    this.prevHash = prevHash;
+    this.time = time;
+    NonceHasher hasher = new NonceHasher(this.prefixBytes());
+    this.nonce = hasher.search(0, Long.MAX_VALUE, check,
+        new AtomicLong(Long.MAX_VALUE));
+    this.hash = new Hash(hasher.hash(this.nonce));
+  } // Block(int, Transaction, Hash, long, HashValidator)
+
   /**
    * Create a new block, computing the hash for the block.
    *
@@ -57,21 +173,587 @@ public class Block {
    *   The nonce of the block.
    */
   public Block(int num, Transaction transaction, Hash prevHash, long nonce) {
-    // STUB
+    this(num, transaction, prevHash, NO_TIME, nonce);
   } // Block(int, Transaction, Hash, long)
 
+  /**
+   * Create a new block that was mined at a particular time, computing
+   * the hash for the block.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block was mined, in nanoseconds since the epoch (or
+   *   NO_TIME).
+   * @param nonce
+   *   The nonce of the block.
+   */
+  public Block(int num, Transaction transaction, Hash prevHash, long time,
+      long nonce) {
+    this.num = num;
+    this.transaction = transaction;
+    this.prevHash = prevHash;
+    this.time = time;
+    this.nonce = nonce;
+    this.computeHash();
+  } // Block(int, Transaction, Hash, long, long)
+
+  /**
+   * Create a new block from the specified block number, batch of
+   * transactions, and previous hash, mining to choose the smallest
+   * non-negative nonce that meets the requirements of the validator.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transactions
+   *   The transactions for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @throws IllegalArgumentException
+   *   If there are no transactions.
+   */
+  public Block(int num, Transaction[] transactions, Hash prevHash,
+      HashValidator check) {
+    this(num, transactions, prevHash, NO_TIME, check);
+  } // Block(int, Transaction[], Hash, HashValidator)
+
+  /**
+   * Create a new block that holds a batch of transactions and was mined
+   * at a particular time, choosing the smallest non-negative nonce that
+   * meets the requirements of the validator.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transactions
+   *   The transactions for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block was mined, in nanoseconds since the epoch (or
+   *   NO_TIME).
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @throws IllegalArgumentException
+   *   If there are no transactions.
+   */
+  public Block(int num, Transaction[] transactions, Hash prevHash, long time,
+      HashValidator check) {
+    this.num = num;
+    this.batch = batchOf(transactions);
+    this.prevHash = prevHash;
+    this.time = time;
+    NonceHasher hasher = new NonceHasher(this.prefixBytes());
+    this.nonce = hasher.search(0, Long.MAX_VALUE, check,
+        new AtomicLong(Long.MAX_VALUE));
+    this.hash = new Hash(hasher.hash(this.nonce));
+  } // Block(int, Transaction[], Hash, long, HashValidator)
+
+  /**
+   * Create a new block that holds a batch of transactions, computing the
+   * hash for the block.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transactions
+   *   The transactions for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param nonce
+   *   The nonce of the block.
+   *
+   * @throws IllegalArgumentException
+   *   If there are no transactions.
+   */
+  public Block(int num, Transaction[] transactions, Hash prevHash,
+      long nonce) {
+    this(num, transactions, prevHash, NO_TIME, nonce);
+  } // Block(int, Transaction[], Hash, long)
+
+  /**
+   * Create a new block that holds a batch of transactions and was mined
+   * at a particular time, computing the hash for the block.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transactions
+   *   The transactions for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block was mined, in nanoseconds since the epoch (or
+   *   NO_TIME).
+   * @param nonce
+   *   The nonce of the block.
+   *
+   * @throws IllegalArgumentException
+   *   If there are no transactions.
+   */
+  public Block(int num, Transaction[] transactions, Hash prevHash, long time,
+      long nonce) {
+    this.num = num;
+    this.batch = batchOf(transactions);
+    this.prevHash = prevHash;
+    this.time = time;
+    this.nonce = nonce;
+    this.computeHash();
+  } // Block(int, Transaction[], Hash, long, long)
+
+  /**
+   * Create a block from parts that we already know, including its hash,
+   * without computing anything. For stores that rebuild the blocks they
+   * hold.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block, or null for a batch.
+   * @param batch
+   *   The transactions for the block, or null for a single transaction.
+   *   We do not copy the batch.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block was mined (or NO_TIME).
+   * @param nonce
+   *   The nonce of the block.
+   * @param hash
+   *   The hash of the block.
+   */
+  Block(int num, Transaction transaction, Transaction[] batch, Hash prevHash,
+      long time, long nonce, Hash hash) {
+    this.num = num;
+    this.transaction = transaction;
+    this.batch = batch;
+    this.prevHash = prevHash;
+    this.time = time;
+    this.nonce = nonce;
+    this.hash = hash;
+  } // Block(int, Transaction, Transaction[], Hash, long, long, Hash)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Read a block in the canonical encoding from the current position of
+   * a buffer, advancing the position past it. We recompute the hash of
+   * the block, rather than trusting the buffer.
+   *
+   * @param buffer
+   *   The buffer to read from.
+   *
+   * @return the block.
+   *
+   * @throws IllegalArgumentException
+   *   If the buffer does not hold a complete block.
+   */
+  public static Block decode(ByteBuffer buffer) {
+    return decode(buffer, null);
+  } // decode(ByteBuffer)
+
+  /**
+   * Read a block in the canonical encoding, trusting a hash that we
+   * already know for it (e.g., from the previous hash of the next block)
+   * rather than recomputing it. <code>hashMatches</code> still tells us
+   * if the hash is wrong.
+   *
+   * @param buffer
+   *   The buffer to read from.
+   * @param hash
+   *   The hash of the block, or null to compute it.
+   *
+   * @return the block.
+   *
+   * @throws IllegalArgumentException
+   *   If the buffer does not hold a complete block.
+   */
+  static Block decode(ByteBuffer buffer, Hash hash) {
+    if (buffer.remaining() < Integer.BYTES + 1) {
+      throw new IllegalArgumentException("Truncated block");
+    } // if
+    int num = buffer.getInt();
+    byte kind = buffer.get();
+    Transaction transaction = null;
+    Transaction[] transactions = null;
+    if (kind == SINGLE) {
+      transaction = Transaction.decode(buffer);
+    } else if (kind == BATCH) {
+      if (buffer.remaining() < Integer.BYTES) {
+        throw new IllegalArgumentException("Truncated block");
+      } // if
+      int count = buffer.getInt();
+      // Each transaction takes at least three ints.
+      if ((count < 1) || (count > buffer.remaining() / (3 * Integer.BYTES))) {
+        throw new IllegalArgumentException("Invalid batch size (" + count
+            + ")");
+      } // if
+      transactions = new Transaction[count];
+      for (int i = 0; i < count; i++) {
+        transactions[i] = Transaction.decode(buffer);
+      } // for
+    } else {
+      throw new IllegalArgumentException("Unknown kind of block (" + kind
+          + ")");
+    } // if/else
+    if (buffer.remaining() < Integer.BYTES) {
+      throw new IllegalArgumentException("Truncated block");
+    } // if
+    int length = buffer.getInt();
+    if ((length < 0) || (length > buffer.remaining() - 2 * Long.BYTES)) {
+      throw new IllegalArgumentException("Invalid hash length (" + length
+          + ")");
+    } // if
+    Hash prevHash = Hash.read(buffer, length);
+    long nonce = buffer.getLong();
+    long time = buffer.getLong();
+    if (hash != null) {
+      return new Block(num, transaction, transactions, prevHash, time, nonce,
+          hash);
+    } else if (transactions == null) {
+      return new Block(num, transaction, prevHash, time, nonce);
+    } else {
+      return new Block(num, transactions, prevHash, time, nonce);
+    } // if/else
+  } // decode(ByteBuffer, Hash)
+
+  // +----------------+----------------------------------------------
+  // | Static helpers |
+  // +----------------+
+
+  /**
+   * Create a new message digest for our algorithm.
+   *
+   * @return the new digest.
+   */
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("Cannot load hash algorithm " + ALGORITHM);
+    } // try/catch
+  } // newDigest()
+
+  /**
+   * Get the bytes of the fixed prefix of a block (everything that we
+   * hash but the nonce).
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction in the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   *
+   * @return the bytes of the prefix.
+   */
+  static byte[] prefixBytes(int num, Transaction transaction, Hash prevHash) {
+    return prefixBytes(num, transaction, prevHash, NO_TIME);
+  } // prefixBytes(int, Transaction, Hash)
+
+  /**
+   * Get the bytes of the fixed prefix of a block that was mined at a
+   * particular time.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction in the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block was mined (or NO_TIME, in which case we leave the
+   *   time out).
+   *
+   * @return the bytes of the prefix.
+   */
+  static byte[] prefixBytes(int num, Transaction transaction, Hash prevHash,
+      long time) {
+    byte[] source = transaction.getSource().getBytes();
+    byte[] target = transaction.getTarget().getBytes();
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + source.length
+            + target.length + Integer.BYTES + prevHash.data.length
+            + timeBytes(time))
+        .putInt(num)
+        .put(source)
+        .put(target)
+        .putInt(transaction.getAmount())
+        .put(prevHash.data);
+    return putTime(buffer, time).array();
+  } // prefixBytes(int, Transaction, Hash, long)
+
+  /**
+   * Get the bytes of the fixed prefix of a batched block.
+   *
+   * @param num
+   *   The number of the block.
+   * @param root
+   *   The Merkle root of the transactions in the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block was mined (or NO_TIME, in which case we leave the
+   *   time out).
+   *
+   * @return the bytes of the prefix.
+   */
+  static byte[] prefixBytes(int num, Hash root, Hash prevHash, long time) {
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + root.data.length
+            + prevHash.data.length + timeBytes(time))
+        .putInt(num)
+        .put(root.data)
+        .put(prevHash.data);
+    return putTime(buffer, time).array();
+  } // prefixBytes(int, Hash, Hash, long)
+
+  /**
+   * Get the number of bytes that a time takes in a prefix.
+   *
+   * @param time
+   *   The time (or NO_TIME).
+   *
+   * @return the number of bytes.
+   */
+  static int timeBytes(long time) {
+    return (time == NO_TIME) ? 0 : Long.BYTES;
+  } // timeBytes(long)
+
+  /**
+   * Add a time to a prefix, unless there is no time.
+   *
+   * @param buffer
+   *   The buffer that holds the rest of the prefix.
+   * @param time
+   *   The time (or NO_TIME).
+   *
+   * @return the buffer.
+   */
+  static ByteBuffer putTime(ByteBuffer buffer, long time) {
+    return (time == NO_TIME) ? buffer : buffer.putLong(time);
+  } // putTime(ByteBuffer, long)
+
+  /**
+   * Copy a batch of transactions, making sure that it is not empty.
+   *
+   * @param transactions
+   *   The transactions.
+   *
+   * @return a copy of the transactions.
+   *
+   * @throws IllegalArgumentException
+   *   If there are no transactions.
+   */
+  static Transaction[] batchOf(Transaction[] transactions) {
+    if (transactions.length == 0) {
+      throw new IllegalArgumentException("A batch needs at least one "
+          + "transaction");
+    } // if
+    return transactions.clone();
+  } // batchOf(Transaction[])
+
+  /**
+   * Compute the hash of a block from its prefix and nonce.
+   *
+   * @param md
+   *   The message digest to use.
+   * @param prefix
+   *   The bytes of the prefix of the block.
+   * @param nonce
+   *   The nonce of the block.
+   *
+   * @return the bytes of the hash.
+   */
+  static byte[] computeHash(MessageDigest md, byte[] prefix, long nonce) {
+    md.reset();
+    md.update(prefix);
+    md.update(ByteBuffer.allocate(Long.BYTES).putLong(nonce).array());
+    return md.digest();
+  } // computeHash(MessageDigest, byte[], long)
+
+  /**
+   * Compute the hash of a block from its prefix and nonce, without going
+   * through a message digest.
+   *
+   * @param prefix
+   *   The bytes of the prefix of the block.
+   * @param nonce
+   *   The nonce of the block.
+   *
+   * @return the bytes of the hash.
+   */
+  static byte[] computeHash(byte[] prefix, long nonce) {
+    int length = prefix.length + Long.BYTES;
+    byte[] padded = new byte[Sha256.paddedLength(length)];
+    ByteBuffer.wrap(padded)
+        .put(prefix)
+        .putLong(nonce)
+        .put((byte) 0x80)
+        .putLong(padded.length - Long.BYTES, 8L * length);
+    return Sha256.hashPadded(padded);
+  } // computeHash(byte[], long)
+
+  /**
+   * Compute the hash of a block with the given contents.
+   *
+   * @param md
+   *   The message digest to use.
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction in the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param nonce
+   *   The nonce of the block.
+   *
+   * @return the bytes of the hash.
+   */
+  static byte[] computeHash(MessageDigest md, int num,
+      Transaction transaction, Hash prevHash, long nonce) {
+    return computeHash(md, prefixBytes(num, transaction, prevHash), nonce);
+  } // computeHash(MessageDigest, int, Transaction, Hash, long)
+
+  /**
+   * Compute the hash of a block with the given contents, without going
+   * through a message digest. Since we know the length of the block
+   * before we start, we lay out the block and its padding in one array
+   * and compress it directly. Gives the same hash as
+   * <code>computeHash(MessageDigest, ...)</code>.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction in the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param nonce
+   *   The nonce of the block.
+   *
+   * @return the bytes of the hash.
+   */
+  static byte[] computeHash(int num, Transaction transaction, Hash prevHash,
+      long nonce) {
+    return computeHash(num, transaction, prevHash, NO_TIME, nonce);
+  } // computeHash(int, Transaction, Hash, long)
+
+  /**
+   * Compute the hash of a block that was mined at a particular time,
+   * without going through a message digest.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction in the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block was mined (or NO_TIME).
+   * @param nonce
+   *   The nonce of the block.
+   *
+   * @return the bytes of the hash.
+   */
+  static byte[] computeHash(int num, Transaction transaction, Hash prevHash,
+      long time, long nonce) {
+    byte[] source = transaction.getSource().getBytes();
+    byte[] target = transaction.getTarget().getBytes();
+    int length = Integer.BYTES + source.length + target.length
+        + Integer.BYTES + prevHash.data.length + timeBytes(time) + Long.BYTES;
+    byte[] padded = new byte[Sha256.paddedLength(length)];
+    putTime(ByteBuffer.wrap(padded)
+        .putInt(num)
+        .put(source)
+        .put(target)
+        .putInt(transaction.getAmount())
+        .put(prevHash.data), time)
+        .putLong(nonce)
+        .put((byte) 0x80)
+        .putLong(padded.length - Long.BYTES, 8L * length);
+    return Sha256.hashPadded(padded);
+  } // computeHash(int, Transaction, Hash, long, long)
+
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
 
+  /**
+   * Get the bytes of the fixed prefix of this block.
+   *
+   * @return the bytes of the prefix.
+   */
+  byte[] prefixBytes() {
+    if (this.batch == null) {
+      return prefixBytes(this.num, this.transaction, this.prevHash,
+          this.time);
+    } else {
+      return prefixBytes(this.num, MerkleTree.root(this.batch),
+          this.prevHash, this.time);
+    } // if/else
+  } // prefixBytes()
+
+  /**
+   * Make a copy of this block, so that changes to the copy (which code
+   * in this package can make) don't change this block. The copy shares
+   * the transactions and hashes, which no one changes.
+   *
+   * @return the copy.
+   */
+  Block copy() {
+    return new Block(this.num, this.transaction,
+        (this.batch == null) ? null : this.batch.clone(), this.prevHash,
+        this.time, this.nonce, this.hash);
+  } // copy()
+
   /**
    * Compute the hash of the block given all the other info already
    * stored in the block.
    */
   void computeHash() {
-    // STUB
+    this.hash = new Hash(computeHash(DIGESTS.get(), this.prefixBytes(),
+        this.nonce));
   } // computeHash()
 
+  /**
+   * Determine if the stored hash is the one for the current contents
+   * of the block.
+   *
+   * @return true if the hash matches the contents and false otherwise.
+   */
+  boolean hashMatches() {
+    return this.hashMatches(false);
+  } // hashMatches()
+
+  /**
+   * Determine if the stored hash is the one for the current contents
+   * of the block.
+   *
+   * @param specialized
+   *   Whether to use our own SHA-256 rather than a message digest.
+   *
+   * @return true if the hash matches the contents and false otherwise.
+   */
+  boolean hashMatches(boolean specialized) {
+    byte[] expected;
+    if (this.batch != null) {
+      expected = specialized
+          ? computeHash(this.prefixBytes(), this.nonce)
+          : computeHash(DIGESTS.get(), this.prefixBytes(), this.nonce);
+    } else {
+      expected = specialized
+          ? computeHash(this.num, this.transaction, this.prevHash, this.time,
+              this.nonce)
+          : computeHash(DIGESTS.get(), this.prefixBytes(), this.nonce);
+    } // if/else
+    return this.hash.equals(Hash.view(expected));
+  } // hashMatches(boolean)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -82,25 +764,47 @@ public class Block {
    * @return the number of the block.
    */
   public int getNum() {
-    return 0;   // STUB
+    return this.num;
   } // getNum()
 
   /**
-   * Get the transaction stored in this block.
+   * Get the transaction stored in this block. For a batched block, that's
+   * the first transaction in the batch.
    *
    * @return the transaction.
    */
   public Transaction getTransaction() {
-    return new Transaction("Here", "There", 0); // STUB
+    return (this.batch == null) ? this.transaction : this.batch[0];
   } // getTransaction()
 
+  /**
+   * Get all of the transactions stored in this block, in order.
+   *
+   * @return the transactions.
+   */
+  public List<Transaction> getTransactions() {
+    return (this.batch == null)
+        ? Collections.singletonList(this.transaction)
+        : Collections.unmodifiableList(Arrays.asList(this.batch));
+  } // getTransactions()
+
+  /**
+   * Determine if this block holds a batch of transactions.
+   *
+   * @return true if the block holds a batch and false if it holds
+   *   a single transaction.
+   */
+  public boolean isBatch() {
+    return this.batch != null;
+  } // isBatch()
+
   /**
    * Get the nonce of this block.
    *
    * @return the nonce.
    */
   public long getNonce() {
-    return 0;   // STUB
+    return this.nonce;
   } // getNonce()
 
   /**
@@ -109,7 +813,7 @@ public class Block {
    * @return the hash of the previous block.
    */
   Hash getPrevHash() {
-    return new Hash(new byte[] {0});  // STUB
+    return this.prevHash;
   } // getPrevHash
 
   /**
@@ -118,15 +822,79 @@ public class Block {
    * @return the hash of the current block.
    */
   Hash getHash() {
-    return new Hash(new byte[] {0});  // STUB
+    return this.hash;
   } // getHash
 
+  /**
+   * Get the time at which the block was mined.
+   *
+   * @return the time, in nanoseconds since the epoch, or NO_TIME if no
+   *   one recorded it.
+   */
+  public long getTime() {
+    return this.time;
+  } // getTime()
+
+  /**
+   * Get the number of bytes in the canonical encoding of this block.
+   *
+   * @return the number of bytes.
+   */
+  public int encodedLength() {
+    int length = Integer.BYTES + 1;
+    if (this.batch == null) {
+      length += this.transaction.encodedLength();
+    } else {
+      length += Integer.BYTES;
+      for (Transaction t : this.batch) {
+        length += t.encodedLength();
+      } // for
+    } // if/else
+    return length + Integer.BYTES + this.prevHash.length() + 2 * Long.BYTES;
+  } // encodedLength()
+
+  /**
+   * Write the canonical encoding of this block at the current position
+   * of a buffer, advancing the position past it.
+   *
+   * @param buffer
+   *   The buffer to write to.
+   *
+   * @return the buffer.
+   *
+   * @throws java.nio.BufferOverflowException
+   *   If the buffer does not have room for the encoding.
+   */
+  public ByteBuffer encode(ByteBuffer buffer) {
+    buffer.putInt(this.num);
+    if (this.batch == null) {
+      this.transaction.encode(buffer.put(SINGLE));
+    } else {
+      buffer.put(BATCH).putInt(this.batch.length);
+      for (Transaction t : this.batch) {
+        t.encode(buffer);
+      } // for
+    } // if/else
+    return buffer.putInt(this.prevHash.length())
+        .put(this.prevHash.data)
+        .putLong(this.nonce)
+        .putLong(this.time);
+  } // encode(ByteBuffer)
+
   /**
    * Get a string representation of the block.
    *
    * @return a string representation of the block.
    */
   public String toString() {
-    return "";  // STUB
+    if (this.batch != null) {
+      return String.format(
+          "Block %d (Transactions: %s, Nonce: %d, prevHash: %s, hash: %s)",
+          this.num, Arrays.toString(this.batch), this.nonce, this.prevHash,
+          this.hash);
+    } // if
+    return String.format(
+        "Block %d (Transaction: %s, Nonce: %d, prevHash: %s, hash: %s)",
+        this.num, this.transaction, this.nonce, this.prevHash, this.hash);
   } // toString()
 } // class Block
@@ -1,18 +1,172 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A full blockchain.
  *
+ * We keep an index of the net balance of each user and of the users who
+ * appear in the chain, which we update as blocks are appended and undo
+ * as they are removed, so that <code>balance</code> and
+ * <code>users</code> need not walk the chain. Code in this package can
+ * change the blocks that <code>blocks</code> hands out. Once it has
+ * handed out blocks, we make sure that the index still matches them
+ * (comparing transactions by identity) before we use it.
+ *
+ * We also remember how many blocks at the start of the chain
+ * <code>check</code> has already verified (the watermark), so that later
+ * checks only verify the blocks after them. Since code in this package
+ * can change blocks that <code>blocks</code> hands out, once it has
+ * handed out blocks, or if the client asks for full rescans, each check
+ * verifies the whole chain.
+ *
+ * A chain can also write snapshots of its index every so many blocks.
+ * When we open a store that already holds blocks, we start from the
+ * latest snapshot that matches the store (skipping any that are damaged
+ * or that come from a different chain) and only index the blocks after
+ * it. Snapshots only save time, so a snapshot that we cannot write does
+ * not stop a block from being appended: we remember the failure (see
+ * <code>getSnapshotFailure</code>) and try again with the next block.
+ *
  * @author Your Name Here
  */
 public class BlockChain implements Iterable<Transaction> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of blocks that a verifier claims at a time.
+   */
+  static final int CHECK_CHUNK = 1 << 8;
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
+  /**
+   * The validator used to check hashes.
+   */
+  HashValidator check;
+
+  /**
+   * The miner used to find nonces for new blocks.
+   */
+  Miner miner;
+
+  /**
+   * The blocks in the chain, starting with the initial block.
+   */
+  BlockStore blocks;
+
+  /**
+   * Whether we check hashes with our own SHA-256 rather than a message
+   * digest.
+   */
+  boolean specializedHashing = false;
+
+  /**
+   * The net balance of each user over every transaction in the chain,
+   * indexed by user id.
+   */
+  Balances balances;
+
+  /**
+   * The number of times each user appears in the chain, indexed by
+   * user id.
+   */
+  Balances appearances;
+
+  /**
+   * The ids of the users in the chain, in the order in which they
+   * first appear.
+   */
+  ArrayList<Integer> users;
+
+  /**
+   * What the index reflects for each block: its transaction, or a copy of
+   * its batch.
+   */
+  ArrayList<Object> indexed;
+
+  /**
+   * Whether <code>blocks</code> has handed out blocks, which code in this
+   * package might change.
+   */
+  boolean exposed = false;
+
+  /**
+   * The pool that verifies the hashes of blocks in <code>check</code>.
+   */
+  ExecutorService verifiers = ForkJoinPool.commonPool();
+
+  /**
+   * The number of workers that verify hashes. With one worker, we verify
+   * on the caller's thread.
+   */
+  int verifierCount = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The number of blocks at the start of the chain that have been
+   * verified.
+   */
+  int verified = 0;
+
+  /**
+   * The balances after the verified blocks.
+   */
+  Balances verifiedBalances = new Balances();
+
+  /**
+   * Whether every check should verify the whole chain.
+   */
+  boolean fullRescan = false;
+
+  /**
+   * The numbers of the blocks, by hash, or null if no one has looked up
+   * a hash yet.
+   */
+  HashIndex hashes = null;
+
+  /**
+   * The number of blocks that have been removed from the chain, so that
+   * streams can tell that blocks they cover may have gone.
+   */
+  int removals = 0;
+
+  /**
+   * The directory that holds snapshots of the index, or null if we
+   * don't take snapshots.
+   */
+  Path snapshots = null;
+
+  /**
+   * The number of blocks between snapshots.
+   */
+  int snapshotInterval = 0;
+
+  /**
+   * Why we could not write the last snapshot that was due, or null if
+   * we wrote it.
+   */
+  IOException snapshotFailure = null;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -24,13 +178,600 @@ public class BlockChain implements Iterable<Transaction> {
    *   The validator used to check elements.
    */
   public BlockChain(HashValidator check) {
-    // STUB
+    this(check, Block::new);
   } // BlockChain(HashValidator)
 
+  /**
+   * Create a new blockchain using a validator to check elements and
+   * a miner to find nonces for new blocks.
+   *
+   * @param check
+   *   The validator used to check elements.
+   * @param miner
+   *   The miner used to mine new blocks.
+   */
+  public BlockChain(HashValidator check, Miner miner) {
+    this(check, miner, new ObjectBlockStore());
+  } // BlockChain(HashValidator, Miner)
+
+  /**
+   * Create a new blockchain that keeps its blocks in a particular store.
+   * If the store is empty, we mine the initial block. Otherwise, we
+   * continue the chain that the store holds (which <code>check</code>
+   * can verify).
+   *
+   * @param check
+   *   The validator used to check elements.
+   * @param miner
+   *   The miner used to mine new blocks.
+   * @param store
+   *   Where to keep the blocks.
+   */
+  public BlockChain(HashValidator check, Miner miner, BlockStore store) {
+    this.check = check;
+    this.miner = miner;
+    this.blocks = store;
+    this.start(0);
+  } // BlockChain(HashValidator, Miner, BlockStore)
+
+  /**
+   * Create a new blockchain that keeps its blocks in a particular store
+   * and snapshots its index every so many blocks. If the store already
+   * holds blocks, we start from the latest usable snapshot.
+   *
+   * @param check
+   *   The validator used to check elements.
+   * @param miner
+   *   The miner used to mine new blocks.
+   * @param store
+   *   Where to keep the blocks.
+   * @param snapshots
+   *   The directory for snapshots, which we create if necessary.
+   * @param interval
+   *   The number of blocks between snapshots.
+   *
+   * @throws IOException
+   *   If we cannot create or list the directory.
+   * @throws IllegalArgumentException
+   *   If the interval is not positive.
+   */
+  public BlockChain(HashValidator check, Miner miner, BlockStore store,
+      Path snapshots, int interval) throws IOException {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Snapshot interval must be "
+          + "positive");
+    } // if
+    this.check = check;
+    this.miner = miner;
+    this.blocks = store;
+    this.snapshots = Files.createDirectories(snapshots);
+    this.snapshotInterval = interval;
+    this.start((store.size() == 0) ? 0 : this.restore());
+  } // BlockChain(HashValidator, Miner, BlockStore, Path, int)
+
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
 
+  /**
+   * Get the last block in the chain.
+   *
+   * @return the last block.
+   */
+  Block last() {
+    return this.blocks.get(this.blocks.size() - 1);
+  } // last()
+
+  /**
+   * Get the chain going: mine the initial block if the store is empty,
+   * and otherwise index the blocks that the index doesn't yet cover.
+   *
+   * @param from
+   *   The number of blocks that the index already covers.
+   */
+  void start(int from) {
+    if (from == 0) {
+      this.clearIndex();
+    } // if
+    if (this.blocks.size() == 0) {
+      Block initial = this.miner.mine(0, new Transaction("", "", 0),
+          new Hash(new byte[] {}), this.nextTime(), this.check.forBlock(0));
+      this.blocks.add(initial);
+      this.index(initial);
+      this.appended(initial);
+    } else {
+      for (int i = from; i < this.blocks.size(); i++) {
+        this.index(this.blocks.get(i));
+      } // for
+      this.replay();
+    } // if/else
+  } // start(int)
+
+  /**
+   * Let an adaptive validator work out its targets from the times
+   * recorded in the blocks of a store that already holds blocks. Only
+   * the blocks that end intervals matter, so we skip the rest.
+   */
+  void replay() {
+    if (this.check instanceof AdaptiveValidator) {
+      AdaptiveValidator validator = (AdaptiveValidator) this.check;
+      validator.removed(0);
+      for (int num = 0; num < this.blocks.size(); num += validator.interval) {
+        validator.appended(num, this.blocks.get(num).getTime());
+      } // for
+    } // if
+  } // replay()
+
+  /**
+   * Load the latest snapshot that matches the blocks in the store.
+   *
+   * @return the number of blocks that the index now covers (0 if no
+   *   snapshot matches).
+   */
+  int restore() throws IOException {
+    for (int height : Snapshot.heights(this.snapshots)) {
+      if ((height < 1) || (height > this.blocks.size())) {
+        continue;
+      } // if
+      Snapshot snapshot;
+      try {
+        snapshot = Snapshot.read(Snapshot.file(this.snapshots, height));
+      } catch (IOException | IllegalArgumentException e) {
+        continue;
+      } // try/catch
+      if ((snapshot.height != height)
+          || !snapshot.hash.equals(this.blocks.getHash(height - 1))) {
+        continue;
+      } // if
+      this.clearIndex();
+      this.balances.add(UserDictionary.DEPOSIT, snapshot.deposits);
+      for (int i = 0; i < snapshot.names.length; i++) {
+        int id = UserDictionary.USERS.id(snapshot.names[i]);
+        this.users.add(id);
+        this.balances.add(id, snapshot.balances[i]);
+        this.appearances.add(id, snapshot.appearances[i]);
+      } // for
+      if (this.blocks.sharesBlocks()) {
+        for (int i = 0; i < height; i++) {
+          this.remember(this.blocks.get(i));
+        } // for
+      } // if
+      return height;
+    } // for
+    return 0;
+  } // restore()
+
+  /**
+   * Build a snapshot of the index.
+   *
+   * @return the snapshot.
+   */
+  Snapshot snapshot() {
+    this.reconcile();
+    String[] names = new String[this.users.size()];
+    int[] amounts = new int[names.length];
+    int[] counts = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      int id = this.users.get(i);
+      names[i] = UserDictionary.USERS.name(id);
+      amounts[i] = this.balances.get(id);
+      counts[i] = this.appearances.get(id);
+    } // for
+    return new Snapshot(this.getSize(), this.getHash(),
+        this.balances.get(UserDictionary.DEPOSIT), names, amounts, counts);
+  } // snapshot()
+
+  /**
+   * Clear the index.
+   */
+  void clearIndex() {
+    this.balances = new Balances();
+    this.appearances = new Balances();
+    this.users = new ArrayList<Integer>();
+    this.indexed = new ArrayList<Object>();
+  } // clearIndex()
+
+  /**
+   * Add the transactions of a block to the index.
+   *
+   * @param blk
+   *   The block, which should be the last one in the chain.
+   */
+  void index(Block blk) {
+    if (blk.batch == null) {
+      this.index(blk.transaction);
+    } else {
+      for (Transaction t : blk.batch) {
+        this.index(t);
+      } // for
+    } // if/else
+    if (this.blocks.sharesBlocks()) {
+      this.remember(blk);
+    } // if
+  } // index(Block)
+
+  /**
+   * Remember what we indexed for a block, in case someone changes it.
+   *
+   * @param blk
+   *   The block, which should be the last one in the chain.
+   */
+  void remember(Block blk) {
+    this.indexed.add((blk.batch == null) ? blk.transaction
+        : blk.batch.clone());
+  } // remember(Block)
+
+  /**
+   * Add one transaction to the index.
+   *
+   * @param t
+   *   The transaction.
+   */
+  void index(Transaction t) {
+    this.balances.add(t.getSourceId(), -t.getAmount());
+    this.balances.add(t.getTargetId(), t.getAmount());
+    this.appear(t.getSourceId());
+    this.appear(t.getTargetId());
+  } // index(Transaction)
+
+  /**
+   * Remove the transactions of the last block from the index, undoing
+   * exactly what <code>index</code> did.
+   *
+   * @param blk
+   *   The block.
+   */
+  void unindex(Block blk) {
+    Object last = this.blocks.sharesBlocks()
+        ? this.indexed.remove(this.indexed.size() - 1)
+        : blk.isBatch() ? blk.batch : blk.transaction;
+    if (last instanceof Transaction) {
+      this.unindex((Transaction) last);
+    } else {
+      Transaction[] batch = (Transaction[]) last;
+      for (int i = batch.length - 1; i >= 0; i--) {
+        this.unindex(batch[i]);
+      } // for
+    } // if/else
+  } // unindex()
+
+  /**
+   * Remove one transaction from the index.
+   *
+   * @param t
+   *   The transaction, which should be the last one indexed.
+   */
+  void unindex(Transaction t) {
+    this.disappear(t.getTargetId());
+    this.disappear(t.getSourceId());
+    this.balances.add(t.getTargetId(), -t.getAmount());
+    this.balances.add(t.getSourceId(), t.getAmount());
+  } // unindex(Transaction)
+
+  /**
+   * Note one more appearance of a user.
+   *
+   * @param id
+   *   The id of the user.
+   */
+  void appear(int id) {
+    if (id != UserDictionary.DEPOSIT) {
+      if (this.appearances.get(id) == 0) {
+        this.users.add(id);
+      } // if
+      this.appearances.add(id, 1);
+    } // if
+  } // appear(int)
+
+  /**
+   * Note one fewer appearance of a user. Since we remove transactions in
+   * the reverse of the order in which we added them, a user who no
+   * longer appears is always the last one to have first appeared.
+   *
+   * @param id
+   *   The id of the user.
+   */
+  void disappear(int id) {
+    if (id != UserDictionary.DEPOSIT) {
+      this.appearances.add(id, -1);
+      if (this.appearances.get(id) == 0) {
+        this.users.remove(this.users.size() - 1);
+      } // if
+    } // if
+  } // disappear(int)
+
+  /**
+   * Make sure that the index matches the blocks, rebuilding it if some
+   * block has changed since we indexed it.
+   */
+  void reconcile() {
+    if (!this.exposed) {
+      return;
+    } // if
+    for (int i = 0; i < this.blocks.size(); i++) {
+      if (!this.isIndexed(this.blocks.get(i), this.indexed.get(i))) {
+        this.clearIndex();
+        for (int j = 0; j < this.blocks.size(); j++) {
+          this.index(this.blocks.get(j));
+        } // for
+        return;
+      } // if
+    } // for
+  } // reconcile()
+
+  /**
+   * Determine if the index reflects the current contents of a block.
+   *
+   * @param blk
+   *   The block.
+   * @param indexed
+   *   What the index reflects for that block.
+   *
+   * @return true if the block holds the same transactions (the same
+   *   objects, in the same order) that we indexed.
+   */
+  boolean isIndexed(Block blk, Object indexed) {
+    if (blk.batch == null) {
+      return blk.transaction == indexed;
+    } // if
+    if (!(indexed instanceof Transaction[])
+        || (((Transaction[]) indexed).length != blk.batch.length)) {
+      return false;
+    } // if
+    Transaction[] batch = (Transaction[]) indexed;
+    for (int i = 0; i < batch.length; i++) {
+      if (batch[i] != blk.batch[i]) {
+        return false;
+      } // if
+    } // for
+    return true;
+  } // isIndexed(Block, Object)
+
+  /**
+   * Bring the index, the hash index, and the validator up to date with a
+   * block that the store now holds.
+   *
+   * @param blk
+   *   The block, which should be the last one in the store.
+   */
+  void added(Block blk) {
+    if (this.hashes != null) {
+      this.hashes.add(blk.getHash(), blk.getNum());
+    } // if
+    this.index(blk);
+    this.appended(blk);
+  } // added(Block)
+
+  /**
+   * Get the time to put in the next block we mine: none, unless an
+   * adaptive validator needs to know, and otherwise the time on the
+   * validator's clock (but no earlier than the last block).
+   *
+   * @return the time, or Block.NO_TIME.
+   */
+  long nextTime() {
+    if (!(this.check instanceof AdaptiveValidator)) {
+      return Block.NO_TIME;
+    } // if
+    long now = ((AdaptiveValidator) this.check).time();
+    return (this.blocks.size() == 0) ? now : Math.max(now, this.last().time);
+  } // nextTime()
+
+  /**
+   * Check the time of a block that is about to join the chain. If an
+   * adaptive validator uses the time, the block must have one, no
+   * earlier than the time of the last block and within
+   * <code>AdaptiveValidator.MAX_DRIFT</code> of the validator's clock.
+   *
+   * @param blk
+   *   The block.
+   *
+   * @return a description of the problem, or null if there is none.
+   */
+  String checkTime(Block blk) {
+    if (!(this.check instanceof AdaptiveValidator)) {
+      return null;
+    } // if
+    long now = ((AdaptiveValidator) this.check).time();
+    long time = blk.getTime();
+    if (time == Block.NO_TIME) {
+      return String.format("Block %d has no time", blk.getNum());
+    } else if (time < this.last().time) {
+      return String.format("Block %d is earlier than the block before it",
+          blk.getNum());
+    } else if ((time > now + AdaptiveValidator.MAX_DRIFT)
+        || (time < now - AdaptiveValidator.MAX_DRIFT)) {
+      return String.format("Block %d has a time too far from ours",
+          blk.getNum());
+    } // if/else
+    return null;
+  } // checkTime(Block)
+
+  /**
+   * Let an adaptive validator know that a block has arrived, so that it
+   * can retune its difficulty.
+   *
+   * @param blk
+   *   The block.
+   */
+  void appended(Block blk) {
+    if (this.check instanceof AdaptiveValidator) {
+      ((AdaptiveValidator) this.check).appended(blk.getNum(), blk.getTime());
+    } // if
+  } // appended(Block)
+
+  /**
+   * Get a stream of the transactions in the chain.
+   *
+   * @param parallel
+   *   Whether the stream should be parallel.
+   *
+   * @return the stream.
+   */
+  Stream<Transaction> transactions(boolean parallel) {
+    return StreamSupport.stream(
+        new BlockSpliterator(this, 0, this.blocks.size()), parallel)
+        .flatMap((blk) -> blk.getTransactions().stream());
+  } // transactions(boolean)
+
+  /**
+   * Check the hashes of one block.
+   *
+   * @param blk
+   *   The block to check.
+   * @param num
+   *   The expected number of the block.
+   * @param prevHash
+   *   The expected previous hash.
+   *
+   * @return null if the hashes are correct and a description of the
+   *   problem otherwise.
+   */
+  String checkHashes(Block blk, int num, Hash prevHash) {
+    if (blk.getNum() != num) {
+      return String.format("Block %d has the wrong number (%d)",
+          num, blk.getNum());
+    } else if (!blk.getPrevHash().equals(prevHash)) {
+      return String.format("Block %d has an incorrect previous hash", num);
+    } else if (!this.check.forBlock(num).isValid(blk.getHash())) {
+      return String.format("Block %d has an invalid hash", num);
+    } else if (!blk.hashMatches(this.specializedHashing)) {
+      return String.format("Block %d has a hash that does not match its "
+          + "contents", num);
+    } // if/else
+    return null;
+  } // checkHashes(Block, int, Hash)
+
+  /**
+   * Get the previous hash that a block should have. (The initial block
+   * has nothing to compare to, so we compare it to itself.)
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the hash of the block before it.
+   */
+  Hash expectedPrevHash(int num) {
+    return (num == 0)
+        ? this.blocks.get(0).getPrevHash()
+        : this.blocks.getHash(num - 1);
+  } // expectedPrevHash(int)
+
+  /**
+   * Find the first block in a range whose hashes are wrong. The hashes
+   * of different blocks can be checked independently, so we split the
+   * range into chunks that the verifiers claim in order.
+   *
+   * @param from
+   *   The first block to check.
+   * @param to
+   *   One past the last block to check.
+   *
+   * @return the number of the first block whose hashes are wrong, or
+   *   <code>to</code> if they are all right.
+   *
+   * @throws Exception
+   *   If verification is interrupted or a verifier fails.
+   */
+  int firstBadHash(int from, int to) throws Exception {
+    if ((this.verifierCount == 1) || (to - from < 2 * CHECK_CHUNK)) {
+      return this.firstBadHash(from, to, new AtomicInteger(to));
+    } // if
+    AtomicInteger next = new AtomicInteger(from);
+    AtomicInteger first = new AtomicInteger(to);
+    List<Future<?>> results = new ArrayList<Future<?>>(this.verifierCount);
+    for (int i = 0; i < this.verifierCount; i++) {
+      results.add(this.verifiers.submit(() -> {
+        int start = next.getAndAdd(CHECK_CHUNK);
+        while (start < first.get()) {
+          this.firstBadHash(start, Math.min(start + CHECK_CHUNK, to), first);
+          start = next.getAndAdd(CHECK_CHUNK);
+        } // while
+      }));
+    } // for
+    try {
+      for (Future<?> result : results) {
+        result.get();
+      } // for
+    } catch (InterruptedException e) {
+      first.set(from);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Verification interrupted");
+    } catch (ExecutionException e) {
+      first.set(from);
+      throw new IllegalStateException("Verification failed", e.getCause());
+    } // try/catch
+    return first.get();
+  } // firstBadHash(int, int)
+
+  /**
+   * Check the hashes of a range of blocks in order, stopping at the
+   * first bad one (or at the first bad one that anyone else has found).
+   *
+   * @param from
+   *   The first block to check.
+   * @param to
+   *   One past the last block to check.
+   * @param first
+   *   The first bad block found so far, which we update.
+   *
+   * @return the first bad block found so far.
+   */
+  int firstBadHash(int from, int to, AtomicInteger first) {
+    for (int i = from; (i < to) && (i < first.get()); i++) {
+      if (this.checkHashes(this.blocks.get(i), i, this.expectedPrevHash(i))
+          != null) {
+        return first.accumulateAndGet(i, Math::min);
+      } // if
+    } // for
+    return first.get();
+  } // firstBadHash(int, int, AtomicInteger)
+
+  /**
+   * Apply one transaction to a table of balances.
+   *
+   * @param balances
+   *   The balances so far.
+   * @param num
+   *   The number of the block that contains the transaction.
+   * @param t
+   *   The transaction.
+   *
+   * @return null if the transaction is legal and a description of the
+   *   problem otherwise.
+   */
+  static String applyTransaction(Balances balances, int num, Transaction t) {
+    int amount = t.getAmount();
+    if (amount < 0) {
+      return String.format("Block %d has a negative amount (%d)", num, amount);
+    } // if
+    if (!t.isDeposit()) {
+      int available = balances.get(t.getSourceId());
+      if (available < amount) {
+        return String.format("Block %d: %s has insufficient funds (%d < %d)",
+            num, t.getSource(), available, amount);
+      } // if
+      balances.add(t.getSourceId(), -amount);
+    } // if
+    balances.add(t.getTargetId(), amount);
+    return null;
+  } // applyTransaction(Balances, int, Transaction)
+
+  /**
+   * Undo a legal transaction that was applied to a table of balances.
+   *
+   * @param balances
+   *   The balances.
+   * @param t
+   *   The transaction, which should be the last one applied.
+   */
+  static void unapplyTransaction(Balances balances, Transaction t) {
+    balances.add(t.getTargetId(), -t.getAmount());
+    if (!t.isDeposit()) {
+      balances.add(t.getSourceId(), t.getAmount());
+    } // if
+  } // unapplyTransaction(Balances, Transaction)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -45,16 +786,143 @@ public class BlockChain implements Iterable<Transaction> {
    * @return a new block with correct number, hashes, and such.
    */
   public Block mine(Transaction t) {
-    return new Block(10, t, new Hash(new byte[] {7}), 11);       // STUB
+    int num = this.getSize();
+    return this.miner.mine(num, t, this.getHash(), this.nextTime(),
+        this.check.forBlock(num));
   } // mine(Transaction)
 
+  /**
+   * Mine for a new valid block that holds a batch of transactions for
+   * the end of the chain, returning that block.
+   *
+   * @param transactions
+   *   The transactions that go in the block.
+   *
+   * @return a new block with correct number, hashes, and such.
+   *
+   * @throws IllegalArgumentException
+   *   If there are no transactions.
+   */
+  public Block mine(Transaction[] transactions) {
+    int num = this.getSize();
+    return this.miner.mine(num, transactions, this.getHash(),
+        this.nextTime(), this.check.forBlock(num));
+  } // mine(Transaction[])
+
+  /**
+   * Mine for a new valid block for the end of the chain, giving up
+   * after a while.
+   *
+   * @param t
+   *   The transaction that goes in the block.
+   * @param budget
+   *   How long to mine.
+   *
+   * @return a checkpoint that holds the block, if we found it, or that
+   *   can be passed to <code>resume</code> to keep going.
+   */
+  public MiningCheckpoint mine(Transaction t, Duration budget) {
+    return this.resume(new MiningCheckpoint(this.getSize(), t, this.getHash(),
+        this.nextTime()), budget);
+  } // mine(Transaction, Duration)
+
+  /**
+   * Continue mining for a new block for the end of the chain.
+   *
+   * @param checkpoint
+   *   Where we left off.
+   * @param budget
+   *   How long to mine.
+   *
+   * @return a checkpoint that holds the block, if we found it, or that
+   *   can be passed to <code>resume</code> to keep going.
+   *
+   * @throws IllegalArgumentException
+   *   If the checkpoint is not for the next block of this chain (e.g.,
+   *   because blocks have been added since it was made).
+   */
+  public MiningCheckpoint resume(MiningCheckpoint checkpoint,
+      Duration budget) {
+    if (!checkpoint.isFor(this.getSize(), checkpoint.transaction,
+        this.getHash())) {
+      throw new IllegalArgumentException(
+          "Checkpoint is not for the next block in the chain");
+    } // if
+    return checkpoint.resume(this.check.forBlock(checkpoint.num), budget);
+  } // resume(MiningCheckpoint, Duration)
+
+  /**
+   * Choose how <code>append</code> and <code>check</code> recompute the
+   * hashes of blocks. Our own SHA-256, which is specialized for the layout
+   * of blocks, gives the same hashes as the standard message digest, but
+   * skips the digest's lookup and buffering.
+   *
+   * @param specialized
+   *   True to use our own SHA-256 and false to use the message digest.
+   */
+  public void setSpecializedHashing(boolean specialized) {
+    this.specializedHashing = specialized;
+  } // setSpecializedHashing(boolean)
+
+  /**
+   * Choose how <code>check</code> verifies the hashes of blocks. By
+   * default, we use one worker per processor in the common pool.
+   *
+   * @param pool
+   *   The pool that runs the workers.
+   * @param workers
+   *   The number of workers (1 to verify on the caller's thread).
+   *
+   * @throws IllegalArgumentException
+   *   If the number of workers is not positive.
+   */
+  public void setVerifiers(ExecutorService pool, int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Need at least one worker");
+    } // if
+    this.verifiers = pool;
+    this.verifierCount = workers;
+  } // setVerifiers(ExecutorService, int)
+
+  /**
+   * Choose whether <code>check</code> verifies the whole chain every
+   * time, or only the blocks that it has not yet verified.
+   *
+   * @param full
+   *   True to verify the whole chain every time.
+   */
+  public void setFullRescan(boolean full) {
+    this.fullRescan = full;
+  } // setFullRescan(boolean)
+
+  /**
+   * Get the number of blocks at the start of the chain that
+   * <code>check</code> has verified and need not verify again.
+   *
+   * @return the number of verified blocks.
+   */
+  public int getVerifiedSize() {
+    return (this.fullRescan || this.exposed) ? 0 : this.verified;
+  } // getVerifiedSize()
+
+  /**
+   * Find out why we could not write the last snapshot that was due. We
+   * keep trying with each block that we append until a snapshot works.
+   *
+   * @return the problem, or null if we wrote the last snapshot that was
+   *   due (or don't take snapshots).
+   */
+  public IOException getSnapshotFailure() {
+    return this.snapshotFailure;
+  } // getSnapshotFailure()
+
   /**
    * Get the number of blocks curently in the chain.
    *
    * @return the number of blocks in the chain, including the initial block.
    */
   public int getSize() {
-    return 2;   // STUB
+    return this.blocks.size();
   } // getSize()
 
   /**
@@ -64,11 +932,42 @@ public class BlockChain implements Iterable<Transaction> {
    *   The block to add to the end of the chain.
    *
    * @throws IllegalArgumentException if (a) the hash is not valid, (b)
-   *   the hash is not appropriate for the contents, or (c) the previous
-   *   hash is incorrect.
+   *   the hash is not appropriate for the contents, (c) the previous
+   *   hash is incorrect, or (d) an adaptive validator needs the time of
+   *   the block and it is missing or out of bounds (see
+   *   <code>checkTime</code>).
+   * @throws UncheckedIOException if the store cannot add the block.
    */
   public void append(Block blk) {
-    // STUB
+    String problem = this.checkHashes(blk, this.getSize(), this.getHash());
+    if (problem == null) {
+      problem = this.checkTime(blk);
+    } // if
+    if (problem != null) {
+      throw new IllegalArgumentException(problem);
+    } // if
+    try {
+      this.blocks.add(blk);
+    } catch (RuntimeException e) {
+      // A store that could not undo the addition still holds the block,
+      // so the index must reflect it.
+      if (this.blocks.size() > blk.getNum()) {
+        this.added(blk);
+      } // if
+      throw e;
+    } // try/catch
+    this.added(blk);
+    if ((this.snapshots != null)
+        && ((this.getSize() % this.snapshotInterval == 0)
+            || (this.snapshotFailure != null))) {
+      try {
+        this.snapshot().write(this.snapshots);
+        this.snapshotFailure = null;
+      } catch (IOException e) {
+        // The block is in the chain; the next append tries again.
+        this.snapshotFailure = e;
+      } // try/catch
+    } // if
   } // append()
 
   /**
@@ -79,16 +978,72 @@ public class BlockChain implements Iterable<Transaction> {
    *   is removed).
    */
   public boolean removeLast() {
-    return true;        // STUB
+    if (this.blocks.size() <= 1) {
+      return false;
+    } // if
+    Block removed = this.last();
+    Hash hash = this.getHash();
+    this.blocks.removeLast();
+    this.removals++;
+    if (this.hashes != null) {
+      this.hashes.remove(hash, this.blocks.size());
+    } // if
+    this.unindex(removed);
+    if (this.verified > this.blocks.size()) {
+      List<Transaction> transactions = removed.getTransactions();
+      for (int i = transactions.size() - 1; i >= 0; i--) {
+        unapplyTransaction(this.verifiedBalances, transactions.get(i));
+      } // for
+      this.verified = this.blocks.size();
+    } // if
+    if (this.check instanceof AdaptiveValidator) {
+      ((AdaptiveValidator) this.check).removed(this.blocks.size());
+    } // if
+    return true;
   } // removeLast()
 
+  /**
+   * Get one block by its number. If the store shares its blocks, we
+   * hand out a copy, so that the index and the watermark can still trust
+   * the blocks in the chain.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no such block.
+   */
+  public Block getBlock(int num) {
+    Block blk = this.blocks.get(num);
+    return this.blocks.sharesBlocks() ? blk.copy() : blk;
+  } // getBlock(int)
+
+  /**
+   * Find the number of the block with a particular hash. The first
+   * lookup indexes the hashes of every block; after that, we keep the
+   * index up to date as blocks come and go.
+   *
+   * @param hash
+   *   The hash to look for.
+   *
+   * @return the number of the block, or -1 if no block has that hash.
+   */
+  public int indexOf(Hash hash) {
+    if (this.hashes == null) {
+      this.hashes = new HashIndex(this.blocks);
+    } // if
+    return this.hashes.find(hash);
+  } // indexOf(Hash)
+
   /**
    * Get the hash of the last block in the chain.
    *
    * @return the hash of the last sblock in the chain.
    */
   public Hash getHash() {
-    return new Hash(new byte[] {2, 0, 7});   // STUB
+    return this.blocks.getHash(this.blocks.size() - 1);
   } // getHash()
 
   /**
@@ -100,20 +1055,61 @@ public class BlockChain implements Iterable<Transaction> {
    * @return true if the blockchain is correct and false otherwise.
    */
   public boolean isCorrect() {
-    return true;        // STUB
+    try {
+      this.check();
+      return true;
+    } catch (Exception e) {
+      return false;
+    } // try/catch
   } // isCorrect()
 
   /**
    * Determine if the blockchain is correct in that (a) the balances are
    * legal/correct at every step, (b) that every block has a correct
    * previous hash field, (c) that every block has a hash that is correct
-   * for its contents, and (d) that every block has a valid hash.
+   * for its contents, and (d) that every block has a valid hash (for
+   * the difficulty in force when it was mined).
+   *
+   * The hashes of the blocks are verified in parallel (see
+   * <code>setVerifiers</code>), while the balances, which depend on
+   * every earlier block, are checked in order on the caller's thread.
+   * Either way, we report the problem at the lowest-numbered bad block,
+   * just as if we had checked each block in turn.
+   *
+   * Unless we are doing full rescans, we skip the blocks that earlier
+   * checks have verified (see <code>getVerifiedSize</code>).
    *
    * @throws Exception
    *   If things are wrong at any block.
    */
   public void check() throws Exception {
-    // STUB
+    int size = this.blocks.size();
+    int from = this.getVerifiedSize();
+    Balances balances = (from == 0) ? new Balances()
+        : this.verifiedBalances.copy();
+    int badBalance = size;
+    String problem = null;
+    for (int i = from; (i < size) && (problem == null); i++) {
+      for (Transaction t : this.blocks.get(i).getTransactions()) {
+        if (problem == null) {
+          problem = applyTransaction(balances, i, t);
+        } // if
+      } // for
+      if (problem != null) {
+        badBalance = i;
+      } // if
+    } // for
+    // Blocks after a bad balance can't be the first problem.
+    int end = Math.min(size, badBalance + 1);
+    int badHash = this.firstBadHash(from, end);
+    if (badHash < end) {
+      throw new Exception(this.checkHashes(this.blocks.get(badHash), badHash,
+          this.expectedPrevHash(badHash)));
+    } else if (problem != null) {
+      throw new Exception(problem);
+    } // if/else
+    this.verified = size;
+    this.verifiedBalances = balances;
   } // check()
 
   /**
@@ -123,15 +1119,12 @@ public class BlockChain implements Iterable<Transaction> {
    * @return an iterator of all the people in the system.
    */
   public Iterator<String> users() {
-    return new Iterator<String>() {
-      public boolean hasNext() {
-        return false;   // STUB
-      } // hasNext()
-
-      public String next() {
-        throw new NoSuchElementException();     // STUB
-      } // next()
-    };
+    this.reconcile();
+    ArrayList<String> names = new ArrayList<String>(this.users.size());
+    for (int id : this.users) {
+      names.add(UserDictionary.USERS.name(id));
+    } // for
+    return names.iterator();
   } // users()
 
   /**
@@ -143,7 +1136,9 @@ public class BlockChain implements Iterable<Transaction> {
    * @return that user's balance (or 0, if the user is not in the system).
    */
   public int balance(String user) {
-    return 0;   // STUB
+    this.reconcile();
+    int id = UserDictionary.USERS.find(user);
+    return (id < 0) ? 0 : this.balances.get(id);
   } // balance()
 
   /**
@@ -152,32 +1147,86 @@ public class BlockChain implements Iterable<Transaction> {
    * @return an iterator for all the blocks in the chain.
    */
   public Iterator<Block> blocks() {
+    if (this.blocks.sharesBlocks()) {
+      this.exposed = true;
+    } // if
     return new Iterator<Block>() {
+      int i = 0;
+
       public boolean hasNext() {
-        return false;   // STUB
+        return this.i < BlockChain.this.blocks.size();
       } // hasNext()
 
       public Block next() {
-        throw new NoSuchElementException();     // STUB
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        return BlockChain.this.blocks.get(this.i++);
       } // next()
     };
   } // blocks()
 
   /**
-   * Get an interator for all the transactions in the chain.
+   * Get an interator for all the transactions in the chain, including
+   * every transaction in each batched block.
    *
-   * @return an iterator for all the blocks in the chain.
+   * @return an iterator for all the transactions in the chain.
    */
   public Iterator<Transaction> iterator() {
     return new Iterator<Transaction>() {
+      int i = 0;
+      Iterator<Transaction> transactions = Collections.emptyIterator();
+
       public boolean hasNext() {
-        return false;   // STUB
+        while (!this.transactions.hasNext()
+            && (this.i < BlockChain.this.blocks.size())) {
+          this.transactions =
+              BlockChain.this.blocks.get(this.i++).getTransactions().iterator();
+        } // while
+        return this.transactions.hasNext();
       } // hasNext()
 
       public Transaction next() {
-        throw new NoSuchElementException();     // STUB
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        return this.transactions.next();
       } // next()
     };
   } // iterator()
 
+  /**
+   * Get a stream of the blocks in the chain (as of now). The stream
+   * splits evenly by ranges of blocks, so it may be made parallel. As
+   * with <code>getBlock</code>, if the store shares its blocks, the
+   * stream holds copies.
+   *
+   * @return a stream of the blocks.
+   */
+  public Stream<Block> blockStream() {
+    Stream<Block> result = StreamSupport.stream(
+        new BlockSpliterator(this, 0, this.blocks.size()), false);
+    return this.blocks.sharesBlocks() ? result.map(Block::copy) : result;
+  } // blockStream()
+
+  /**
+   * Get a stream of the transactions in the chain (as of now), including
+   * every transaction in each batched block.
+   *
+   * @return a stream of the transactions.
+   */
+  public Stream<Transaction> stream() {
+    return this.transactions(false);
+  } // stream()
+
+  /**
+   * Get a parallel stream of the transactions in the chain (as of now).
+   * Each worker takes a range of blocks; since blocks may hold batches,
+   * the ranges are even in blocks rather than in transactions.
+   *
+   * @return a parallel stream of the transactions.
+   */
+  public Stream<Transaction> parallelStream() {
+    return this.transactions(true);
+  } // parallelStream()
 } // class BlockChain
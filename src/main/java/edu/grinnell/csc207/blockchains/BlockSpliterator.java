@@ -0,0 +1,174 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterators over a range of the blocks in a chain. The range is
+ * fixed when we create the spliterator, so blocks appended later are
+ * not included. If blocks are removed from the chain while the
+ * spliterator is in use, it throws a
+ * <code>ConcurrentModificationException</code> rather than report
+ * blocks that may no longer be there. We split a range in half, so
+ * parallel streams get even shares of the blocks.
+ *
+ * @author Your Name Here
+ */
+final class BlockSpliterator implements Spliterator<Block> {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The chain that holds the blocks.
+   */
+  BlockChain chain;
+
+  /**
+   * The number of blocks that had been removed from the chain when we
+   * started.
+   */
+  int removals;
+
+  /**
+   * The number of the next block.
+   */
+  int from;
+
+  /**
+   * One past the number of the last block.
+   */
+  int to;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a spliterator over a range of blocks.
+   *
+   * @param chain
+   *   The chain that holds the blocks.
+   * @param from
+   *   The number of the first block.
+   * @param to
+   *   One past the number of the last block.
+   */
+  BlockSpliterator(BlockChain chain, int from, int to) {
+    this(chain, from, to, chain.removals);
+  } // BlockSpliterator(BlockChain, int, int)
+
+  /**
+   * Create a spliterator over a range of blocks, as part of another.
+   *
+   * @param chain
+   *   The chain that holds the blocks.
+   * @param from
+   *   The number of the first block.
+   * @param to
+   *   One past the number of the last block.
+   * @param removals
+   *   The number of blocks that had been removed from the chain when
+   *   the other spliterator started.
+   */
+  BlockSpliterator(BlockChain chain, int from, int to, int removals) {
+    this.chain = chain;
+    this.from = from;
+    this.to = to;
+    this.removals = removals;
+  } // BlockSpliterator(BlockChain, int, int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get one block, making sure that no blocks have been removed since
+   * we started.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the block.
+   *
+   * @throws ConcurrentModificationException
+   *   If blocks have been removed.
+   */
+  Block get(int num) {
+    if (this.chain.removals != this.removals) {
+      throw new ConcurrentModificationException("Blocks removed from the "
+          + "chain while streaming");
+    } // if
+    return this.chain.blocks.get(num);
+  } // get(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Process the next block, if there is one.
+   *
+   * @param action
+   *   What to do with the block.
+   *
+   * @return true if there was a block and false otherwise.
+   */
+  public boolean tryAdvance(Consumer<? super Block> action) {
+    if (this.from >= this.to) {
+      return false;
+    } // if
+    action.accept(this.get(this.from++));
+    return true;
+  } // tryAdvance(Consumer<? super Block>)
+
+  /**
+   * Process all the remaining blocks.
+   *
+   * @param action
+   *   What to do with each block.
+   */
+  public void forEachRemaining(Consumer<? super Block> action) {
+    int end = this.to;
+    for (int i = this.from; i < end; i++) {
+      action.accept(this.get(i));
+    } // for
+    this.from = end;
+  } // forEachRemaining(Consumer<? super Block>)
+
+  /**
+   * Hand off the first half of the remaining blocks.
+   *
+   * @return a spliterator for the first half, or null if there are too
+   *   few blocks to split.
+   */
+  public Spliterator<Block> trySplit() {
+    int mid = (this.from + this.to) >>> 1;
+    if (mid <= this.from) {
+      return null;
+    } // if
+    BlockSpliterator prefix =
+        new BlockSpliterator(this.chain, this.from, mid, this.removals);
+    this.from = mid;
+    return prefix;
+  } // trySplit()
+
+  /**
+   * Get the number of remaining blocks.
+   *
+   * @return the number of blocks.
+   */
+  public long estimateSize() {
+    return this.to - this.from;
+  } // estimateSize()
+
+  /**
+   * Describe the spliterator.
+   *
+   * @return the characteristics.
+   */
+  public int characteristics() {
+    return ORDERED | SIZED | SUBSIZED | NONNULL;
+  } // characteristics()
+} // class BlockSpliterator
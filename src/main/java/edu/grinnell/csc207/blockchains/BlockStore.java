@@ -0,0 +1,74 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * Places to keep the blocks of a chain. A store only holds blocks; the
+ * chain is responsible for making sure that they are valid and that
+ * each one follows the one before it.
+ *
+ * @author Your Name Here
+ */
+public interface BlockStore {
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  int size();
+
+  /**
+   * Get one block. Stores that do not keep <code>Block</code> objects
+   * build a new one each time.
+   *
+   * @param num
+   *   The number of the block, between 0 (inclusive) and size()
+   *   (exclusive).
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no such block.
+   */
+  Block get(int num);
+
+  /**
+   * Get the hash of one block, without necessarily building the block.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the hash of the block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no such block.
+   */
+  Hash getHash(int num);
+
+  /**
+   * Add a block to the end of the store.
+   *
+   * @param blk
+   *   The block to add, whose number should be the size of the store.
+   *
+   * @throws IllegalArgumentException
+   *   If the store cannot hold the block.
+   */
+  void add(Block blk);
+
+  /**
+   * Remove the last block from the store.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If the store is empty.
+   */
+  void removeLast();
+
+  /**
+   * Determine if <code>get</code> returns the blocks that were added
+   * (which code in this package can change), rather than new ones.
+   *
+   * @return true if the store shares its blocks and false otherwise.
+   */
+  default boolean sharesBlocks() {
+    return false;
+  } // sharesBlocks()
+} // interface BlockStore
@@ -0,0 +1,302 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Stores that keep blocks in columns of primitive values, rather than as
+ * objects. Each block costs its nonce and its hash; each transaction
+ * costs the ids of its source and target and its amount. That's 52 bytes
+ * for a block with one transaction, compared to about 150 for the
+ * objects that make up a <code>Block</code>. Once the store holds a
+ * batch, each block also costs the index of its first transaction, and
+ * once it holds a block with a time, each block also costs its time.
+ * Like array lists, the columns grow by half when they fill up.
+ *
+ * We don't store block numbers, since a block's number is its position,
+ * or previous hashes, since each block's previous hash is the hash of
+ * the block before it (except for the first block, whose previous hash
+ * we keep separately). <code>get</code> builds a new block from the
+ * columns each time.
+ *
+ * @author Your Name Here
+ */
+public class ColumnarBlockStore implements BlockStore {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in each hash.
+   */
+  static final int HASH_BYTES = Sha256.HASH_BYTES;
+
+  /**
+   * How many blocks or transactions we make room for at first.
+   */
+  static final int INITIAL_CAPACITY = 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of blocks.
+   */
+  int size = 0;
+
+  /**
+   * The previous hash of the first block.
+   */
+  Hash firstPrevHash;
+
+  /**
+   * The nonces, by block.
+   */
+  long[] nonces = new long[INITIAL_CAPACITY];
+
+  /**
+   * The hashes of the blocks, one after another.
+   */
+  byte[] hashes = new byte[INITIAL_CAPACITY * HASH_BYTES];
+
+  /**
+   * The index of the first transaction of each block. There is one more
+   * entry than there are blocks, so that the transactions of block i run
+   * from firsts[i] (inclusive) to firsts[i+1] (exclusive). Until we see a
+   * batch, each block has one transaction, so we leave this null.
+   */
+  int[] firsts = null;
+
+  /**
+   * The times, by block. Until we see a block with a time, we leave this
+   * null.
+   */
+  long[] times = null;
+
+  /**
+   * Which blocks hold batches (rather than single transactions).
+   */
+  BitSet batches = new BitSet();
+
+  /**
+   * The ids of the sources, by transaction.
+   */
+  int[] sources = new int[INITIAL_CAPACITY];
+
+  /**
+   * The ids of the targets, by transaction.
+   */
+  int[] targets = new int[INITIAL_CAPACITY];
+
+  /**
+   * The amounts, by transaction.
+   */
+  int[] amounts = new int[INITIAL_CAPACITY];
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make sure that there is room for one more block and the given number
+   * of transactions.
+   *
+   * @param transactions
+   *   The number of transactions in the block.
+   */
+  void ensureCapacity(int transactions) {
+    if (this.size == this.nonces.length) {
+      int capacity = grow(this.nonces.length);
+      this.nonces = Arrays.copyOf(this.nonces, capacity);
+      this.hashes = Arrays.copyOf(this.hashes, capacity * HASH_BYTES);
+      if (this.firsts != null) {
+        this.firsts = Arrays.copyOf(this.firsts, capacity + 1);
+      } // if
+      if (this.times != null) {
+        this.times = Arrays.copyOf(this.times, capacity);
+      } // if
+    } // if
+    int needed = this.first(this.size) + transactions;
+    if (needed > this.sources.length) {
+      int capacity = Math.max(needed, grow(this.sources.length));
+      this.sources = Arrays.copyOf(this.sources, capacity);
+      this.targets = Arrays.copyOf(this.targets, capacity);
+      this.amounts = Arrays.copyOf(this.amounts, capacity);
+    } // if
+  } // ensureCapacity(int)
+
+  /**
+   * Find how big a column should grow.
+   *
+   * @param capacity
+   *   The current capacity.
+   *
+   * @return the new capacity.
+   */
+  static int grow(int capacity) {
+    return capacity + (capacity >> 1);
+  } // grow(int)
+
+  /**
+   * Find the index of the first transaction of a block.
+   *
+   * @param num
+   *   The number of the block (or the number of blocks, to find the
+   *   number of transactions).
+   *
+   * @return the index of its first transaction.
+   */
+  int first(int num) {
+    return (this.firsts == null) ? num : this.firsts[num];
+  } // first(int)
+
+  /**
+   * Make sure that a block exists.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no such block.
+   */
+  void checkIndex(int num) {
+    if ((num < 0) || (num >= this.size)) {
+      throw new IndexOutOfBoundsException("No block " + num);
+    } // if
+  } // checkIndex(int)
+
+  /**
+   * Rebuild one transaction.
+   *
+   * @param i
+   *   The index of the transaction.
+   *
+   * @return the transaction.
+   */
+  Transaction transaction(int i) {
+    return new Transaction(this.sources[i], this.targets[i], this.amounts[i]);
+  } // transaction(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Build one block from the columns.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the block.
+   */
+  public Block get(int num) {
+    this.checkIndex(num);
+    int first = this.first(num);
+    Transaction transaction = null;
+    Transaction[] batch = null;
+    if (this.batches.get(num)) {
+      batch = new Transaction[this.first(num + 1) - first];
+      for (int i = 0; i < batch.length; i++) {
+        batch[i] = this.transaction(first + i);
+      } // for
+    } else {
+      transaction = this.transaction(first);
+    } // if/else
+    Hash prevHash = (num == 0) ? this.firstPrevHash : this.getHash(num - 1);
+    return new Block(num, transaction, batch, prevHash,
+        (this.times == null) ? Block.NO_TIME : this.times[num],
+        this.nonces[num], this.getHash(num));
+  } // get(int)
+
+  /**
+   * Get the hash of one block.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the hash of the block.
+   */
+  public Hash getHash(int num) {
+    this.checkIndex(num);
+    return Hash.copyOf(this.hashes, num * HASH_BYTES, (num + 1) * HASH_BYTES);
+  } // getHash(int)
+
+  /**
+   * Add a block to the end of the store.
+   *
+   * @param blk
+   *   The block to add.
+   *
+   * @throws IllegalArgumentException
+   *   If the block's number is not the size of the store, its hash is
+   *   not a SHA-256 hash, or its previous hash is not the hash of the
+   *   last block.
+   */
+  public void add(Block blk) {
+    if (blk.getNum() != this.size) {
+      throw new IllegalArgumentException("Expected block " + this.size
+          + " but got block " + blk.getNum());
+    } else if (blk.getHash().length() != HASH_BYTES) {
+      throw new IllegalArgumentException("Columnar stores only hold "
+          + HASH_BYTES + "-byte hashes");
+    } else if ((this.size > 0)
+        && !Arrays.equals(blk.getPrevHash().data, 0, blk.getPrevHash().length(),
+            this.hashes, (this.size - 1) * HASH_BYTES, this.size * HASH_BYTES)) {
+      throw new IllegalArgumentException("Block " + this.size
+          + " does not follow the last block");
+    } // if/else
+    List<Transaction> transactions = blk.getTransactions();
+    if ((this.firsts == null) && blk.isBatch()) {
+      this.firsts = new int[this.nonces.length + 1];
+      Arrays.setAll(this.firsts, (i) -> i);
+    } // if
+    if ((this.times == null) && (blk.getTime() != Block.NO_TIME)) {
+      this.times = new long[this.nonces.length];
+      Arrays.fill(this.times, Block.NO_TIME);
+    } // if
+    this.ensureCapacity(transactions.size());
+    if (this.size == 0) {
+      this.firstPrevHash = blk.getPrevHash();
+    } // if
+    this.nonces[this.size] = blk.getNonce();
+    if (this.times != null) {
+      this.times[this.size] = blk.getTime();
+    } // if
+    System.arraycopy(blk.getHash().data, 0, this.hashes,
+        this.size * HASH_BYTES, HASH_BYTES);
+    this.batches.set(this.size, blk.isBatch());
+    int next = this.first(this.size);
+    for (Transaction t : transactions) {
+      this.sources[next] = t.getSourceId();
+      this.targets[next] = t.getTargetId();
+      this.amounts[next] = t.getAmount();
+      next++;
+    } // for
+    this.size++;
+    if (this.firsts != null) {
+      this.firsts[this.size] = next;
+    } // if
+  } // add(Block)
+
+  /**
+   * Remove the last block from the store.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If the store is empty.
+   */
+  public void removeLast() {
+    this.checkIndex(this.size - 1);
+    this.batches.clear(--this.size);
+  } // removeLast()
+} // class ColumnarBlockStore
@@ -0,0 +1,171 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * Validators that accept a SHA-256 hash if, read as an unsigned 256-bit
+ * number, it is no more than a target. Requiring n leading zero bits is
+ * the same as using a target of n zero bits followed by all one bits.
+ *
+ * Since miners can see the target, they can check a candidate hash
+ * by comparing a word or two of the digest to the target rather than
+ * building a <code>Hash</code> and calling <code>isValid</code>.
+ *
+ * @author Your Name Here
+ */
+public class DifficultyValidator implements HashValidator {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in the hashes we validate.
+   */
+  static final int HASH_BYTES = Sha256.HASH_BYTES;
+
+  /**
+   * The number of longs in the hashes we validate.
+   */
+  static final int WORDS = HASH_BYTES / Long.BYTES;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The target, as four big-endian words.
+   */
+  long[] target;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a validator that requires a number of leading zero bits.
+   *
+   * @param zeroBits
+   *   The number of leading zero bits, between 0 and 256.
+   *
+   * @throws IllegalArgumentException
+   *   If the number of bits is out of range.
+   */
+  public DifficultyValidator(int zeroBits) {
+    if ((zeroBits < 0) || (zeroBits > 8 * HASH_BYTES)) {
+      throw new IllegalArgumentException("Invalid number of zero bits: "
+          + zeroBits);
+    } // if
+    this.target = new long[WORDS];
+    for (int i = 0; i < WORDS; i++) {
+      int zeros = Math.min(Math.max(zeroBits - 64 * i, 0), 64);
+      this.target[i] = (zeros == 64) ? 0 : (-1L >>> zeros);
+    } // for
+  } // DifficultyValidator(int)
+
+  /**
+   * Create a validator that accepts hashes no more than a target.
+   *
+   * @param target
+   *   The largest valid hash.
+   *
+   * @throws IllegalArgumentException
+   *   If the target is not the size of a SHA-256 hash.
+   */
+  public DifficultyValidator(Hash target) {
+    if (target.length() != HASH_BYTES) {
+      throw new IllegalArgumentException("Targets must have " + HASH_BYTES
+          + " bytes");
+    } // if
+    this.target = new long[WORDS];
+    for (int i = 0; i < HASH_BYTES; i++) {
+      this.target[i / Long.BYTES] =
+          (this.target[i / Long.BYTES] << 8) | Byte.toUnsignedLong(target.get(i));
+    } // for
+  } // DifficultyValidator(Hash)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if a hash is no more than the target.
+   *
+   * @param hash
+   *   The hash we're checking.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  public boolean isValid(Hash hash) {
+    if (hash.length() != HASH_BYTES) {
+      return false;
+    } // if
+    for (int i = 0; i < WORDS; i++) {
+      long word = 0;
+      for (int j = 0; j < Long.BYTES; j++) {
+        word = (word << 8) | Byte.toUnsignedLong(hash.get(Long.BYTES * i + j));
+      } // for
+      int cmp = Long.compareUnsigned(word, this.target[i]);
+      if (cmp != 0) {
+        return cmp < 0;
+      } // if
+    } // for
+    return true;
+  } // isValid(Hash)
+
+  /**
+   * Determine if the SHA-256 state words of a digest are no more than the
+   * target. Usually takes just one comparison.
+   *
+   * @param state
+   *   The eight words of the final state of the digest.
+   *
+   * @return true if the digest is valid and false otherwise.
+   */
+  boolean isValid(int[] state) {
+    for (int i = 0; i < WORDS; i++) {
+      long word = ((long) state[2 * i] << 32)
+          | Integer.toUnsignedLong(state[2 * i + 1]);
+      if (word != this.target[i]) {
+        return Long.compareUnsigned(word, this.target[i]) < 0;
+      } // if
+    } // for
+    return true;
+  } // isValid(int[])
+
+  /**
+   * Get the target.
+   *
+   * @return the largest valid hash.
+   */
+  public Hash getTarget() {
+    byte[] bytes = new byte[HASH_BYTES];
+    for (int i = 0; i < HASH_BYTES; i++) {
+      bytes[i] = (byte) (this.target[i / Long.BYTES]
+          >>> (8 * (Long.BYTES - 1 - i % Long.BYTES)));
+    } // for
+    return new Hash(bytes);
+  } // getTarget()
+
+  /**
+   * Get the number of leading zero bits that every valid hash has.
+   *
+   * @return the number of leading zero bits.
+   */
+  public int getZeroBits() {
+    int bits = 0;
+    for (int i = 0; i < WORDS; i++) {
+      bits += Long.numberOfLeadingZeros(this.target[i]);
+      if (this.target[i] != 0) {
+        break;
+      } // if
+    } // for
+    return bits;
+  } // getZeroBits()
+
+  /**
+   * Convert to string form.
+   *
+   * @return a string of the form [Target: target].
+   */
+  public String toString() {
+    return "[Target: " + this.getTarget() + "]";
+  } // toString()
+} // class DifficultyValidator
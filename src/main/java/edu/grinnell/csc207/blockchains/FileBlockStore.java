@@ -0,0 +1,643 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.zip.CRC32C;
+
+/**
+ * Stores that make a chain durable by writing every change to an
+ * append-only log on disk. The blocks themselves live in another store
+ * (an object store by default), which answers all the queries; the log
+ * is only read when we open the store.
+ *
+ * Each record in the log has a header, the length of the payload (an
+ * int), a CRC-32C checksum of the payload (an int), the kind of record
+ * (a byte), and a CRC-32C checksum of the rest of the header (an int),
+ * followed by the payload. An
+ * <code>APPEND</code> record holds the canonical encoding of a block; a
+ * <code>TRUNCATE</code> record, which has no payload, removes the last
+ * block.
+ *
+ * Adding or removing a block does not return until the record is on
+ * disk. If the write or sync fails, we cut the record from the log and
+ * undo the change. Appenders that run at the same time share one sync (a group
+ * commit): whoever syncs first syncs everything written so far, and may
+ * wait a little first so that more records can join in.
+ *
+ * If we crash in the middle of writing a record, opening the store
+ * again finds the torn record and cuts it from the log. A record is
+ * torn if its header is incomplete, if its header checks out but its
+ * payload runs past the end of the log, if it is the last record and
+ * its payload checksum does not match, or if its header does not check
+ * out and nothing but zeros follows (space that the file system gave
+ * the log before the crash). Since the header checksum covers the
+ * length, a damaged length can't pass for a torn record. Any other
+ * damage means that something other than a crash went wrong, so we
+ * refuse to open the log rather than throw away the records after it.
+ *
+ * @author Your Name Here
+ */
+public class FileBlockStore implements BlockStore, Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Where the kind of a record is in its header.
+   */
+  static final int KIND = 2 * Integer.BYTES;
+
+  /**
+   * Where the checksum of the header is in the header.
+   */
+  static final int HEADER_CHECKSUM = KIND + 1;
+
+  /**
+   * The number of bytes in the header of a record.
+   */
+  static final int HEADER = HEADER_CHECKSUM + Integer.BYTES;
+
+  /**
+   * The kind of record that adds a block.
+   */
+  static final byte APPEND = 0;
+
+  /**
+   * The kind of record that removes the last block.
+   */
+  static final byte TRUNCATE = 1;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The log.
+   */
+  FileChannel channel;
+
+  /**
+   * The store that holds the blocks.
+   */
+  BlockStore memory;
+
+  /**
+   * How long the first appender waits for others before syncing.
+   */
+  long commitNanos;
+
+  /**
+   * The end of the log. Guarded by this store.
+   */
+  long written;
+
+  /**
+   * How much of the log we know is on disk. Guarded by commits.
+   */
+  long durable;
+
+  /**
+   * Whether some appender is syncing the log. Guarded by commits.
+   */
+  boolean syncing = false;
+
+  /**
+   * The number of times we've synced the log. Guarded by commits.
+   */
+  int syncs = 0;
+
+  /**
+   * Whether a change failed in a way that we could not undo, so that we
+   * no longer know what the log holds. Guarded by this store.
+   */
+  boolean failed = false;
+
+  /**
+   * The lock for group commits.
+   */
+  final Object commits = new Object();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Open (or create) a log, keeping its blocks in an object store and
+   * syncing each change as soon as it is written.
+   *
+   * @param path
+   *   Where the log lives.
+   *
+   * @throws IOException
+   *   If we cannot read or write the log, or it is damaged before its
+   *   last record.
+   */
+  public FileBlockStore(Path path) throws IOException {
+    this(path, new ObjectBlockStore(), Duration.ZERO);
+  } // FileBlockStore(Path)
+
+  /**
+   * Open (or create) a log.
+   *
+   * @param path
+   *   Where the log lives.
+   * @param memory
+   *   An empty store to hold the blocks.
+   * @param commitDelay
+   *   How long the first appender should wait for others to join its
+   *   sync.
+   *
+   * @throws IOException
+   *   If we cannot read or write the log, or it is damaged before its
+   *   last record.
+   * @throws IllegalArgumentException
+   *   If the store is not empty or the delay is negative.
+   */
+  public FileBlockStore(Path path, BlockStore memory, Duration commitDelay)
+      throws IOException {
+    if (memory.size() != 0) {
+      throw new IllegalArgumentException("The store must be empty");
+    } else if (commitDelay.isNegative()) {
+      throw new IllegalArgumentException("Negative commit delay");
+    } // if/else
+    this.memory = memory;
+    this.commitNanos = commitDelay.toNanos();
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      this.recover();
+    } catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    } // try/catch
+  } // FileBlockStore(Path, BlockStore, Duration)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Compute the checksum of the payload of a record.
+   *
+   * @param record
+   *   The record, including its header, starting at index 0.
+   *
+   * @return the checksum of everything after the header.
+   */
+  static int checksum(ByteBuffer record) {
+    CRC32C crc = new CRC32C();
+    crc.update(record.duplicate().position(HEADER));
+    return (int) crc.getValue();
+  } // checksum(ByteBuffer)
+
+  /**
+   * Compute the checksum of the header of a record.
+   *
+   * @param record
+   *   The record (or just its header), starting at index 0.
+   *
+   * @return the checksum of the length, payload checksum, and kind.
+   */
+  static int headerChecksum(ByteBuffer record) {
+    CRC32C crc = new CRC32C();
+    crc.update(record.duplicate().position(0).limit(HEADER_CHECKSUM));
+    return (int) crc.getValue();
+  } // headerChecksum(ByteBuffer)
+
+  /**
+   * Determine if the header of a record checks out.
+   *
+   * @param record
+   *   The record (or just its header), starting at index 0.
+   *
+   * @return true if the header checksum matches and false otherwise.
+   */
+  static boolean headerMatches(ByteBuffer record) {
+    return record.getInt(HEADER_CHECKSUM) == headerChecksum(record);
+  } // headerMatches(ByteBuffer)
+
+  /**
+   * Determine if a file holds nothing but zeros from some point on.
+   *
+   * @param channel
+   *   The file.
+   * @param position
+   *   Where to start looking.
+   *
+   * @return true if every byte from the position on is zero and false
+   *   otherwise.
+   *
+   * @throws IOException
+   *   If we cannot read the file.
+   */
+  static boolean blank(FileChannel channel, long position) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    while (true) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        return true;
+      } // if
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) != 0) {
+          return false;
+        } // if
+      } // for
+      position += read;
+    } // while
+  } // blank(FileChannel, long)
+
+  /**
+   * Build a record.
+   *
+   * @param kind
+   *   The kind of record.
+   * @param blk
+   *   The block for the payload (or null, for no payload).
+   *
+   * @return a buffer that holds the record.
+   */
+  static ByteBuffer record(byte kind, Block blk) {
+    int length = (blk == null) ? 0 : blk.encodedLength();
+    ByteBuffer record = ByteBuffer.allocate(HEADER + length);
+    record.putInt(length).putInt(0).put(kind).putInt(0);
+    if (blk != null) {
+      blk.encode(record);
+    } // if
+    record.flip();
+    record.putInt(Integer.BYTES, checksum(record));
+    return record.putInt(HEADER_CHECKSUM, headerChecksum(record));
+  } // record(byte, Block)
+
+  /**
+   * Read everything in a buffer from the log.
+   *
+   * @param buffer
+   *   The buffer to fill.
+   * @param position
+   *   Where to start reading.
+   *
+   * @return true if we filled the buffer and false if the log ended
+   *   first.
+   */
+  boolean readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = this.channel.read(buffer, position);
+      if (read < 0) {
+        return false;
+      } // if
+      position += read;
+    } // while
+    buffer.flip();
+    return true;
+  } // readFully(ByteBuffer, long)
+
+  /**
+   * Replay the log into the memory store, cutting off a torn record at
+   * the end (see the class comment for which records count as torn).
+   *
+   * @throws IOException
+   *   If we cannot read the log, or if a record is damaged in a way that
+   *   a crash can't explain or does not fit the chain (in which case we
+   *   leave the log alone).
+   */
+  void recover() throws IOException {
+    long size = this.channel.size();
+    long position = 0;
+    ByteBuffer header = ByteBuffer.allocate(HEADER);
+    while (position < size) {
+      header.clear();
+      if (!this.readFully(header, position)) {
+        break;
+      } // if
+      if (!headerMatches(header)) {
+        if (blank(this.channel, position)) {
+          break;
+        } // if
+        throw new IOException("Damaged record header at " + position);
+      } // if
+      int length = header.getInt(0);
+      if (length < 0) {
+        throw new IOException("Invalid record length at " + position);
+      } else if (length > size - position - HEADER) {
+        break;
+      } // if/else
+      ByteBuffer record = ByteBuffer.allocate(HEADER + length);
+      if (!this.readFully(record, position)) {
+        break;
+      } // if
+      if (record.getInt(Integer.BYTES) != checksum(record)) {
+        if (position + HEADER + length == size) {
+          break;
+        } // if
+        throw new IOException("Damaged record at " + position);
+      } // if
+      if (!this.replay(record.get(KIND),
+          record.position(HEADER))) {
+        throw new IOException("The record at " + position
+            + " does not fit the chain");
+      } // if
+      position += HEADER + length;
+    } // while
+    if (position < size) {
+      this.channel.truncate(position);
+      this.channel.force(true);
+    } // if
+    this.written = position;
+    this.durable = position;
+  } // recover()
+
+  /**
+   * Apply one record from the log to the memory store.
+   *
+   * @param kind
+   *   The kind of record.
+   * @param payload
+   *   The payload of the record.
+   *
+   * @return true if the record made sense and false otherwise.
+   */
+  boolean replay(byte kind, ByteBuffer payload) {
+    try {
+      if ((kind == APPEND) && (payload.hasRemaining())) {
+        Block blk = Block.decode(payload);
+        if (payload.hasRemaining()) {
+          return false;
+        } // if
+        this.memory.add(blk);
+        return true;
+      } else if ((kind == TRUNCATE) && !payload.hasRemaining()
+          && (this.memory.size() > 0)) {
+        this.memory.removeLast();
+        return true;
+      } // if/else
+    } catch (IllegalArgumentException e) {
+      // The payload is not a block that can follow the others.
+    } // try/catch
+    return false;
+  } // replay(byte, ByteBuffer)
+
+  /**
+   * Write a record to the end of the log.
+   *
+   * @param record
+   *   The record to write.
+   *
+   * @return where the log now ends.
+   */
+  long write(ByteBuffer record) {
+    if (this.failed) {
+      throw new UncheckedIOException(
+          new IOException("The log has failed; reopen the store"));
+    } // if
+    long start = this.written;
+    try {
+      long position = start;
+      while (record.hasRemaining()) {
+        position += this.channel.write(record, position);
+      } // while
+      this.written = position;
+      return position;
+    } catch (IOException e) {
+      this.cut(start);
+      throw new UncheckedIOException(e);
+    } // try/catch
+  } // write(ByteBuffer)
+
+  /**
+   * Cut the log back to a point, giving up on the store if we can't.
+   *
+   * @param end
+   *   The new end of the log.
+   */
+  void cut(long end) {
+    try {
+      this.channel.truncate(end);
+      this.written = end;
+    } catch (IOException e) {
+      this.failed = true;
+    } // try/catch
+  } // cut(long)
+
+  /**
+   * Undo a change whose record did not reach the disk: cut the record
+   * from the log and undo the change in the memory store. If others
+   * have written since, we cannot cut just our record, so we give up
+   * on the store.
+   *
+   * @param start
+   *   Where the record starts.
+   * @param end
+   *   Where the record ends.
+   * @param undo
+   *   How to undo the change in the memory store.
+   */
+  synchronized void rollback(long start, long end, Runnable undo) {
+    if (!this.failed && (this.written == end)) {
+      this.cut(start);
+      if (!this.failed) {
+        undo.run();
+        return;
+      } // if
+    } // if
+    this.failed = true;
+  } // rollback(long, long, Runnable)
+
+  /**
+   * Wait until the log is on disk up to a point, syncing it ourselves
+   * unless another appender is already doing so.
+   *
+   * @param end
+   *   The point in the log.
+   *
+   * @throws UncheckedIOException
+   *   If we cannot sync the log or are interrupted while waiting.
+   */
+  void sync(long end) {
+    synchronized (this.commits) {
+      while (this.syncing && (this.durable < end)) {
+        try {
+          this.commits.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new UncheckedIOException(
+              new InterruptedIOException("Interrupted during sync"));
+        } // try/catch
+      } // while
+      if (this.durable >= end) {
+        return;
+      } // if
+      this.syncing = true;
+    } // synchronized
+    long upTo = -1;
+    try {
+      if (this.commitNanos > 0) {
+        Thread.sleep(this.commitNanos / 1_000_000,
+            (int) (this.commitNanos % 1_000_000));
+      } // if
+      synchronized (this) {
+        upTo = this.written;
+      } // synchronized
+      this.channel.force(false);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      upTo = -1;
+      throw new UncheckedIOException(
+          new InterruptedIOException("Interrupted during sync"));
+    } catch (IOException e) {
+      upTo = -1;
+      throw new UncheckedIOException(e);
+    } finally {
+      synchronized (this.commits) {
+        if (upTo >= 0) {
+          this.durable = Math.max(this.durable, upTo);
+          this.syncs++;
+        } // if
+        this.syncing = false;
+        this.commits.notifyAll();
+      } // synchronized
+    } // try/catch/finally
+  } // sync(long)
+
+  /**
+   * Add a block to the memory store and write it to the log, without
+   * waiting for the log to reach the disk.
+   *
+   * @param blk
+   *   The block to add.
+   *
+   * @return where the log now ends.
+   */
+  synchronized long write(Block blk) {
+    this.memory.add(blk);
+    try {
+      return this.write(record(APPEND, blk));
+    } catch (UncheckedIOException e) {
+      this.memory.removeLast();
+      throw e;
+    } // try/catch
+  } // write(Block)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  public synchronized int size() {
+    return this.memory.size();
+  } // size()
+
+  /**
+   * Get one block.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the block.
+   */
+  public synchronized Block get(int num) {
+    return this.memory.get(num);
+  } // get(int)
+
+  /**
+   * Get the hash of one block.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the hash of the block.
+   */
+  public synchronized Hash getHash(int num) {
+    return this.memory.getHash(num);
+  } // getHash(int)
+
+  /**
+   * Add a block to the end of the store, returning once it is on disk.
+   *
+   * @param blk
+   *   The block to add.
+   *
+   * @throws IllegalArgumentException
+   *   If the memory store cannot hold the block.
+   * @throws UncheckedIOException
+   *   If we cannot write or sync the log. The block is then not in the
+   *   store, unless others have changed the store since we wrote it, in
+   *   which case the store refuses any more changes.
+   */
+  public void add(Block blk) {
+    long start;
+    long end;
+    synchronized (this) {
+      start = this.written;
+      end = this.write(blk);
+    } // synchronized
+    try {
+      this.sync(end);
+    } catch (UncheckedIOException e) {
+      this.rollback(start, end, this.memory::removeLast);
+      throw e;
+    } // try/catch
+  } // add(Block)
+
+  /**
+   * Remove the last block from the store, returning once the removal
+   * is on disk.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If the store is empty.
+   * @throws UncheckedIOException
+   *   If we cannot write or sync the log. The block is then still in the
+   *   store, unless others have changed the store since we wrote the
+   *   removal, in which case the store refuses any more changes.
+   */
+  public void removeLast() {
+    Block removed;
+    long start;
+    long end;
+    synchronized (this) {
+      if (this.memory.size() == 0) {
+        throw new IndexOutOfBoundsException("The store is empty");
+      } // if
+      removed = this.memory.get(this.memory.size() - 1);
+      start = this.written;
+      end = this.write(record(TRUNCATE, null));
+      this.memory.removeLast();
+    } // synchronized
+    try {
+      this.sync(end);
+    } catch (UncheckedIOException e) {
+      this.rollback(start, end, () -> this.memory.add(removed));
+      throw e;
+    } // try/catch
+  } // removeLast()
+
+  /**
+   * Determine if the memory store shares its blocks.
+   *
+   * @return true if it does and false otherwise.
+   */
+  public boolean sharesBlocks() {
+    return this.memory.sharesBlocks();
+  } // sharesBlocks()
+
+  /**
+   * Close the log. The blocks stay available in memory.
+   *
+   * @throws IOException
+   *   If we cannot close the log.
+   */
+  public void close() throws IOException {
+    this.channel.close();
+  } // close()
+} // class FileBlockStore
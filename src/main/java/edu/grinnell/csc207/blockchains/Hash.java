@@ -1,16 +1,63 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
 /**
- * Encapsulated hashes.
+ * Encapsulated hashes. Hashes are compared as unsigned big-endian
+ * numbers, so a smaller hash is a "harder" one.
  *
  * @author Your Name Here
  * @author Samuel A. Rebelsky
  */
-public class Hash {
+public class Hash implements Comparable<Hash> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The hex digits.
+   */
+  static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+  /**
+   * The values of hex digits, indexed by character, with -1 for
+   * characters that are not hex digits.
+   */
+  static final byte[] VALUES = new byte[128];
+
+  static {
+    Arrays.fill(VALUES, (byte) -1);
+    for (int i = 0; i < 16; i++) {
+      VALUES[DIGITS[i]] = (byte) i;
+      VALUES[Character.toLowerCase(DIGITS[i])] = (byte) i;
+    } // for
+  } // static
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
+  /**
+   * The bytes in the hash.
+   */
+  byte[] data;
+
+  /**
+   * Whether the bytes are shared with someone else who may change them
+   * (see <code>view</code>).
+   */
+  boolean shared;
+
+  /**
+   * The hash code, once we've computed it. (Zero means that we have not
+   * computed it, or that it happens to be zero.)
+   */
+  int code;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -22,9 +69,175 @@ public class Hash {
    *   The data to copy into the hash.
    */
   public Hash(byte[] data) {
-    // STUB
+    this.data = Arrays.copyOf(data, data.length);
   } // Hash(byte[])
 
+  /**
+   * Create a hash with no data. Only for <code>view</code>.
+   */
+  private Hash() {
+  } // Hash()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Create a hash that shares its bytes with an array, rather than
+   * copying them. Changes to the array show up in the hash, which lets
+   * miners check many hashes without allocating a new one for each.
+   * Since the bytes can change, views do not cache their hash codes.
+   *
+   * @param data
+   *   The array of bytes to share.
+   *
+   * @return a hash that views those bytes.
+   */
+  static Hash view(byte[] data) {
+    Hash result = new Hash();
+    result.data = data;
+    result.shared = true;
+    return result;
+  } // view(byte[])
+
+  /**
+   * Create a hash from part of an array of bytes.
+   *
+   * @param data
+   *   The array.
+   * @param from
+   *   The index of the first byte of the hash.
+   * @param to
+   *   One past the index of the last byte of the hash.
+   *
+   * @return the hash, which has its own copy of the bytes.
+   */
+  static Hash copyOf(byte[] data, int from, int to) {
+    Hash result = new Hash();
+    result.data = Arrays.copyOfRange(data, from, to);
+    return result;
+  } // copyOf(byte[], int, int)
+
+  /**
+   * Create a hash from a string of hex digits (in either case).
+   *
+   * @param hex
+   *   The hex digits, two per byte.
+   *
+   * @return the hash.
+   *
+   * @throws IllegalArgumentException
+   *   If the string has an odd length or contains a character that
+   *   is not a hex digit.
+   */
+  public static Hash fromHex(CharSequence hex) {
+    Hash result = new Hash();
+    result.data = hexBytes(hex);
+    return result;
+  } // fromHex(CharSequence)
+
+  /**
+   * Read a hash from the current position of a buffer, advancing the
+   * position past it.
+   *
+   * @param buffer
+   *   The buffer to read from.
+   * @param length
+   *   The number of bytes in the hash.
+   *
+   * @return the hash.
+   *
+   * @throws BufferUnderflowException
+   *   If the buffer has fewer than length bytes remaining.
+   */
+  public static Hash read(ByteBuffer buffer, int length) {
+    Hash result = new Hash();
+    result.data = new byte[length];
+    buffer.get(result.data);
+    return result;
+  } // read(ByteBuffer, int)
+
+  /**
+   * Read a hash from a particular offset of a buffer, leaving the
+   * position of the buffer alone.
+   *
+   * @param buffer
+   *   The buffer to read from.
+   * @param offset
+   *   Where the hash starts.
+   * @param length
+   *   The number of bytes in the hash.
+   *
+   * @return the hash.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If the hash does not fit within the buffer.
+   */
+  public static Hash read(ByteBuffer buffer, int offset, int length) {
+    Hash result = new Hash();
+    result.data = new byte[length];
+    buffer.get(offset, result.data);
+    return result;
+  } // read(ByteBuffer, int, int)
+
+  // +----------------+----------------------------------------------
+  // | Static helpers |
+  // +----------------+
+
+  /**
+   * Convert a string of hex digits to bytes.
+   *
+   * @param hex
+   *   The hex digits, two per byte.
+   *
+   * @return the bytes.
+   *
+   * @throws IllegalArgumentException
+   *   If the string has an odd length or contains a character that
+   *   is not a hex digit.
+   */
+  static byte[] hexBytes(CharSequence hex) {
+    if (hex.length() % 2 != 0) {
+      throw new IllegalArgumentException("Odd-length hex: " + hex);
+    } // if
+    byte[] result = new byte[hex.length() / 2];
+    for (int i = 0; i < result.length; i++) {
+      int hi = hexValue(hex.charAt(2 * i));
+      int lo = hexValue(hex.charAt(2 * i + 1));
+      if ((hi | lo) < 0) {
+        throw new IllegalArgumentException("Invalid hex: " + hex);
+      } // if
+      result[i] = (byte) ((hi << 4) | lo);
+    } // for
+    return result;
+  } // hexBytes(CharSequence)
+
+  /**
+   * Get the value of a hex digit.
+   *
+   * @param c
+   *   The digit.
+   *
+   * @return the value of the digit, or -1 if it is not a hex digit.
+   */
+  static int hexValue(char c) {
+    return (c < VALUES.length) ? VALUES[c] : -1;
+  } // hexValue(char)
+
+  /**
+   * Append bytes to a string builder in hex.
+   *
+   * @param bytes
+   *   The bytes.
+   * @param builder
+   *   The builder to append to.
+   */
+  static void appendHex(byte[] bytes, StringBuilder builder) {
+    for (byte b : bytes) {
+      builder.append(DIGITS[(b >> 4) & 0xF]).append(DIGITS[b & 0xF]);
+    } // for
+  } // appendHex(byte[], StringBuilder)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -35,7 +248,7 @@ public class Hash {
    * @return the number of bytes in the hash.
    */
   public int length() {
-    return 0;   // STUB
+    return this.data.length;
   } // length()
 
   /**
@@ -48,7 +261,7 @@ public class Hash {
    * @return the ith byte
    */
   public byte get(int i) {
-    return 0;   // STUB
+    return this.data[i];
   } // get()
 
   /**
@@ -58,16 +271,81 @@ public class Hash {
    * @return a copy of the bytes in the hash.
    */
   public byte[] getBytes() {
-    return new byte[] {1, 2, 3, 4, 5};      // STUB
+    return Arrays.copyOf(this.data, this.data.length);
   } // getBytes()
 
+  /**
+   * Get a read-only view of the bytes in the hash, without copying them.
+   *
+   * @return a read-only buffer of the bytes in the hash.
+   */
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(this.data).asReadOnlyBuffer();
+  } // asByteBuffer()
+
+  /**
+   * Append the hash, in hex, to a string builder.
+   *
+   * @param builder
+   *   The builder to append to.
+   *
+   * @return the builder.
+   */
+  public StringBuilder appendHex(StringBuilder builder) {
+    builder.ensureCapacity(builder.length() + 2 * this.data.length);
+    appendHex(this.data, builder);
+    return builder;
+  } // appendHex(StringBuilder)
+
+  /**
+   * Put the hash, in hex, into a character buffer, advancing its
+   * position.
+   *
+   * @param buffer
+   *   The buffer to write to.
+   *
+   * @return the buffer.
+   *
+   * @throws BufferOverflowException
+   *   If the buffer does not have room for the hex digits (in which case
+   *   nothing is written).
+   */
+  public CharBuffer putHex(CharBuffer buffer) {
+    if (buffer.remaining() < 2 * this.data.length) {
+      throw new BufferOverflowException();
+    } // if
+    for (byte b : this.data) {
+      buffer.put(DIGITS[(b >> 4) & 0xF]).put(DIGITS[b & 0xF]);
+    } // for
+    return buffer;
+  } // putHex(CharBuffer)
+
+  /**
+   * Compare this hash to another as unsigned big-endian numbers. Shorter
+   * hashes that are prefixes of longer ones come first.
+   *
+   * @param other
+   *   The hash to compare to.
+   *
+   * @return a negative number if this hash comes first, zero if they are
+   *   equal, and a positive number if the other hash comes first.
+   */
+  public int compareTo(Hash other) {
+    return Arrays.compareUnsigned(this.data, other.data);
+  } // compareTo(Hash)
+
   /**
    * Convert to a hex string.
    *
    * @return the hash as a hex string.
    */
   public String toString() {
-    return "";          // STUB
+    char[] chars = new char[this.data.length * 2];
+    for (int i = 0; i < this.data.length; i++) {
+      chars[2 * i] = DIGITS[(this.data[i] >> 4) & 0xF];
+      chars[2 * i + 1] = DIGITS[this.data[i] & 0xF];
+    } // for
+    return new String(chars);
   } // toString()
 
   /**
@@ -80,15 +358,31 @@ public class Hash {
    *   otherwise.
    */
   public boolean equals(Object other) {
-    return false;       // STUB
+    if (!(other instanceof Hash)) {
+      return false;
+    } // if
+    Hash that = (Hash) other;
+    // Cached codes that differ let us skip comparing the bytes.
+    if ((this.code != 0) && (that.code != 0) && (this.code != that.code)) {
+      return false;
+    } // if
+    return Arrays.equals(this.data, that.data);
   } // equals(Object)
 
   /**
-   * Get the hash code of this object.
+   * Get the hash code of this object. We compute the code once and
+   * cache it, unless the hash is a view whose bytes may change.
    *
    * @return the hash code.
    */
   public int hashCode() {
-    return this.toString().hashCode();
+    int result = this.code;
+    if ((result == 0) || this.shared) {
+      result = Arrays.hashCode(this.data);
+      if (!this.shared) {
+        this.code = result;
+      } // if
+    } // if
+    return result;
   } // hashCode()
 } // class Hash
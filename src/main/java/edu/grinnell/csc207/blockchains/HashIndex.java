@@ -0,0 +1,178 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * An index from the hashes of the blocks in a store to their numbers.
+ * We keep just the number and hash code of each block, in an
+ * open-addressed table, and compare hashes by asking the store, so the
+ * index costs eight bytes per slot however long the hashes are.
+ *
+ * @author Your Name Here
+ */
+final class HashIndex {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The initial number of slots (a power of two).
+   */
+  static final int INITIAL_SLOTS = 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The store that holds the blocks.
+   */
+  BlockStore blocks;
+
+  /**
+   * One more than the number of the block in each slot (so that 0 means
+   * an empty slot).
+   */
+  int[] slots = new int[INITIAL_SLOTS];
+
+  /**
+   * The mixed hash code of the block in each slot.
+   */
+  int[] codes = new int[INITIAL_SLOTS];
+
+  /**
+   * The number of blocks in the index.
+   */
+  int size = 0;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Index the blocks in a store.
+   *
+   * @param blocks
+   *   The store.
+   */
+  HashIndex(BlockStore blocks) {
+    this.blocks = blocks;
+    for (int i = 0; i < blocks.size(); i++) {
+      this.add(blocks.getHash(i), i);
+    } // for
+  } // HashIndex(BlockStore)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Mix the bits of a hash code, so that nearby codes land in different
+   * slots.
+   *
+   * @param hash
+   *   The hash.
+   *
+   * @return the mixed code.
+   */
+  static int code(Hash hash) {
+    int code = hash.hashCode() * 0x9E3779B9;
+    return code ^ (code >>> 16);
+  } // code(Hash)
+
+  /**
+   * Put a block in the first free slot after its home.
+   *
+   * @param code
+   *   The mixed hash code of the block.
+   * @param slot
+   *   One more than the number of the block.
+   */
+  void place(int code, int slot) {
+    int mask = this.slots.length - 1;
+    int i = code & mask;
+    while (this.slots[i] != 0) {
+      i = (i + 1) & mask;
+    } // while
+    this.slots[i] = slot;
+    this.codes[i] = code;
+  } // place(int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Find the number of the block with a hash.
+   *
+   * @param hash
+   *   The hash.
+   *
+   * @return the number of the block, or -1 if no block has that hash.
+   */
+  int find(Hash hash) {
+    int code = code(hash);
+    int mask = this.slots.length - 1;
+    for (int i = code & mask; this.slots[i] != 0; i = (i + 1) & mask) {
+      if ((this.codes[i] == code)
+          && this.blocks.getHash(this.slots[i] - 1).equals(hash)) {
+        return this.slots[i] - 1;
+      } // if
+    } // for
+    return -1;
+  } // find(Hash)
+
+  /**
+   * Add a block to the index.
+   *
+   * @param hash
+   *   The hash of the block.
+   * @param num
+   *   The number of the block.
+   */
+  void add(Hash hash, int num) {
+    if (4 * (this.size + 1) > 3 * this.slots.length) {
+      int[] oldSlots = this.slots;
+      int[] oldCodes = this.codes;
+      this.slots = new int[2 * oldSlots.length];
+      this.codes = new int[2 * oldSlots.length];
+      for (int i = 0; i < oldSlots.length; i++) {
+        if (oldSlots[i] != 0) {
+          this.place(oldCodes[i], oldSlots[i]);
+        } // if
+      } // for
+    } // if
+    this.place(code(hash), num + 1);
+    this.size++;
+  } // add(Hash, int)
+
+  /**
+   * Remove a block from the index, shifting back the blocks after it
+   * so that every block stays reachable from its home slot.
+   *
+   * @param hash
+   *   The hash of the block.
+   * @param num
+   *   The number of the block.
+   */
+  void remove(Hash hash, int num) {
+    int mask = this.slots.length - 1;
+    int i = code(hash) & mask;
+    while (this.slots[i] != num + 1) {
+      if (this.slots[i] == 0) {
+        return;
+      } // if
+      i = (i + 1) & mask;
+    } // while
+    this.slots[i] = 0;
+    this.size--;
+    for (int j = (i + 1) & mask; this.slots[j] != 0; j = (j + 1) & mask) {
+      int home = this.codes[j] & mask;
+      // Move the block back if its home is not between the hole and it.
+      if (((j - home) & mask) >= ((j - i) & mask)) {
+        this.slots[i] = this.slots[j];
+        this.codes[i] = this.codes[j];
+        this.slots[j] = 0;
+        i = j;
+      } // if
+    } // for
+  } // remove(Hash, int)
+} // class HashIndex
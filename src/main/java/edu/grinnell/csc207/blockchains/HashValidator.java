@@ -16,4 +16,19 @@ public interface HashValidator {
    */
   boolean isValid(Hash hash);
 
+  /**
+   * Get the validator for a particular block. Most validators use the
+   * same criterion for every block. Those whose difficulty changes over
+   * time (e.g., <code>AdaptiveValidator</code>) return the one that is
+   * in force for that block.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the validator for that block.
+   */
+  default HashValidator forBlock(int num) {
+    return this;
+  } // forBlock(int)
+
 } // interface HashValidator
@@ -0,0 +1,360 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Read-only stores that map a log written by a
+ * <code>FileBlockStore</code> into memory. Opening the store only walks
+ * the headers of the records to find where each block starts; we don't
+ * decode a block, or compute any hashes, until someone asks for it.
+ *
+ * The log doesn't hold the hashes of blocks, but every block but the
+ * last holds the hash of the block before it. So we take the previous
+ * hash of block n+1 as the hash of block n (and compute the hash of the
+ * last block the first time we need it). As with the other stores that
+ * rebuild blocks, <code>hashMatches</code> tells us if that hash is
+ * wrong.
+ *
+ * As we open the log, we check the header of every record, which
+ * covers its length and kind, with the same rules as
+ * <code>FileBlockStore</code>, so the two agree on which records the
+ * log holds. Checking the payloads would mean reading the whole log, so
+ * we check the payload of a block the first time we use it (and throw
+ * an <code>UncheckedIOException</code> if it is damaged), except for
+ * the last record, which we check right away in case it is torn. Call
+ * <code>verify</code> to check every payload up front. (A record with
+ * good checksums that doesn't hold a block only fails when we decode
+ * it.)
+ *
+ * @author Your Name Here
+ */
+public class MappedBlockStore implements BlockStore, Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes we try to map at once.
+   */
+  static final long REGION_BYTES = 1L << 30;
+
+  /**
+   * The number of bytes in each hash.
+   */
+  static final int HASH_BYTES = Sha256.HASH_BYTES;
+
+  /**
+   * The number of bytes at the end of an encoded block that hold the
+   * length of its previous hash, the previous hash, the nonce, and the
+   * time.
+   */
+  static final int TAIL = Integer.BYTES + HASH_BYTES + 2 * Long.BYTES;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The log.
+   */
+  FileChannel channel;
+
+  /**
+   * The mapped parts of the log.
+   */
+  ArrayList<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+
+  /**
+   * Where each block's record is: the region in the high half and the
+   * offset in the low half.
+   */
+  long[] locations = new long[16];
+
+  /**
+   * The number of blocks.
+   */
+  int size = 0;
+
+  /**
+   * The hash of the last block, once we've computed it.
+   */
+  Hash lastHash = null;
+
+  /**
+   * Whether we've checked the payload of each block. (Threads that race
+   * to check a payload both set the same flag, so we don't lock.)
+   */
+  boolean[] checked;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Map a log.
+   *
+   * @param path
+   *   Where the log lives.
+   *
+   * @throws IOException
+   *   If we cannot read the log, or it is damaged before its last
+   *   record.
+   */
+  public MappedBlockStore(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      this.scan();
+    } catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    } // try/catch
+  } // MappedBlockStore(Path)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Map part of the log.
+   *
+   * @param position
+   *   Where the part starts.
+   * @param bytes
+   *   The fewest bytes to map.
+   *
+   * @return the new region.
+   */
+  MappedByteBuffer map(long position, long bytes) throws IOException {
+    long length = Math.min(Math.max(bytes, REGION_BYTES),
+        this.channel.size() - position);
+    MappedByteBuffer region =
+        this.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    this.regions.add(region);
+    return region;
+  } // map(long, long)
+
+  /**
+   * Find where every block starts, following any truncations, with the
+   * same rules as <code>FileBlockStore</code>: we leave off a torn
+   * record at the end and refuse a log whose headers are damaged
+   * anywhere else. We only check the payload of the last record.
+   *
+   * @throws IOException
+   *   If we cannot read the log, or a record is damaged in a way that a
+   *   crash can't explain or does not fit the chain.
+   */
+  void scan() throws IOException {
+    long end = this.channel.size();
+    long position = 0;
+    long start = 0;
+    MappedByteBuffer region = null;
+    while (position + FileBlockStore.HEADER <= end) {
+      if ((region == null)
+          || (position + FileBlockStore.HEADER > start + region.capacity())) {
+        region = this.map(position, FileBlockStore.HEADER);
+        start = position;
+      } // if
+      int at = (int) (position - start);
+      if (!FileBlockStore.headerMatches(
+          region.slice(at, FileBlockStore.HEADER))) {
+        if (FileBlockStore.blank(this.channel, position)) {
+          break;
+        } // if
+        throw new IOException("Damaged record header at " + position);
+      } // if
+      int length = region.getInt(at);
+      if ((length < 0)
+          || (length > Integer.MAX_VALUE - FileBlockStore.HEADER)) {
+        throw new IOException("Invalid record length at " + position);
+      } else if (length > end - position - FileBlockStore.HEADER) {
+        break;
+      } // if/else
+      int bytes = FileBlockStore.HEADER + length;
+      if (at + bytes > region.capacity()) {
+        region = this.map(position, bytes);
+        start = position;
+        at = 0;
+      } // if
+      if ((position + bytes == end) && !matches(region, at)) {
+        break;
+      } // if
+      byte kind = region.get(at + FileBlockStore.KIND);
+      if ((kind == FileBlockStore.APPEND) && (length > 0)) {
+        if (this.size == this.locations.length) {
+          this.locations = Arrays.copyOf(this.locations, 2 * this.size);
+        } // if
+        this.locations[this.size++] =
+            ((long) (this.regions.size() - 1) << 32) | at;
+      } else if ((kind == FileBlockStore.TRUNCATE) && (length == 0)
+          && (this.size > 0)) {
+        this.size--;
+      } else {
+        throw new IOException("The record at " + position
+            + " does not fit the chain");
+      } // if/else
+      position += bytes;
+    } // while
+    this.checked = new boolean[this.size];
+  } // scan()
+
+  /**
+   * Determine if the payload of a record matches its checksum.
+   *
+   * @param region
+   *   The region that holds the record.
+   * @param at
+   *   Where the record starts in the region.
+   *
+   * @return true if the payload checks out and false otherwise.
+   */
+  static boolean matches(ByteBuffer region, int at) {
+    ByteBuffer record =
+        region.slice(at, FileBlockStore.HEADER + region.getInt(at));
+    return record.getInt(Integer.BYTES) == FileBlockStore.checksum(record);
+  } // matches(ByteBuffer, int)
+
+  /**
+   * Get the encoding of a block, checking its payload the first time.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return a buffer that holds just the encoding.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no such block.
+   * @throws UncheckedIOException
+   *   If the payload of the block is damaged.
+   */
+  ByteBuffer payload(int num) {
+    if ((num < 0) || (num >= this.size)) {
+      throw new IndexOutOfBoundsException("No block " + num);
+    } // if
+    long location = this.locations[num];
+    ByteBuffer region = this.regions.get((int) (location >>> 32));
+    int at = (int) location;
+    if (!this.checked[num]) {
+      if (!matches(region, at)) {
+        throw new UncheckedIOException(
+            new IOException("Damaged record for block " + num));
+      } // if
+      this.checked[num] = true;
+    } // if
+    return region.slice(at + FileBlockStore.HEADER, region.getInt(at));
+  } // payload(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Check the payload of every block now, rather than as we use them.
+   *
+   * @throws IOException
+   *   If the payload of any block is damaged.
+   */
+  public void verify() throws IOException {
+    for (int num = 0; num < this.size; num++) {
+      try {
+        this.payload(num);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      } // try/catch
+    } // for
+  } // verify()
+
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Decode one block from the log.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the block.
+   *
+   * @throws UncheckedIOException
+   *   If the record for the block (or the next block) is damaged.
+   */
+  public Block get(int num) {
+    return Block.decode(this.payload(num),
+        (num == this.size - 1) ? this.lastHash : this.getHash(num));
+  } // get(int)
+
+  /**
+   * Get the hash of one block, which is the previous hash of the next
+   * block (or, for the last block, the hash we compute for it).
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the hash of the block.
+   *
+   * @throws UncheckedIOException
+   *   If the record for the block (or the next block) is damaged.
+   */
+  public Hash getHash(int num) {
+    if (num == this.size - 1) {
+      if (this.lastHash == null) {
+        this.lastHash = Block.decode(this.payload(num)).getHash();
+      } // if
+      return this.lastHash;
+    } // if
+    ByteBuffer next = this.payload(num + 1);
+    int at = next.limit() - TAIL;
+    if ((at >= 0) && (next.getInt(at) == HASH_BYTES)) {
+      return Hash.read(next, at + Integer.BYTES, HASH_BYTES);
+    } // if
+    return Block.decode(next).getPrevHash();
+  } // getHash(int)
+
+  /**
+   * Mapped stores are read-only.
+   *
+   * @param blk
+   *   The block we would add.
+   *
+   * @throws UnsupportedOperationException
+   *   Always.
+   */
+  public void add(Block blk) {
+    throw new UnsupportedOperationException("Mapped stores are read-only");
+  } // add(Block)
+
+  /**
+   * Mapped stores are read-only.
+   *
+   * @throws UnsupportedOperationException
+   *   Always.
+   */
+  public void removeLast() {
+    throw new UnsupportedOperationException("Mapped stores are read-only");
+  } // removeLast()
+
+  /**
+   * Close the log. (The mapped regions stay valid until they are
+   * collected.)
+   *
+   * @throws IOException
+   *   If we cannot close the log.
+   */
+  public void close() throws IOException {
+    this.channel.close();
+  } // close()
+} // class MappedBlockStore
@@ -0,0 +1,93 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * Merkle roots of batches of transactions. Each transaction is hashed
+ * into a leaf, and pairs of hashes are hashed together, level by level,
+ * until one hash (the root) is left. When a level has an odd number of
+ * hashes, the last one moves up unchanged. (Duplicating it, as some
+ * chains do, lets two different batches have the same root.)
+ *
+ * Each leaf is a tag byte followed by the canonical encoding of a
+ * transaction. Leaves and interior nodes start with different tag bytes,
+ * so that no leaf can be mistaken for an interior node.
+ *
+ * @author Your Name Here
+ */
+final class MerkleTree {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The tag at the start of each leaf.
+   */
+  static final byte LEAF = 0;
+
+  /**
+   * The tag at the start of each interior node.
+   */
+  static final byte NODE = 1;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * We never create Merkle trees; we only compute their roots.
+   */
+  private MerkleTree() {
+  } // MerkleTree()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Compute the Merkle root of a nonempty batch of transactions.
+   *
+   * @param transactions
+   *   The transactions.
+   *
+   * @return the root.
+   */
+  static Hash root(Transaction[] transactions) {
+    byte[][] level = new byte[transactions.length][];
+    for (int i = 0; i < transactions.length; i++) {
+      level[i] = leaf(transactions[i]);
+    } // for
+    int size = level.length;
+    byte[] pair = new byte[1 + 2 * Sha256.HASH_BYTES];
+    pair[0] = NODE;
+    while (size > 1) {
+      int half = 0;
+      for (int i = 0; i < size; i += 2) {
+        if (i + 1 < size) {
+          System.arraycopy(level[i], 0, pair, 1, Sha256.HASH_BYTES);
+          System.arraycopy(level[i + 1], 0, pair, 1 + Sha256.HASH_BYTES,
+              Sha256.HASH_BYTES);
+          level[half++] = Sha256.hash(pair);
+        } else {
+          level[half++] = level[i];
+        } // if/else
+      } // for
+      size = half;
+    } // while
+    return Hash.view(level[0]);
+  } // root(Transaction[])
+
+  /**
+   * Compute the leaf hash of one transaction.
+   *
+   * @param t
+   *   The transaction.
+   *
+   * @return the hash of the leaf.
+   */
+  static byte[] leaf(Transaction t) {
+    byte[] encoding = t.encoding();
+    byte[] leaf = new byte[1 + encoding.length];
+    leaf[0] = LEAF;
+    System.arraycopy(encoding, 0, leaf, 1, encoding.length);
+    return Sha256.hash(leaf);
+  } // leaf(Transaction)
+} // class MerkleTree
@@ -0,0 +1,103 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * Things that mine blocks. The block constructor that takes a validator
+ * (<code>Block::new</code>) is the simplest miner.
+ *
+ * @author Your Name Here
+ */
+public interface Miner {
+  /**
+   * Mine for a block with the given contents whose hash meets the
+   * requirements of the validator. Miners should choose the same nonce
+   * as the block constructor, that is, the smallest non-negative nonce
+   * that gives a valid hash.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block.
+   */
+  Block mine(int num, Transaction transaction, Hash prevHash,
+      HashValidator check);
+
+  /**
+   * Mine for a block that holds a batch of transactions. By default, we
+   * mine sequentially with the block constructor.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transactions
+   *   The transactions for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block.
+   */
+  default Block mine(int num, Transaction[] transactions, Hash prevHash,
+      HashValidator check) {
+    return new Block(num, transactions, prevHash, check);
+  } // mine(int, Transaction[], Hash, HashValidator)
+
+  /**
+   * Mine for a block that was mined at a particular time (which the
+   * hash covers). Without a time, we mine as usual; otherwise, by
+   * default, we mine sequentially with the block constructor.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block is mined, in nanoseconds since the epoch (or
+   *   <code>Block.NO_TIME</code>).
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block.
+   */
+  default Block mine(int num, Transaction transaction, Hash prevHash,
+      long time, HashValidator check) {
+    if (time == Block.NO_TIME) {
+      return this.mine(num, transaction, prevHash, check);
+    } // if
+    return new Block(num, transaction, prevHash, time, check);
+  } // mine(int, Transaction, Hash, long, HashValidator)
+
+  /**
+   * Mine for a block that holds a batch of transactions and was mined at
+   * a particular time. Without a time, we mine as usual; otherwise, by
+   * default, we mine sequentially with the block constructor.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transactions
+   *   The transactions for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block is mined, in nanoseconds since the epoch (or
+   *   <code>Block.NO_TIME</code>).
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block.
+   */
+  default Block mine(int num, Transaction[] transactions, Hash prevHash,
+      long time, HashValidator check) {
+    if (time == Block.NO_TIME) {
+      return this.mine(num, transactions, prevHash, check);
+    } // if
+    return new Block(num, transactions, prevHash, time, check);
+  } // mine(int, Transaction[], Hash, long, HashValidator)
+} // interface Miner
@@ -0,0 +1,253 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of a search for the nonce of one block. A checkpoint
+ * records that the nonces from 0 up to (but not including)
+ * <code>getSearched()</code> have been tried and that none of them
+ * works, so mining can stop when it runs out of time and pick up later
+ * where it left off, without trying any nonce twice.
+ *
+ * A checkpoint is tied to the number, transaction, previous hash, and
+ * time (if any) of its block. It should be resumed with the same validator it was started
+ * with, since we can't tell whether two validators agree.
+ *
+ * Checkpoints are immutable; resuming one gives a new checkpoint.
+ *
+ * @author Your Name Here
+ */
+public class MiningCheckpoint {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of the block.
+   */
+  int num;
+
+  /**
+   * The transaction for the block.
+   */
+  Transaction transaction;
+
+  /**
+   * The hash of the previous block.
+   */
+  Hash prevHash;
+
+  /**
+   * When the block is mined (or <code>Block.NO_TIME</code>).
+   */
+  long time;
+
+  /**
+   * The number of nonces searched.
+   */
+  long searched;
+
+  /**
+   * The mined block, if we've found it.
+   */
+  Block block;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a checkpoint for a block that we have not yet started to
+   * mine.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   */
+  public MiningCheckpoint(int num, Transaction transaction, Hash prevHash) {
+    this(num, transaction, prevHash, Block.NO_TIME);
+  } // MiningCheckpoint(int, Transaction, Hash)
+
+  /**
+   * Create a checkpoint for a block, with a time, that we have not yet
+   * started to mine.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block is mined, in nanoseconds since the epoch (or
+   *   <code>Block.NO_TIME</code>).
+   */
+  public MiningCheckpoint(int num, Transaction transaction, Hash prevHash,
+      long time) {
+    this(num, transaction, prevHash, time, 0, null);
+  } // MiningCheckpoint(int, Transaction, Hash, long)
+
+  /**
+   * Create a checkpoint.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block is mined (or <code>Block.NO_TIME</code>).
+   * @param searched
+   *   The number of nonces searched.
+   * @param block
+   *   The mined block (or null, if we haven't found it).
+   */
+  MiningCheckpoint(int num, Transaction transaction, Hash prevHash,
+      long time, long searched, Block block) {
+    this.num = num;
+    this.transaction = transaction;
+    this.prevHash = prevHash;
+    this.time = time;
+    this.searched = searched;
+    this.block = block;
+  } // MiningCheckpoint(int, Transaction, Hash, long, long, Block)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if we've found the block.
+   *
+   * @return true if the block has been mined and false otherwise.
+   */
+  public boolean isDone() {
+    return this.block != null;
+  } // isDone()
+
+  /**
+   * Get the mined block.
+   *
+   * @return the block, or null if we haven't found it yet.
+   */
+  public Block getBlock() {
+    return this.block;
+  } // getBlock()
+
+  /**
+   * Get the number of nonces that have been searched.
+   *
+   * @return the number of nonces searched. If the block has been found,
+   *   this is one more than its nonce.
+   */
+  public long getSearched() {
+    return this.searched;
+  } // getSearched()
+
+  /**
+   * Determine if this checkpoint is for a block with particular
+   * contents.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   *
+   * @return true if the checkpoint is for that block and false otherwise.
+   */
+  public boolean isFor(int num, Transaction transaction, Hash prevHash) {
+    return (this.num == num) && this.transaction.equals(transaction)
+        && this.prevHash.equals(prevHash);
+  } // isFor(int, Transaction, Hash)
+
+  /**
+   * Continue mining for at most a number of attempts.
+   *
+   * @param check
+   *   The validator used to check the block.
+   * @param attempts
+   *   The most nonces to try.
+   *
+   * @return a checkpoint for the progress after mining.
+   */
+  public MiningCheckpoint resume(HashValidator check, long attempts) {
+    return this.resume(check, attempts, Long.MAX_VALUE);
+  } // resume(HashValidator, long)
+
+  /**
+   * Continue mining for at most a period of time. We check the time
+   * after every <code>ParallelMiner.CHUNK_SIZE</code> nonces, so we may
+   * go a little over.
+   *
+   * @param check
+   *   The validator used to check the block.
+   * @param budget
+   *   How long to mine.
+   *
+   * @return a checkpoint for the progress after mining.
+   */
+  public MiningCheckpoint resume(HashValidator check, Duration budget) {
+    return this.resume(check, Long.MAX_VALUE, budget.toNanos());
+  } // resume(HashValidator, Duration)
+
+  /**
+   * Get a string representation of the checkpoint.
+   *
+   * @return a string representation of the checkpoint.
+   */
+  public String toString() {
+    return String.format("[Block: %d, Transaction: %s, Searched: %d, %s]",
+        this.num, this.transaction, this.searched,
+        this.isDone() ? "Nonce: " + this.block.getNonce() : "Not found");
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Continue mining until we find the block or run out of attempts or
+   * time.
+   *
+   * @param check
+   *   The validator used to check the block.
+   * @param attempts
+   *   The most nonces to try.
+   * @param nanos
+   *   The most time to take, in nanoseconds.
+   *
+   * @return a checkpoint for the progress after mining.
+   */
+  MiningCheckpoint resume(HashValidator check, long attempts, long nanos) {
+    if (this.isDone()) {
+      return this;
+    } // if
+    long startTime = System.nanoTime();
+    long limit = (attempts > Long.MAX_VALUE - this.searched)
+        ? Long.MAX_VALUE
+        : this.searched + attempts;
+    NonceHasher hasher = new NonceHasher(Block.prefixBytes(this.num,
+        this.transaction, this.prevHash, this.time));
+    AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+    long next = this.searched;
+    while ((next < limit) && (System.nanoTime() - startTime < nanos)) {
+      long end = Math.min(limit, next + ParallelMiner.CHUNK_SIZE);
+      long nonce = hasher.search(next, end, check, best);
+      if (nonce >= 0) {
+        return new MiningCheckpoint(this.num, this.transaction, this.prevHash,
+            this.time, nonce + 1, new Block(this.num, this.transaction,
+                this.prevHash, this.time, nonce));
+      } // if
+      next = end;
+    } // while
+    return new MiningCheckpoint(this.num, this.transaction, this.prevHash,
+        this.time, next, null);
+  } // resume(HashValidator, long, long)
+} // class MiningCheckpoint
@@ -0,0 +1,627 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * A miner that hands out disjoint ranges of nonces to workers, which
+ * usually run in other processes on the same host and connect over
+ * localhost TCP (see <code>listen</code> and <code>MiningWorker</code>).
+ * Workers can also run in this process over an in-memory link (see
+ * <code>addLoopbackWorker</code>), which is handy for testing.
+ *
+ * Workers report the first valid nonce in each range. Once every range
+ * below the best nonce reported has been searched, the coordinator
+ * cancels the remaining ranges and builds the block. Hence, like the
+ * other miners, it finds the smallest valid nonce. If a worker goes
+ * away, its range is handed to another worker. The coordinator checks
+ * each nonce it is given, and drops a worker that reports a nonce that
+ * is not valid, handing its range to someone else.
+ *
+ * Since the workers need to know the validator, the coordinator only
+ * mines with <code>DifficultyValidator</code>s. It mines one block at a
+ * time (other callers wait their turn) and waits for workers if none
+ * are connected. Messages to workers are queued while we hold the lock
+ * and sent after we release it, so a slow worker only holds up the
+ * thread that is sending to it.
+ *
+ * @author Your Name Here
+ */
+public class MiningCoordinator implements Miner, AutoCloseable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of nonces in a range.
+   */
+  static final long RANGE_SIZE = 1 << 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The connected workers.
+   */
+  ArrayList<Link> workers = new ArrayList<Link>();
+
+  /**
+   * The block we're currently mining (or null, if we're not mining).
+   */
+  Job job = null;
+
+  /**
+   * The id of the next job.
+   */
+  long nextJobId = 0;
+
+  /**
+   * The socket we listen on (or null, if we aren't listening).
+   */
+  ServerSocket server = null;
+
+  /**
+   * Whether we've been closed.
+   */
+  boolean closed = false;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new coordinator with no workers.
+   */
+  public MiningCoordinator() {
+  } // MiningCoordinator()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Start listening for workers on the loopback interface.
+   *
+   * @param port
+   *   The port to listen on, or 0 for any free port.
+   *
+   * @return the port we're listening on.
+   *
+   * @throws IOException
+   *   If we cannot listen on that port.
+   */
+  public int listen(int port) throws IOException {
+    ServerSocket server =
+        new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    synchronized (this) {
+      this.server = server;
+    } // synchronized
+    Thread acceptor = new Thread(() -> {
+      try {
+        while (true) {
+          Socket socket = server.accept();
+          this.connect(MiningLink.of(socket));
+        } // while
+      } catch (IOException e) {
+        // The server socket was closed; stop accepting.
+      } // try/catch
+    }, "mining-coordinator");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    return server.getLocalPort();
+  } // listen(int)
+
+  /**
+   * Start a worker in this process, connected by an in-memory link.
+   */
+  public void addLoopbackWorker() {
+    MiningLink[] ends = MiningLink.pair();
+    Thread worker = new Thread(new MiningWorker(ends[1]), "mining-worker");
+    worker.setDaemon(true);
+    worker.start();
+    this.connect(ends[0]);
+  } // addLoopbackWorker()
+
+  /**
+   * Get the number of connected workers.
+   *
+   * @return the number of workers.
+   */
+  public synchronized int getWorkerCount() {
+    return this.workers.size();
+  } // getWorkerCount()
+
+  /**
+   * Mine for a block with the given contents whose hash meets the
+   * requirements of the validator.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block, which has the smallest valid nonce.
+   *
+   * @throws IllegalArgumentException
+   *   If the validator is not a difficulty validator.
+   * @throws IllegalStateException
+   *   If we are interrupted or closed while mining.
+   */
+  public Block mine(int num, Transaction transaction, Hash prevHash,
+      HashValidator check) {
+    if (!(check instanceof DifficultyValidator)) {
+      throw new IllegalArgumentException(
+          "Workers can only check difficulty validators");
+    } // if
+    Job job = new Job(num, transaction, prevHash, check,
+        String.format("%d %s %s %d %s %s",
+            num, MiningLink.field(transaction.getSource()),
+            MiningLink.field(transaction.getTarget()), transaction.getAmount(),
+            MiningLink.hex(prevHash.data),
+            MiningLink.hex(((DifficultyValidator) check).getTarget().data)));
+    try {
+      this.begin(job);
+      this.flush();
+      return this.await(job);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Mining interrupted");
+    } finally {
+      this.end(job);
+      this.flush();
+    } // try/catch/finally
+  } // mine(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Stop listening and disconnect all the workers.
+   */
+  public void close() {
+    ArrayList<Link> workers;
+    synchronized (this) {
+      this.closed = true;
+      workers = new ArrayList<Link>(this.workers);
+      if (this.server != null) {
+        try {
+          this.server.close();
+        } catch (IOException e) {
+          // Nothing more we can do.
+        } // try/catch
+      } // if
+      this.notifyAll();
+    } // synchronized
+    for (Link worker : workers) {
+      worker.link.close();
+    } // for
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Start talking to a new worker.
+   *
+   * @param link
+   *   The link to the worker.
+   */
+  void connect(MiningLink link) {
+    Link worker = new Link(link);
+    synchronized (this) {
+      if (this.closed) {
+        link.close();
+        return;
+      } // if
+      this.workers.add(worker);
+      if (this.job != null) {
+        this.assign(worker);
+      } // if
+    } // synchronized
+    this.flush(worker);
+    Thread reader = new Thread(() -> this.read(worker), "mining-link");
+    reader.setDaemon(true);
+    reader.start();
+  } // connect(MiningLink)
+
+  /**
+   * Read the reports from one worker until it goes away.
+   *
+   * @param worker
+   *   The worker.
+   */
+  void read(Link worker) {
+    try {
+      String line;
+      while ((line = worker.link.receive()) != null) {
+        String[] fields = line.split(" ");
+        if ("DONE".equals(fields[0])) {
+          if (!this.report(worker, Long.parseLong(fields[1]),
+              Long.parseLong(fields[2]), Long.parseLong(fields[4]))) {
+            break;
+          } // if
+          this.flush(worker);
+        } // if
+      } // while
+    } catch (IOException | RuntimeException e) {
+      // Treat a broken or confused worker like one that went away.
+    } // try/catch
+    this.lost(worker);
+    this.flush();
+  } // read(Link)
+
+  /**
+   * Wait for any earlier job to finish, then start a job by handing
+   * out ranges to the workers.
+   *
+   * @param job
+   *   The job.
+   *
+   * @throws InterruptedException
+   *   If we are interrupted while waiting.
+   * @throws IllegalStateException
+   *   If we are closed while waiting.
+   */
+  synchronized void begin(Job job) throws InterruptedException {
+    while (this.job != null) {
+      if (this.closed) {
+        throw new IllegalStateException("Coordinator closed while mining");
+      } // if
+      this.wait();
+    } // while
+    job.id = this.nextJobId++;
+    this.job = job;
+    for (Link worker : this.workers) {
+      this.assign(worker);
+    } // for
+  } // begin(Job)
+
+  /**
+   * Wait for a job to finish.
+   *
+   * @param job
+   *   The job.
+   *
+   * @return the mined block.
+   *
+   * @throws InterruptedException
+   *   If we are interrupted while waiting.
+   * @throws IllegalStateException
+   *   If we are closed while waiting.
+   */
+  synchronized Block await(Job job) throws InterruptedException {
+    while (!this.isDone()) {
+      if (this.closed) {
+        throw new IllegalStateException("Coordinator closed while mining");
+      } // if
+      this.wait();
+    } // while
+    return job.block;
+  } // await(Job)
+
+  /**
+   * Finish a job (if it's the current one), cancelling any ranges that
+   * are still being searched.
+   *
+   * @param job
+   *   The job.
+   */
+  synchronized void end(Job job) {
+    if (this.job != job) {
+      return;
+    } // if
+    for (Link worker : this.workers) {
+      if (worker.range != null) {
+        this.queue(worker, "CANCEL " + job.id);
+        worker.range = null;
+      } // if
+    } // for
+    this.job = null;
+    this.notifyAll();
+  } // end(Job)
+
+  /**
+   * Queue a line to send to a worker once we've released the lock.
+   *
+   * @param worker
+   *   The worker.
+   * @param line
+   *   The line.
+   */
+  void queue(Link worker, String line) {
+    synchronized (worker) {
+      worker.outbox.add(line);
+    } // synchronized
+  } // queue(Link, String)
+
+  /**
+   * Send the lines queued for a worker. If another thread is already
+   * sending to the worker, we leave the lines to that thread. Must be
+   * called without holding the lock on the coordinator.
+   *
+   * @param worker
+   *   The worker.
+   */
+  void flush(Link worker) {
+    synchronized (worker) {
+      if (worker.sending) {
+        return;
+      } // if
+      worker.sending = true;
+    } // synchronized
+    while (true) {
+      String line;
+      synchronized (worker) {
+        line = worker.outbox.poll();
+        if (line == null) {
+          worker.sending = false;
+          return;
+        } // if
+      } // synchronized
+      worker.link.send(line);
+    } // while
+  } // flush(Link)
+
+  /**
+   * Send the lines queued for every worker.
+   */
+  void flush() {
+    ArrayList<Link> workers;
+    synchronized (this) {
+      workers = new ArrayList<Link>(this.workers);
+    } // synchronized
+    for (Link worker : workers) {
+      this.flush(worker);
+    } // for
+  } // flush()
+
+  /**
+   * Give a worker its next range, if there is one.
+   *
+   * @param worker
+   *   The worker.
+   */
+  synchronized void assign(Link worker) {
+    Job job = this.job;
+    long start;
+    if (!job.retry.isEmpty() && (job.retry.peek() < job.best)) {
+      start = job.retry.poll();
+    } else if (job.next < job.best) {
+      start = job.next;
+      job.next += RANGE_SIZE;
+    } else {
+      return;
+    } // if/else
+    if (worker.jobId != job.id) {
+      this.queue(worker, "JOB " + job.id + " " + job.header);
+      worker.jobId = job.id;
+    } // if
+    worker.range = start;
+    this.queue(worker, String.format("RANGE %d %d %d", job.id, start,
+        start + RANGE_SIZE));
+  } // assign(Link)
+
+  /**
+   * Note that a worker has finished a range. We check any nonce the
+   * worker found before accepting it.
+   *
+   * @param worker
+   *   The worker.
+   * @param jobId
+   *   The job the range was for.
+   * @param start
+   *   The start of the range.
+   * @param nonce
+   *   The first valid nonce in the range, or -1 if there was none.
+   *
+   * @return false if the nonce is outside the range or not valid (in
+   *   which case the worker keeps the range until we drop it), true
+   *   otherwise.
+   */
+  synchronized boolean report(Link worker, long jobId, long start,
+      long nonce) {
+    Job job = this.job;
+    if ((job == null) || (jobId != job.id)
+        || (worker.range == null) || (worker.range != start)) {
+      // An answer to a range we've already cancelled.
+      return true;
+    } // if
+    if (nonce >= 0) {
+      if ((nonce < start) || (nonce >= start + RANGE_SIZE)) {
+        return false;
+      } // if
+      if (nonce < job.best) {
+        Block block = new Block(job.num, job.transaction, job.prevHash, nonce);
+        if (!job.check.isValid(block.getHash())) {
+          return false;
+        } // if
+        job.best = nonce;
+        job.block = block;
+      } // if
+    } // if
+    worker.range = null;
+    if (this.isDone()) {
+      this.notifyAll();
+    } else {
+      this.assign(worker);
+    } // if/else
+    return true;
+  } // report(Link, long, long, long)
+
+  /**
+   * Note that a worker has gone away, giving its range to someone else.
+   *
+   * @param worker
+   *   The worker.
+   */
+  synchronized void lost(Link worker) {
+    this.workers.remove(worker);
+    worker.link.close();
+    if ((this.job != null) && (worker.range != null)) {
+      this.job.retry.add(worker.range);
+      worker.range = null;
+      for (Link other : this.workers) {
+        if (other.range == null) {
+          this.assign(other);
+        } // if
+      } // for
+    } // if
+    this.notifyAll();
+  } // lost(Link)
+
+  /**
+   * Determine if the current job is done, which happens when we've
+   * found a valid nonce and searched every range below it.
+   *
+   * @return true if the job is done and false otherwise.
+   */
+  synchronized boolean isDone() {
+    if (this.job.best == Long.MAX_VALUE) {
+      return false;
+    } // if
+    for (Long start : this.job.retry) {
+      if (start < this.job.best) {
+        return false;
+      } // if
+    } // for
+    for (Link worker : this.workers) {
+      if ((worker.range != null) && (worker.range < this.job.best)) {
+        return false;
+      } // if
+    } // for
+    return true;
+  } // isDone()
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A block we're mining.
+   */
+  static class Job {
+    /**
+     * The id of the job (set when the job starts).
+     */
+    long id = -1;
+
+    /**
+     * The number of the block.
+     */
+    int num;
+
+    /**
+     * The transaction for the block.
+     */
+    Transaction transaction;
+
+    /**
+     * The hash of the previous block.
+     */
+    Hash prevHash;
+
+    /**
+     * The validator used to check the block.
+     */
+    HashValidator check;
+
+    /**
+     * The description of the block that we send to workers.
+     */
+    String header;
+
+    /**
+     * The start of the next range to hand out.
+     */
+    long next = 0;
+
+    /**
+     * The smallest valid nonce found so far.
+     */
+    long best = Long.MAX_VALUE;
+
+    /**
+     * The block with the smallest valid nonce found so far (or null, if
+     * we haven't found one).
+     */
+    Block block = null;
+
+    /**
+     * The starts of ranges that need to be handed out again.
+     */
+    PriorityQueue<Long> retry = new PriorityQueue<Long>();
+
+    /**
+     * Create a new job.
+     *
+     * @param num
+     *   The number of the block.
+     * @param transaction
+     *   The transaction for the block.
+     * @param prevHash
+     *   The hash of the previous block.
+     * @param check
+     *   The validator used to check the block.
+     * @param header
+     *   The description of the block that we send to workers.
+     */
+    Job(int num, Transaction transaction, Hash prevHash, HashValidator check,
+        String header) {
+      this.num = num;
+      this.transaction = transaction;
+      this.prevHash = prevHash;
+      this.check = check;
+      this.header = header;
+    } // Job(int, Transaction, Hash, HashValidator, String)
+  } // class Job
+
+  /**
+   * Our end of the link to a worker.
+   */
+  static class Link {
+    /**
+     * The link.
+     */
+    MiningLink link;
+
+    /**
+     * The last job the worker heard about.
+     */
+    long jobId = -1;
+
+    /**
+     * The start of the range the worker is searching (or null, if it's
+     * idle).
+     */
+    Long range = null;
+
+    /**
+     * The lines waiting to be sent to the worker. (Guarded by the lock
+     * on this link rather than on the coordinator.)
+     */
+    ArrayDeque<String> outbox = new ArrayDeque<String>();
+
+    /**
+     * Whether some thread is sending the lines in the outbox.
+     */
+    boolean sending = false;
+
+    /**
+     * Create a new link to a worker.
+     *
+     * @param link
+     *   The link.
+     */
+    Link(MiningLink link) {
+      this.link = link;
+    } // Link(MiningLink)
+  } // class Link
+} // class MiningCoordinator
@@ -0,0 +1,294 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * One end of a line-based connection between a mining coordinator and
+ * a mining worker. Links either run over a socket or, for testing and
+ * for running workers in the same JVM, over a pair of queues.
+ *
+ * @author Your Name Here
+ */
+abstract class MiningLink implements AutoCloseable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How we write empty fields (since fields are separated by spaces).
+   */
+  static final String EMPTY = "-";
+
+  // +------------------+--------------------------------------------
+  // | Abstract methods |
+  // +------------------+
+
+  /**
+   * Send one line to the other end.
+   *
+   * @param line
+   *   The line to send (without a newline).
+   */
+  abstract void send(String line);
+
+  /**
+   * Receive the next line from the other end, waiting if necessary.
+   *
+   * @return the line, or null if the other end has closed the link.
+   *
+   * @throws IOException
+   *   If the link fails.
+   */
+  abstract String receive() throws IOException;
+
+  /**
+   * Close this end of the link.
+   */
+  public abstract void close();
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Create a link over a socket.
+   *
+   * @param socket
+   *   The connected socket.
+   *
+   * @return the link.
+   *
+   * @throws IOException
+   *   If we cannot get the socket's streams.
+   */
+  static MiningLink of(Socket socket) throws IOException {
+    return new SocketLink(socket);
+  } // of(Socket)
+
+  /**
+   * Create the two ends of an in-process link.
+   *
+   * @return the two ends.
+   */
+  static MiningLink[] pair() {
+    BlockingQueue<String> there = new LinkedBlockingQueue<String>();
+    BlockingQueue<String> back = new LinkedBlockingQueue<String>();
+    return new MiningLink[] {new QueueLink(back, there),
+        new QueueLink(there, back)};
+  } // pair()
+
+  /**
+   * Convert bytes to hex, so that they can be a field.
+   *
+   * @param bytes
+   *   The bytes to convert.
+   *
+   * @return the bytes in hex (or <code>EMPTY</code> for no bytes).
+   */
+  static String hex(byte[] bytes) {
+    if (bytes.length == 0) {
+      return EMPTY;
+    } // if
+    StringBuilder result = new StringBuilder(2 * bytes.length);
+    Hash.appendHex(bytes, result);
+    return result.toString();
+  } // hex(byte[])
+
+  /**
+   * Convert a field written by <code>hex</code> back to bytes.
+   *
+   * @param field
+   *   The field.
+   *
+   * @return the bytes.
+   *
+   * @throws IllegalArgumentException
+   *   If the field is not valid hex.
+   */
+  static byte[] unhex(String field) {
+    if (EMPTY.equals(field)) {
+      return new byte[0];
+    } // if
+    return Hash.hexBytes(field);
+  } // unhex(String)
+
+  /**
+   * Convert a string to a field.
+   *
+   * @param str
+   *   The string.
+   *
+   * @return the field.
+   */
+  static String field(String str) {
+    return hex(str.getBytes(StandardCharsets.UTF_8));
+  } // field(String)
+
+  /**
+   * Convert a field written by <code>field</code> back to a string.
+   *
+   * @param field
+   *   The field.
+   *
+   * @return the string.
+   */
+  static String unfield(String field) {
+    return new String(unhex(field), StandardCharsets.UTF_8);
+  } // unfield(String)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Links over sockets.
+   */
+  static class SocketLink extends MiningLink {
+    /**
+     * The socket.
+     */
+    Socket socket;
+
+    /**
+     * Where we read lines.
+     */
+    BufferedReader in;
+
+    /**
+     * Where we write lines.
+     */
+    PrintWriter out;
+
+    /**
+     * Create a link over a socket.
+     *
+     * @param socket
+     *   The connected socket.
+     *
+     * @throws IOException
+     *   If we cannot get the socket's streams.
+     */
+    SocketLink(Socket socket) throws IOException {
+      this.socket = socket;
+      this.in = new BufferedReader(new InputStreamReader(
+          socket.getInputStream(), StandardCharsets.UTF_8));
+      this.out = new PrintWriter(new OutputStreamWriter(
+          socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    } // SocketLink(Socket)
+
+    /**
+     * Send one line to the other end.
+     *
+     * @param line
+     *   The line to send.
+     */
+    synchronized void send(String line) {
+      this.out.println(line);
+    } // send(String)
+
+    /**
+     * Receive the next line from the other end.
+     *
+     * @return the line, or null if the other end has closed the link.
+     *
+     * @throws IOException
+     *   If the socket fails.
+     */
+    String receive() throws IOException {
+      return this.in.readLine();
+    } // receive()
+
+    /**
+     * Close the socket.
+     */
+    public void close() {
+      try {
+        this.socket.close();
+      } catch (IOException e) {
+        // Nothing more we can do.
+      } // try/catch
+    } // close()
+  } // class SocketLink
+
+  /**
+   * Links over a pair of queues.
+   */
+  static class QueueLink extends MiningLink {
+    /**
+     * A line that marks the end of the queue. (Identity matters.)
+     */
+    static final String CLOSED = new String("closed");
+
+    /**
+     * Where we read lines.
+     */
+    BlockingQueue<String> in;
+
+    /**
+     * Where we write lines.
+     */
+    BlockingQueue<String> out;
+
+    /**
+     * Create one end of a link.
+     *
+     * @param in
+     *   Where we read lines.
+     * @param out
+     *   Where we write lines.
+     */
+    QueueLink(BlockingQueue<String> in, BlockingQueue<String> out) {
+      this.in = in;
+      this.out = out;
+    } // QueueLink(BlockingQueue<String>, BlockingQueue<String>)
+
+    /**
+     * Send one line to the other end.
+     *
+     * @param line
+     *   The line to send.
+     */
+    void send(String line) {
+      this.out.add(line);
+    } // send(String)
+
+    /**
+     * Receive the next line from the other end.
+     *
+     * @return the line, or null if either end has closed the link.
+     *
+     * @throws IOException
+     *   If we are interrupted while waiting.
+     */
+    String receive() throws IOException {
+      try {
+        String line = this.in.take();
+        if (line == CLOSED) {
+          // Leave the marker for anyone else who is reading.
+          this.in.add(CLOSED);
+          return null;
+        } // if
+        return line;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted");
+      } // try/catch
+    } // receive()
+
+    /**
+     * Close both directions of the link.
+     */
+    public void close() {
+      this.in.add(CLOSED);
+      this.out.add(CLOSED);
+    } // close()
+  } // class QueueLink
+} // class MiningLink
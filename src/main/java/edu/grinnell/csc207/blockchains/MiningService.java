@@ -0,0 +1,321 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A service that mines blocks in the background, returning futures for
+ * the blocks.
+ *
+ * All jobs share one pool of worker threads, one per core by default,
+ * so running many jobs at once does not oversubscribe the cores. Each
+ * worker task searches one chunk of nonces and then goes to the back of
+ * the pool's queue, so concurrent jobs take turns rather than waiting
+ * for each other to finish. No thread waits on a job: the futures are
+ * completed by whichever worker finishes last.
+ *
+ * As with <code>ParallelMiner</code>, each job finds the smallest valid
+ * nonce.
+ *
+ * @author Your Name Here
+ */
+public class MiningService implements Miner, AutoCloseable {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The pool that runs the workers.
+   */
+  ExecutorService pool;
+
+  /**
+   * The number of workers per job.
+   */
+  int workers;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new service with one worker thread per available
+   * processor.
+   */
+  public MiningService() {
+    this(Runtime.getRuntime().availableProcessors());
+  } // MiningService()
+
+  /**
+   * Create a new service with a fixed number of worker threads.
+   *
+   * @param threads
+   *   The number of worker threads.
+   *
+   * @throws IllegalArgumentException
+   *   If the number of threads is not positive.
+   */
+  public MiningService(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Need at least one thread");
+    } // if
+    // A fixed pool has one shared queue, so a requeued worker really does
+    // go behind the workers of other jobs. (A fork/join pool would run it
+    // again from its thread's own queue.)
+    this.pool = Executors.newFixedThreadPool(threads, (task) -> {
+      Thread thread = new Thread(task, "miner");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.workers = threads;
+  } // MiningService(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Start mining for a block with the given contents. Cancelling the
+   * future stops the mining.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return a future for the mined block.
+   */
+  public CompletableFuture<Block> mineAsync(int num, Transaction transaction,
+      Hash prevHash, HashValidator check) {
+    Job job = new Job(num, transaction, prevHash, check, this.workers);
+    for (int i = 0; i < this.workers; i++) {
+      this.pool.execute(new Worker(job));
+    } // for
+    return job.result;
+  } // mineAsync(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Start mining for a block with the given contents, giving up after
+   * a while. If time runs out, the future completes exceptionally with
+   * a <code>TimeoutException</code> and the mining stops.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   * @param timeout
+   *   How long to mine before giving up.
+   *
+   * @return a future for the mined block.
+   */
+  public CompletableFuture<Block> mineAsync(int num, Transaction transaction,
+      Hash prevHash, HashValidator check, Duration timeout) {
+    return this.mineAsync(num, transaction, prevHash, check)
+        .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+  } // mineAsync(int, Transaction, Hash, HashValidator, Duration)
+
+  /**
+   * Start mining for a new block for the end of a chain.
+   *
+   * @param chain
+   *   The chain.
+   * @param t
+   *   The transaction that goes in the block.
+   *
+   * @return a future for the mined block.
+   */
+  public CompletableFuture<Block> mineAsync(BlockChain chain, Transaction t) {
+    int num = chain.getSize();
+    return this.mineAsync(num, t, chain.getHash(), chain.check.forBlock(num));
+  } // mineAsync(BlockChain, Transaction)
+
+  /**
+   * Mine for a block with the given contents, waiting for the result.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block, which has the smallest valid nonce.
+   *
+   * @throws IllegalStateException
+   *   If the mining fails.
+   */
+  public Block mine(int num, Transaction transaction, Hash prevHash,
+      HashValidator check) {
+    try {
+      return this.mineAsync(num, transaction, prevHash, check).join();
+    } catch (CompletionException | CancellationException e) {
+      throw new IllegalStateException("Mining failed", e.getCause());
+    } // try/catch
+  } // mine(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Stop the worker threads. Jobs that have not finished never will.
+   */
+  public void close() {
+    this.pool.shutdownNow();
+  } // close()
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * One block that we are mining.
+   */
+  static class Job {
+    /**
+     * The number of the block.
+     */
+    int num;
+
+    /**
+     * The transaction for the block.
+     */
+    Transaction transaction;
+
+    /**
+     * The hash of the previous block.
+     */
+    Hash prevHash;
+
+    /**
+     * The validator used to check the block.
+     */
+    HashValidator check;
+
+    /**
+     * The start of the next unclaimed chunk of nonces.
+     */
+    AtomicLong next = new AtomicLong(0);
+
+    /**
+     * The smallest valid nonce found so far. Set to -1 to stop the
+     * workers.
+     */
+    AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * The number of workers still searching.
+     */
+    AtomicInteger active;
+
+    /**
+     * The future for the block.
+     */
+    CompletableFuture<Block> result = new CompletableFuture<Block>();
+
+    /**
+     * Create a new job.
+     *
+     * @param num
+     *   The number of the block.
+     * @param transaction
+     *   The transaction for the block.
+     * @param prevHash
+     *   The hash of the previous block.
+     * @param check
+     *   The validator used to check the block.
+     * @param workers
+     *   The number of workers that will search.
+     */
+    Job(int num, Transaction transaction, Hash prevHash, HashValidator check,
+        int workers) {
+      this.num = num;
+      this.transaction = transaction;
+      this.prevHash = prevHash;
+      this.check = check;
+      this.active = new AtomicInteger(workers);
+      // If the future is cancelled or times out, stop searching.
+      this.result.whenComplete((block, e) -> {
+        if (e != null) {
+          this.best.set(-1);
+        } // if
+      });
+    } // Job(int, Transaction, Hash, HashValidator, int)
+
+    /**
+     * Note that one worker has stopped, completing the result if it was
+     * the last one.
+     */
+    void finish() {
+      if ((this.active.decrementAndGet() == 0) && !this.result.isDone()) {
+        this.result.complete(new Block(this.num, this.transaction,
+            this.prevHash, this.best.get()));
+      } // if
+    } // finish()
+  } // class Job
+
+  /**
+   * One of the workers for a job. Searches one chunk each time it runs.
+   */
+  class Worker implements Runnable {
+    /**
+     * The job.
+     */
+    Job job;
+
+    /**
+     * This worker's hasher.
+     */
+    NonceHasher hasher;
+
+    /**
+     * Create a new worker.
+     *
+     * @param job
+     *   The job we're working on.
+     */
+    Worker(Job job) {
+      this.job = job;
+    } // Worker(Job)
+
+    /**
+     * Search the next chunk of nonces and then requeue ourselves, unless
+     * the job is done.
+     */
+    public void run() {
+      Job job = this.job;
+      long start = job.next.getAndAdd(ParallelMiner.CHUNK_SIZE);
+      if (job.result.isDone() || (start < 0) || (start >= job.best.get())) {
+        job.finish();
+        return;
+      } // if
+      try {
+        if (this.hasher == null) {
+          this.hasher = new NonceHasher(job.num, job.transaction, job.prevHash);
+        } // if
+        long nonce = this.hasher.search(start,
+            start + ParallelMiner.CHUNK_SIZE, job.check, job.best);
+        if (nonce >= 0) {
+          job.best.accumulateAndGet(nonce, Math::min);
+        } // if
+        MiningService.this.pool.execute(this);
+      } catch (RuntimeException e) {
+        job.result.completeExceptionally(e);
+        job.finish();
+      } // try/catch
+    } // run()
+  } // class Worker
+} // class MiningService
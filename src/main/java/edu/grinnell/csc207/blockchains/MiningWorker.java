@@ -0,0 +1,182 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A worker that searches ranges of nonces for a
+ * <code>MiningCoordinator</code>, usually in another process.
+ *
+ * The coordinator sends lines of the form
+ * <pre>
+ *   JOB id num source target amount prevHash target
+ *   RANGE id start end
+ *   CANCEL id
+ * </pre>
+ * (with strings and hashes in hex) and the worker answers each range
+ * with
+ * <pre>
+ *   DONE id start end nonce
+ * </pre>
+ * where the nonce is the first valid one in the range, or -1 if there is
+ * none (or the range was cancelled).
+ *
+ * @author Your Name Here
+ */
+public class MiningWorker implements Runnable {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Our link to the coordinator.
+   */
+  MiningLink link;
+
+  /**
+   * The thread that does the searching, so that we can keep reading
+   * cancellations while we search.
+   */
+  ExecutorService searcher = Executors.newSingleThreadExecutor((task) -> {
+    Thread thread = new Thread(task, "mining-worker");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * The id of the current job.
+   */
+  volatile long jobId = -1;
+
+  /**
+   * The hasher for the current job.
+   */
+  NonceHasher hasher;
+
+  /**
+   * The validator for the current job.
+   */
+  DifficultyValidator check;
+
+  /**
+   * The best nonce for the current range. Set to -1 to stop searching.
+   */
+  volatile AtomicLong stop = new AtomicLong(Long.MAX_VALUE);
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a worker that talks to a coordinator over a link.
+   *
+   * @param link
+   *   The link to the coordinator.
+   */
+  MiningWorker(MiningLink link) {
+    this.link = link;
+  } // MiningWorker(MiningLink)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Connect to a coordinator that is listening on this host.
+   *
+   * @param port
+   *   The port the coordinator listens on.
+   *
+   * @return a worker for that coordinator. Call <code>run</code> to
+   *   start working.
+   *
+   * @throws IOException
+   *   If we cannot connect.
+   */
+  public static MiningWorker connect(int port) throws IOException {
+    return new MiningWorker(
+        MiningLink.of(new Socket(InetAddress.getLoopbackAddress(), port)));
+  } // connect(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Work for the coordinator until it closes the connection.
+   */
+  public void run() {
+    try {
+      String line;
+      while ((line = this.link.receive()) != null) {
+        this.handle(line.split(" "));
+      } // while
+    } catch (IOException e) {
+      // The coordinator is gone; we're done.
+    } finally {
+      this.stop.set(-1);
+      this.searcher.shutdownNow();
+      this.link.close();
+    } // try/finally
+  } // run()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Handle one message from the coordinator.
+   *
+   * @param fields
+   *   The fields of the message.
+   */
+  void handle(String[] fields) {
+    switch (fields[0]) {
+      case "JOB":
+        this.stop.set(-1);
+        Transaction t = new Transaction(MiningLink.unfield(fields[3]),
+            MiningLink.unfield(fields[4]), Integer.parseInt(fields[5]));
+        NonceHasher hasher = new NonceHasher(Integer.parseInt(fields[2]), t,
+            new Hash(MiningLink.unhex(fields[6])));
+        DifficultyValidator check =
+            new DifficultyValidator(new Hash(MiningLink.unhex(fields[7])));
+        long id = Long.parseLong(fields[1]);
+        // Set up the job on the searching thread, after any old range.
+        this.searcher.execute(() -> {
+          this.hasher = hasher;
+          this.check = check;
+        });
+        this.jobId = id;
+        break;
+
+      case "RANGE":
+        long rangeJob = Long.parseLong(fields[1]);
+        long start = Long.parseLong(fields[2]);
+        long end = Long.parseLong(fields[3]);
+        AtomicLong stop = new AtomicLong(Long.MAX_VALUE);
+        this.stop = stop;
+        this.searcher.execute(() -> {
+          long nonce = (stop.get() < 0)
+              ? -1
+              : this.hasher.search(start, end, this.check, stop);
+          this.link.send(String.format("DONE %d %d %d %d", rangeJob, start, end,
+              nonce));
+        });
+        break;
+
+      case "CANCEL":
+        if (Long.parseLong(fields[1]) == this.jobId) {
+          this.stop.set(-1);
+        } // if
+        break;
+
+      default:
+        // Ignore messages we don't understand.
+        break;
+    } // switch
+  } // handle(String[])
+} // class MiningWorker
@@ -0,0 +1,215 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes the hashes of one block for many different nonces. Only the
+ * nonce changes from attempt to attempt, so we compress the full blocks
+ * of everything that comes before it once (the midstate) and start each
+ * attempt from that midstate. The remaining bytes, the nonce, and the
+ * padding are kept in a template, so an attempt only writes the nonce
+ * into the template and compresses one or two blocks.
+ *
+ * An attempt allocates nothing: the hash goes into a scratch array
+ * that is shared with a mutable view (see <code>view()</code>), so
+ * validators must not hold on to the hashes they are given while mining.
+ *
+ * Hashers are not thread safe; each thread that mines should have
+ * its own.
+ *
+ * @author Your Name Here
+ */
+class NonceHasher {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The state after the full blocks of the fixed prefix of the block
+   * (the number, the transaction, and the previous hash).
+   */
+  int[] midstate;
+
+  /**
+   * The last one or two blocks of the message: the rest of the prefix,
+   * the nonce, and the padding.
+   */
+  byte[] template;
+
+  /**
+   * Where the nonce goes in the template.
+   */
+  int nonceAt;
+
+  /**
+   * Scratch space for the state.
+   */
+  int[] state = new int[8];
+
+  /**
+   * Scratch space for the message schedule.
+   */
+  int[] schedule = new int[64];
+
+  /**
+   * The most recently computed hash.
+   */
+  byte[] out = new byte[Sha256.HASH_BYTES];
+
+  /**
+   * A view of the most recently computed hash.
+   */
+  Hash view = Hash.view(this.out);
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a hasher for the block with the given contents.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction in the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   */
+  NonceHasher(int num, Transaction transaction, Hash prevHash) {
+    this(Block.prefixBytes(num, transaction, prevHash));
+  } // NonceHasher(int, Transaction, Hash)
+
+  /**
+   * Create a hasher for the block with the given prefix (everything that
+   * we hash but the nonce).
+   *
+   * @param prefix
+   *   The bytes of the prefix.
+   */
+  NonceHasher(byte[] prefix) {
+    int full = prefix.length / Sha256.BLOCK_BYTES * Sha256.BLOCK_BYTES;
+    this.midstate = Sha256.IV.clone();
+    for (int i = 0; i < full; i += Sha256.BLOCK_BYTES) {
+      Sha256.compress(this.midstate, prefix, i, this.schedule);
+    } // for
+    this.nonceAt = prefix.length - full;
+    this.template = Sha256.pad(
+        Arrays.copyOfRange(prefix, full, prefix.length + Long.BYTES), 0,
+        prefix.length + Long.BYTES);
+  } // NonceHasher(byte[])
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Compute the hash of the block with a particular nonce, leaving the
+   * result in the view.
+   *
+   * @param nonce
+   *   The nonce.
+   */
+  void compute(long nonce) {
+    this.compress(nonce);
+    Sha256.write(this.state, this.out);
+  } // compute(long)
+
+  /**
+   * Compute the final state of the digest of the block with a particular
+   * nonce, without writing out the hash.
+   *
+   * @param nonce
+   *   The nonce.
+   */
+  void compress(long nonce) {
+    for (int i = 0; i < Long.BYTES; i++) {
+      this.template[this.nonceAt + i] = (byte) (nonce >>> (56 - 8 * i));
+    } // for
+    System.arraycopy(this.midstate, 0, this.state, 0, 8);
+    for (int i = 0; i < this.template.length; i += Sha256.BLOCK_BYTES) {
+      Sha256.compress(this.state, this.template, i, this.schedule);
+    } // for
+  } // compress(long)
+
+  /**
+   * Get a view of the most recently computed hash. The view changes
+   * with each computation.
+   *
+   * @return the view.
+   */
+  Hash view() {
+    return this.view;
+  } // view()
+
+  /**
+   * Compute the hash of the block with a particular nonce.
+   *
+   * @param nonce
+   *   The nonce.
+   *
+   * @return the bytes of the hash.
+   */
+  byte[] hash(long nonce) {
+    this.compute(nonce);
+    return this.out.clone();
+  } // hash(long)
+
+  /**
+   * Search a range of nonces, in order, for one that gives a valid
+   * hash. Stops early if the nonces reach the best one found so far
+   * (perhaps by another thread). Difficulty validators are checked
+   * directly against the state of the digest; other validators are
+   * given a view of each hash.
+   *
+   * @param start
+   *   The first nonce to try.
+   * @param end
+   *   The nonce after the last one to try.
+   * @param check
+   *   The validator used to check the hashes.
+   * @param best
+   *   The best nonce found so far.
+   *
+   * @return the first valid nonce in the range or -1 if there is none.
+   */
+  long search(long start, long end, HashValidator check, AtomicLong best) {
+    if (check instanceof DifficultyValidator) {
+      return this.search(start, end, (DifficultyValidator) check, best);
+    } // if
+    for (long nonce = start; (nonce < end) && (nonce < best.get()); nonce++) {
+      this.compute(nonce);
+      if (check.isValid(this.view)) {
+        return nonce;
+      } // if
+    } // for
+    return -1;
+  } // search(long, long, HashValidator, AtomicLong)
+
+  /**
+   * Search a range of nonces, in order, for one that meets the target
+   * of a difficulty validator.
+   *
+   * @param start
+   *   The first nonce to try.
+   * @param end
+   *   The nonce after the last one to try.
+   * @param check
+   *   The validator used to check the hashes.
+   * @param best
+   *   The best nonce found so far.
+   *
+   * @return the first valid nonce in the range or -1 if there is none.
+   */
+  long search(long start, long end, DifficultyValidator check,
+      AtomicLong best) {
+    for (long nonce = start; (nonce < end) && (nonce < best.get()); nonce++) {
+      this.compress(nonce);
+      if (check.isValid(this.state)) {
+        Sha256.write(this.state, this.out);
+        return nonce;
+      } // if
+    } // for
+    return -1;
+  } // search(long, long, DifficultyValidator, AtomicLong)
+} // class NonceHasher
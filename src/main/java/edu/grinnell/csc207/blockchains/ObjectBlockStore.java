@@ -0,0 +1,83 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+
+/**
+ * Stores that keep the blocks themselves in a list. This is the store
+ * that chains use unless told otherwise.
+ *
+ * @author Your Name Here
+ */
+public class ObjectBlockStore implements BlockStore {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The blocks.
+   */
+  ArrayList<Block> blocks = new ArrayList<Block>();
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  public int size() {
+    return this.blocks.size();
+  } // size()
+
+  /**
+   * Get one block.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the block.
+   */
+  public Block get(int num) {
+    return this.blocks.get(num);
+  } // get(int)
+
+  /**
+   * Get the hash of one block.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the hash of the block.
+   */
+  public Hash getHash(int num) {
+    return this.blocks.get(num).getHash();
+  } // getHash(int)
+
+  /**
+   * Add a block to the end of the store.
+   *
+   * @param blk
+   *   The block to add.
+   */
+  public void add(Block blk) {
+    this.blocks.add(blk);
+  } // add(Block)
+
+  /**
+   * Remove the last block from the store.
+   */
+  public void removeLast() {
+    this.blocks.remove(this.blocks.size() - 1);
+  } // removeLast()
+
+  /**
+   * Determine if <code>get</code> returns the blocks that were added.
+   *
+   * @return true, since it does.
+   */
+  public boolean sharesBlocks() {
+    return true;
+  } // sharesBlocks()
+} // class ObjectBlockStore
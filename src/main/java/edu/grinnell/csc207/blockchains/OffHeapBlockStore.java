@@ -0,0 +1,348 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores that keep blocks outside the heap, in direct byte buffers, so
+ * that the garbage collector never has to look at them. Each block is a
+ * record in an arena of chunks, which we fill in order:
+ *
+ * <pre>
+ *   offset  0: the nonce (a long)
+ *   offset  8: the hash (32 bytes)
+ *   offset 40: the number of transactions (an int)
+ *   offset 44: the kind of block (Block.SINGLE or Block.BATCH)
+ *   offset 48: the time (a long)
+ *   offset 56: for each transaction, the ids of the source and target
+ *              and the amount (three ints)
+ * </pre>
+ *
+ * A record never spans chunks; a block too big for a chunk gets a chunk
+ * of its own. We find records through an index of their locations (the
+ * chunk in the high half of a long and the offset in the low half),
+ * which is also kept in direct buffers. Removing the last block lets us
+ * reuse its space.
+ *
+ * As with the columnar store, block numbers and previous hashes are
+ * implied by position. Since transactions refer to users by their ids in
+ * the shared <code>UserDictionary</code>, the records only make sense
+ * within one run of the program.
+ *
+ * @author Your Name Here
+ */
+public class OffHeapBlockStore implements BlockStore {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in each hash.
+   */
+  static final int HASH_BYTES = Sha256.HASH_BYTES;
+
+  /**
+   * Where the nonce goes in a record.
+   */
+  static final int NONCE = 0;
+
+  /**
+   * Where the hash goes in a record.
+   */
+  static final int HASH = NONCE + Long.BYTES;
+
+  /**
+   * Where the number of transactions goes in a record.
+   */
+  static final int COUNT = HASH + HASH_BYTES;
+
+  /**
+   * Where the kind of block goes in a record.
+   */
+  static final int KIND = COUNT + Integer.BYTES;
+
+  /**
+   * Where the time goes in a record.
+   */
+  static final int TIME = KIND + Integer.BYTES;
+
+  /**
+   * Where the transactions start in a record.
+   */
+  static final int TRANSACTIONS = TIME + Long.BYTES;
+
+  /**
+   * The number of bytes in each transaction in a record.
+   */
+  static final int TRANSACTION_BYTES = 3 * Integer.BYTES;
+
+  /**
+   * The default number of bytes in each chunk of the arena.
+   */
+  static final int DEFAULT_CHUNK_BYTES = 1 << 24;
+
+  /**
+   * The number of locations in each chunk of the index.
+   */
+  static final int INDEX_CHUNK = 1 << 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of bytes in each (ordinary) chunk of the arena.
+   */
+  int chunkBytes;
+
+  /**
+   * The chunks of the arena.
+   */
+  ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+  /**
+   * The chunk we are filling.
+   */
+  int chunk = -1;
+
+  /**
+   * Where the next record goes in that chunk.
+   */
+  int position = 0;
+
+  /**
+   * The chunks of the index.
+   */
+  ArrayList<ByteBuffer> index = new ArrayList<ByteBuffer>();
+
+  /**
+   * The number of blocks.
+   */
+  int size = 0;
+
+  /**
+   * The previous hash of the first block.
+   */
+  Hash firstPrevHash;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new store with the default chunk size.
+   */
+  public OffHeapBlockStore() {
+    this(DEFAULT_CHUNK_BYTES);
+  } // OffHeapBlockStore()
+
+  /**
+   * Create a new store whose arena has chunks of a particular size.
+   *
+   * @param chunkBytes
+   *   The number of bytes in each chunk.
+   *
+   * @throws IllegalArgumentException
+   *   If the chunks cannot hold a block with one transaction.
+   */
+  public OffHeapBlockStore(int chunkBytes) {
+    if (chunkBytes < TRANSACTIONS + TRANSACTION_BYTES) {
+      throw new IllegalArgumentException("Chunks must have at least "
+          + (TRANSACTIONS + TRANSACTION_BYTES) + " bytes");
+    } // if
+    this.chunkBytes = chunkBytes;
+  } // OffHeapBlockStore(int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find where a block's record is.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the chunk (in the high half) and the offset (in the low
+   *   half) of the record.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no such block.
+   */
+  long locate(int num) {
+    if ((num < 0) || (num >= this.size)) {
+      throw new IndexOutOfBoundsException("No block " + num);
+    } // if
+    return this.index.get(num / INDEX_CHUNK)
+        .getLong((num % INDEX_CHUNK) * Long.BYTES);
+  } // locate(int)
+
+  /**
+   * Make room for a record, moving on to the next chunk if it doesn't
+   * fit in this one.
+   *
+   * @param bytes
+   *   The number of bytes in the record.
+   */
+  void reserve(int bytes) {
+    if ((this.chunk >= 0)
+        && (this.position + bytes <= this.chunks.get(this.chunk).capacity())) {
+      return;
+    } // if
+    this.chunk++;
+    this.position = 0;
+    if ((this.chunk == this.chunks.size())
+        || (this.chunks.get(this.chunk).capacity() < bytes)) {
+      ByteBuffer fresh =
+          ByteBuffer.allocateDirect(Math.max(this.chunkBytes, bytes));
+      if (this.chunk == this.chunks.size()) {
+        this.chunks.add(fresh);
+      } else {
+        this.chunks.set(this.chunk, fresh);
+      } // if/else
+    } // if
+  } // reserve(int)
+
+  /**
+   * Rebuild one transaction from a record.
+   *
+   * @param buffer
+   *   The chunk that holds the record.
+   * @param at
+   *   Where the transaction starts.
+   *
+   * @return the transaction.
+   */
+  static Transaction transaction(ByteBuffer buffer, int at) {
+    return new Transaction(buffer.getInt(at), buffer.getInt(at + 4),
+        buffer.getInt(at + 8));
+  } // transaction(ByteBuffer, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Build one block from its record.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the block.
+   */
+  public Block get(int num) {
+    long location = this.locate(num);
+    ByteBuffer buffer = this.chunks.get((int) (location >>> 32));
+    int at = (int) location;
+    int count = buffer.getInt(at + COUNT);
+    Transaction transaction = null;
+    Transaction[] batch = null;
+    if (buffer.getInt(at + KIND) == Block.BATCH) {
+      batch = new Transaction[count];
+      for (int i = 0; i < count; i++) {
+        batch[i] = transaction(buffer,
+            at + TRANSACTIONS + i * TRANSACTION_BYTES);
+      } // for
+    } else {
+      transaction = transaction(buffer, at + TRANSACTIONS);
+    } // if/else
+    Hash prevHash = (num == 0) ? this.firstPrevHash : this.getHash(num - 1);
+    return new Block(num, transaction, batch, prevHash,
+        buffer.getLong(at + TIME), buffer.getLong(at + NONCE),
+        Hash.read(buffer, at + HASH, HASH_BYTES));
+  } // get(int)
+
+  /**
+   * Get the hash of one block, straight from its record.
+   *
+   * @param num
+   *   The number of the block.
+   *
+   * @return the hash of the block.
+   */
+  public Hash getHash(int num) {
+    long location = this.locate(num);
+    return Hash.read(this.chunks.get((int) (location >>> 32)),
+        (int) location + HASH, HASH_BYTES);
+  } // getHash(int)
+
+  /**
+   * Add a block to the end of the store.
+   *
+   * @param blk
+   *   The block to add.
+   *
+   * @throws IllegalArgumentException
+   *   If the block's number is not the size of the store, its hash is
+   *   not a SHA-256 hash, or its previous hash is not the hash of the
+   *   last block.
+   */
+  public void add(Block blk) {
+    if (blk.getNum() != this.size) {
+      throw new IllegalArgumentException("Expected block " + this.size
+          + " but got block " + blk.getNum());
+    } else if (blk.getHash().length() != HASH_BYTES) {
+      throw new IllegalArgumentException("Off-heap stores only hold "
+          + HASH_BYTES + "-byte hashes");
+    } else if ((this.size > 0)
+        && !blk.getPrevHash().equals(this.getHash(this.size - 1))) {
+      throw new IllegalArgumentException("Block " + this.size
+          + " does not follow the last block");
+    } // if/else
+    List<Transaction> transactions = blk.getTransactions();
+    int bytes = TRANSACTIONS + transactions.size() * TRANSACTION_BYTES;
+    this.reserve(bytes);
+    ByteBuffer buffer = this.chunks.get(this.chunk);
+    int at = this.position;
+    buffer.putLong(at + NONCE, blk.getNonce());
+    buffer.put(at + HASH, blk.getHash().data);
+    buffer.putInt(at + COUNT, transactions.size());
+    buffer.putInt(at + KIND, blk.isBatch() ? Block.BATCH : Block.SINGLE);
+    buffer.putLong(at + TIME, blk.getTime());
+    int next = at + TRANSACTIONS;
+    for (Transaction t : transactions) {
+      buffer.putInt(next, t.getSourceId());
+      buffer.putInt(next + 4, t.getTargetId());
+      buffer.putInt(next + 8, t.getAmount());
+      next += TRANSACTION_BYTES;
+    } // for
+    this.position = next;
+
+    if (this.size % INDEX_CHUNK == 0) {
+      if (this.size / INDEX_CHUNK == this.index.size()) {
+        this.index.add(ByteBuffer.allocateDirect(INDEX_CHUNK * Long.BYTES));
+      } // if
+    } // if
+    this.index.get(this.size / INDEX_CHUNK).putLong(
+        (this.size % INDEX_CHUNK) * Long.BYTES,
+        ((long) this.chunk << 32) | at);
+    if (this.size == 0) {
+      this.firstPrevHash = blk.getPrevHash();
+    } // if
+    this.size++;
+  } // add(Block)
+
+  /**
+   * Remove the last block from the store, so that its space can be
+   * reused.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If the store is empty.
+   */
+  public void removeLast() {
+    long location = this.locate(this.size - 1);
+    this.chunk = (int) (location >>> 32);
+    this.position = (int) location;
+    this.size--;
+  } // removeLast()
+} // class OffHeapBlockStore
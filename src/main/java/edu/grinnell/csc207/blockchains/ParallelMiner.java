@@ -0,0 +1,194 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A miner that splits the search for a nonce across several threads.
+ *
+ * The nonces are divided into chunks of <code>CHUNK_SIZE</code> nonces.
+ * Each worker repeatedly claims the next unclaimed chunk and searches it
+ * in order. When a worker finds a valid nonce, it records it if it is
+ * smaller than the best so far. Workers stop as soon as their next nonce
+ * is larger than the best found so far. Since chunks are claimed in
+ * increasing order and every chunk below the best nonce is searched
+ * completely, we end up with the same nonce that the sequential search
+ * in the <code>Block</code> constructor finds.
+ *
+ * @author Your Name Here
+ */
+public class ParallelMiner implements Miner {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of nonces a worker claims at a time.
+   */
+  static final long CHUNK_SIZE = 1 << 12;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The pool that runs the workers.
+   */
+  ExecutorService pool;
+
+  /**
+   * The number of workers we use for each block.
+   */
+  int workers;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that uses the common fork/join pool, with one
+   * worker per available processor.
+   */
+  public ParallelMiner() {
+    this(ForkJoinPool.commonPool(),
+        Runtime.getRuntime().availableProcessors());
+  } // ParallelMiner()
+
+  /**
+   * Create a new miner that runs the given number of workers in a
+   * pool.
+   *
+   * @param pool
+   *   The pool that runs the workers.
+   * @param workers
+   *   The number of workers to use for each block.
+   *
+   * @throws IllegalArgumentException
+   *   If the number of workers is not positive.
+   */
+  public ParallelMiner(ExecutorService pool, int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Need at least one worker");
+    } // if
+    this.pool = pool;
+    this.workers = workers;
+  } // ParallelMiner(ExecutorService, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Mine for a block with the given contents whose hash meets the
+   * requirements of the validator.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block, which has the smallest valid nonce.
+   *
+   * @throws IllegalStateException
+   *   If the mining is interrupted or a worker fails.
+   */
+  public Block mine(int num, Transaction transaction, Hash prevHash,
+      HashValidator check) {
+    return this.mine(num, transaction, prevHash, Block.NO_TIME, check);
+  } // mine(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Mine for a block that was mined at a particular time.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param time
+   *   When the block is mined (or <code>Block.NO_TIME</code>).
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block, which has the smallest valid nonce.
+   *
+   * @throws IllegalStateException
+   *   If the mining is interrupted or a worker fails.
+   */
+  public Block mine(int num, Transaction transaction, Hash prevHash,
+      long time, HashValidator check) {
+    byte[] prefix = Block.prefixBytes(num, transaction, prevHash, time);
+    AtomicLong next = new AtomicLong(0);
+    AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.workers);
+    for (int i = 0; i < this.workers; i++) {
+      tasks.add(() -> {
+        try {
+          search(prefix, check, next, best);
+        } catch (RuntimeException e) {
+          // Stop the other workers, too.
+          best.set(-1);
+          throw e;
+        } // try/catch
+        return null;
+      });
+    } // for
+
+    List<Future<Void>> results;
+    try {
+      results = this.pool.invokeAll(tasks);
+      for (Future<Void> result : results) {
+        result.get();
+      } // for
+    } catch (InterruptedException e) {
+      best.set(-1);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Mining interrupted");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Mining failed", e.getCause());
+    } // try/catch
+
+    return new Block(num, transaction, prevHash, time, best.get());
+  } // mine(int, Transaction, Hash, long, HashValidator)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Search chunks of nonces until every nonce below the best one has
+   * been claimed.
+   *
+   * @param prefix
+   *   The bytes of the prefix of the block.
+   * @param check
+   *   The validator used to check the block.
+   * @param next
+   *   The start of the next unclaimed chunk.
+   * @param best
+   *   The smallest valid nonce found so far.
+   */
+  static void search(byte[] prefix, HashValidator check, AtomicLong next,
+      AtomicLong best) {
+    NonceHasher hasher = new NonceHasher(prefix);
+    long start = next.getAndAdd(CHUNK_SIZE);
+    while ((start >= 0) && (start < best.get())) {
+      long nonce = hasher.search(start, start + CHUNK_SIZE, check, best);
+      if (nonce >= 0) {
+        best.accumulateAndGet(nonce, Math::min);
+      } // if
+      start = next.getAndAdd(CHUNK_SIZE);
+    } // while
+  } // search(byte[], HashValidator, AtomicLong, AtomicLong)
+} // class ParallelMiner
@@ -0,0 +1,323 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * The SHA-256 compression function, for when we need to control the
+ * state of the hash ourselves (e.g., to reuse a midstate without
+ * allocating). See FIPS 180-4 for the details.
+ *
+ * @author Your Name Here
+ */
+final class Sha256 {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in a block of input.
+   */
+  static final int BLOCK_BYTES = 64;
+
+  /**
+   * The number of bytes in a hash.
+   */
+  static final int HASH_BYTES = 32;
+
+  /**
+   * The initial hash value.
+   */
+  static final int[] IV = {
+    0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+    0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+  };
+
+  /**
+   * The round constants.
+   */
+  static final int[] K = {
+    0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5,
+    0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+    0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3,
+    0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+    0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc,
+    0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+    0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7,
+    0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+    0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13,
+    0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+    0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3,
+    0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+    0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5,
+    0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+    0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208,
+    0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+  };
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * We only have static methods.
+   */
+  private Sha256() {
+  } // Sha256()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * The choice function.
+   *
+   * @param x
+   *   The word that chooses.
+   * @param y
+   *   The word chosen where x has ones.
+   * @param z
+   *   The word chosen where x has zeros.
+   *
+   * @return the bits chosen.
+   */
+  static int ch(int x, int y, int z) {
+    return (x & y) ^ (~x & z);
+  } // ch(int, int, int)
+
+  /**
+   * The majority function.
+   *
+   * @param x
+   *   One word.
+   * @param y
+   *   Another word.
+   * @param z
+   *   A third word.
+   *
+   * @return the majority of each bit.
+   */
+  static int maj(int x, int y, int z) {
+    return (x & y) ^ (x & z) ^ (y & z);
+  } // maj(int, int, int)
+
+  /**
+   * The upper-case sigma 0 function, applied to a.
+   *
+   * @param x
+   *   The word.
+   *
+   * @return the mixed word.
+   */
+  static int bigSigma0(int x) {
+    return Integer.rotateRight(x, 2) ^ Integer.rotateRight(x, 13)
+        ^ Integer.rotateRight(x, 22);
+  } // bigSigma0(int)
+
+  /**
+   * The upper-case sigma 1 function, applied to e.
+   *
+   * @param x
+   *   The word.
+   *
+   * @return the mixed word.
+   */
+  static int bigSigma1(int x) {
+    return Integer.rotateRight(x, 6) ^ Integer.rotateRight(x, 11)
+        ^ Integer.rotateRight(x, 25);
+  } // bigSigma1(int)
+
+  /**
+   * The lower-case sigma 0 function, used in the message schedule.
+   *
+   * @param x
+   *   The word.
+   *
+   * @return the mixed word.
+   */
+  static int smallSigma0(int x) {
+    return Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18) ^ (x >>> 3);
+  } // smallSigma0(int)
+
+  /**
+   * The lower-case sigma 1 function, used in the message schedule.
+   *
+   * @param x
+   *   The word.
+   *
+   * @return the mixed word.
+   */
+  static int smallSigma1(int x) {
+    return Integer.rotateRight(x, 17) ^ Integer.rotateRight(x, 19)
+        ^ (x >>> 10);
+  } // smallSigma1(int)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Compress one block of input into the state.
+   *
+   * @param state
+   *   The eight words of state, updated in place.
+   * @param block
+   *   The input.
+   * @param offset
+   *   Where the block starts in the input.
+   * @param w
+   *   Scratch space for the message schedule (at least 64 words).
+   */
+  static void compress(int[] state, byte[] block, int offset, int[] w) {
+    for (int i = 0; i < 16; i++) {
+      int j = offset + 4 * i;
+      w[i] = (block[j] << 24) | ((block[j + 1] & 0xff) << 16)
+          | ((block[j + 2] & 0xff) << 8) | (block[j + 3] & 0xff);
+    } // for
+    for (int i = 16; i < 64; i++) {
+      w[i] = w[i - 16] + smallSigma0(w[i - 15]) + w[i - 7]
+          + smallSigma1(w[i - 2]);
+    } // for
+
+    int a = state[0];
+    int b = state[1];
+    int c = state[2];
+    int d = state[3];
+    int e = state[4];
+    int f = state[5];
+    int g = state[6];
+    int h = state[7];
+    // Eight rounds at a time. Rather than shifting the eight working
+    // variables at the end of each round, we rename them: the variable
+    // that gets the new a (or new e) moves back one letter each round.
+    for (int i = 0; i < 64; i += 8) {
+      h += bigSigma1(e) + ch(e, f, g) + K[i] + w[i];
+      d += h;
+      h += bigSigma0(a) + maj(a, b, c);
+      g += bigSigma1(d) + ch(d, e, f) + K[i + 1] + w[i + 1];
+      c += g;
+      g += bigSigma0(h) + maj(h, a, b);
+      f += bigSigma1(c) + ch(c, d, e) + K[i + 2] + w[i + 2];
+      b += f;
+      f += bigSigma0(g) + maj(g, h, a);
+      e += bigSigma1(b) + ch(b, c, d) + K[i + 3] + w[i + 3];
+      a += e;
+      e += bigSigma0(f) + maj(f, g, h);
+      d += bigSigma1(a) + ch(a, b, c) + K[i + 4] + w[i + 4];
+      h += d;
+      d += bigSigma0(e) + maj(e, f, g);
+      c += bigSigma1(h) + ch(h, a, b) + K[i + 5] + w[i + 5];
+      g += c;
+      c += bigSigma0(d) + maj(d, e, f);
+      b += bigSigma1(g) + ch(g, h, a) + K[i + 6] + w[i + 6];
+      f += b;
+      b += bigSigma0(c) + maj(c, d, e);
+      a += bigSigma1(f) + ch(f, g, h) + K[i + 7] + w[i + 7];
+      e += a;
+      a += bigSigma0(b) + maj(b, c, d);
+    } // for
+    state[0] += a;
+    state[1] += b;
+    state[2] += c;
+    state[3] += d;
+    state[4] += e;
+    state[5] += f;
+    state[6] += g;
+    state[7] += h;
+  } // compress(int[], byte[], int, int[])
+
+  /**
+   * Write the state out as the bytes of a hash.
+   *
+   * @param state
+   *   The eight words of state.
+   * @param out
+   *   Where to put the bytes (at least 32 of them).
+   */
+  static void write(int[] state, byte[] out) {
+    for (int i = 0; i < 8; i++) {
+      int word = state[i];
+      out[4 * i] = (byte) (word >>> 24);
+      out[4 * i + 1] = (byte) (word >>> 16);
+      out[4 * i + 2] = (byte) (word >>> 8);
+      out[4 * i + 3] = (byte) word;
+    } // for
+  } // write(int[], byte[])
+
+  /**
+   * Hash an entire message. Mostly for testing.
+   *
+   * @param message
+   *   The message to hash.
+   *
+   * @return the hash of the message.
+   */
+  static byte[] hash(byte[] message) {
+    int[] state = IV.clone();
+    int[] w = new int[64];
+    int full = message.length / BLOCK_BYTES;
+    for (int i = 0; i < full; i++) {
+      compress(state, message, i * BLOCK_BYTES, w);
+    } // for
+    byte[] last = pad(message, full * BLOCK_BYTES, message.length);
+    for (int i = 0; i < last.length; i += BLOCK_BYTES) {
+      compress(state, last, i, w);
+    } // for
+    byte[] result = new byte[HASH_BYTES];
+    write(state, result);
+    return result;
+  } // hash(byte[])
+
+  /**
+   * Hash a message that has already been padded.
+   *
+   * @param padded
+   *   The message, followed by its padding.
+   *
+   * @return the hash of the message.
+   */
+  static byte[] hashPadded(byte[] padded) {
+    int[] state = IV.clone();
+    int[] w = new int[64];
+    for (int i = 0; i < padded.length; i += BLOCK_BYTES) {
+      compress(state, padded, i, w);
+    } // for
+    byte[] result = new byte[HASH_BYTES];
+    write(state, result);
+    return result;
+  } // hashPadded(byte[])
+
+  /**
+   * Determine how many bytes a message takes once it is padded.
+   *
+   * @param length
+   *   The length of the message.
+   *
+   * @return the length of the padded message.
+   */
+  static int paddedLength(int length) {
+    return (length + 9 + BLOCK_BYTES - 1) / BLOCK_BYTES * BLOCK_BYTES;
+  } // paddedLength(int)
+
+  /**
+   * Build the padded final block(s) of a message.
+   *
+   * @param message
+   *   The message.
+   * @param start
+   *   The start of the unprocessed tail of the message.
+   * @param length
+   *   The total length of the message, in bytes.
+   *
+   * @return the last one or two blocks to compress.
+   */
+  static byte[] pad(byte[] message, int start, long length) {
+    int tail = message.length - start;
+    int size = (tail + 9 <= BLOCK_BYTES) ? BLOCK_BYTES : 2 * BLOCK_BYTES;
+    byte[] last = new byte[size];
+    System.arraycopy(message, start, last, 0, tail);
+    last[tail] = (byte) 0x80;
+    long bits = length * 8;
+    for (int i = 0; i < 8; i++) {
+      last[size - 1 - i] = (byte) (bits >>> (8 * i));
+    } // for
+    return last;
+  } // pad(byte[], int, long)
+} // class Sha256
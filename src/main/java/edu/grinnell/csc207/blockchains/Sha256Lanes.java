@@ -0,0 +1,265 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Computes the hashes of one block for several consecutive nonces at
+ * once, one nonce per lane of a vector. Starts from the midstate and
+ * template of a <code>NonceHasher</code>.
+ *
+ * This is the only class that uses the (incubating) vector API, so
+ * only load it when <code>VectorMiner.isAvailable()</code>.
+ *
+ * @author Your Name Here
+ */
+final class Sha256Lanes {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The shape of the vectors we use.
+   */
+  static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of lanes (and so nonces per computation).
+   */
+  int lanes;
+
+  /**
+   * The state after the fixed full blocks of the prefix.
+   */
+  int[] midstate;
+
+  /**
+   * The words of the final block(s), with zeros where the nonce goes.
+   */
+  int[] words;
+
+  /**
+   * The template bytes, with one lane's nonce written in.
+   */
+  byte[] template;
+
+  /**
+   * Where the nonce goes in the template.
+   */
+  int nonceAt;
+
+  /**
+   * The indices of the words that contain part of the nonce.
+   */
+  int[] nonceWords;
+
+  /**
+   * The values of the words that contain part of the nonce, one array
+   * of lanes per word.
+   */
+  int[][] nonceWordLanes;
+
+  /**
+   * The message schedule.
+   */
+  IntVector[] schedule = new IntVector[64];
+
+  /**
+   * The working state of the digest, one vector per word.
+   */
+  IntVector[] working = new IntVector[8];
+
+  /**
+   * The final state, one array of lanes per word of state.
+   */
+  int[][] state = new int[8][];
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create lanes that hash the same block as a hasher.
+   *
+   * @param hasher
+   *   The hasher whose midstate and template we use.
+   */
+  Sha256Lanes(NonceHasher hasher) {
+    this.lanes = SPECIES.length();
+    this.midstate = hasher.midstate.clone();
+    this.nonceAt = hasher.nonceAt;
+    this.template = hasher.template.clone();
+    Arrays.fill(this.template, this.nonceAt, this.nonceAt + Long.BYTES,
+        (byte) 0);
+    this.words = new int[this.template.length / Integer.BYTES];
+    for (int i = 0; i < this.words.length; i++) {
+      this.words[i] = word(this.template, i);
+    } // for
+    int first = this.nonceAt / Integer.BYTES;
+    int last = (this.nonceAt + Long.BYTES - 1) / Integer.BYTES;
+    this.nonceWords = new int[last - first + 1];
+    this.nonceWordLanes = new int[this.nonceWords.length][this.lanes];
+    for (int i = 0; i < this.nonceWords.length; i++) {
+      this.nonceWords[i] = first + i;
+    } // for
+    for (int i = 0; i < 8; i++) {
+      this.state[i] = new int[this.lanes];
+    } // for
+  } // Sha256Lanes(NonceHasher)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Read a big-endian word from the bytes.
+   *
+   * @param bytes
+   *   The bytes.
+   * @param i
+   *   The index of the word.
+   *
+   * @return the word.
+   */
+  static int word(byte[] bytes, int i) {
+    int j = Integer.BYTES * i;
+    return (bytes[j] << 24) | ((bytes[j + 1] & 0xff) << 16)
+        | ((bytes[j + 2] & 0xff) << 8) | (bytes[j + 3] & 0xff);
+  } // word(byte[], int)
+
+  /**
+   * Rotate the lanes of a vector right.
+   *
+   * @param v
+   *   The vector.
+   * @param n
+   *   The number of bits to rotate.
+   *
+   * @return the rotated vector.
+   */
+  static IntVector rotr(IntVector v, int n) {
+    return v.lanewise(VectorOperators.ROR, n);
+  } // rotr(IntVector, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Compute the final states for the nonces <code>first</code> through
+   * <code>first + lanes - 1</code>, leaving them in <code>state</code>.
+   *
+   * @param first
+   *   The nonce for the first lane.
+   */
+  void compute(long first) {
+    for (int lane = 0; lane < this.lanes; lane++) {
+      long nonce = first + lane;
+      for (int i = 0; i < Long.BYTES; i++) {
+        this.template[this.nonceAt + i] = (byte) (nonce >>> (56 - 8 * i));
+      } // for
+      for (int i = 0; i < this.nonceWords.length; i++) {
+        this.nonceWordLanes[i][lane] = word(this.template, this.nonceWords[i]);
+      } // for
+    } // for
+
+    IntVector[] s = this.working;
+    for (int i = 0; i < 8; i++) {
+      s[i] = IntVector.broadcast(SPECIES, this.midstate[i]);
+    } // for
+    int nonceWord = 0;
+    for (int block = 0; block < this.words.length; block += 16) {
+      for (int i = 0; i < 16; i++) {
+        int index = block + i;
+        if ((nonceWord < this.nonceWords.length)
+            && (this.nonceWords[nonceWord] == index)) {
+          this.schedule[i] =
+              IntVector.fromArray(SPECIES, this.nonceWordLanes[nonceWord++], 0);
+        } else {
+          this.schedule[i] = IntVector.broadcast(SPECIES, this.words[index]);
+        } // if/else
+      } // for
+      this.compress(s);
+    } // for
+    for (int i = 0; i < 8; i++) {
+      s[i].intoArray(this.state[i], 0);
+    } // for
+  } // compute(long)
+
+  /**
+   * Compress the block in the schedule into the state.
+   *
+   * @param s
+   *   The state, updated in place.
+   */
+  void compress(IntVector[] s) {
+    IntVector[] w = this.schedule;
+    for (int i = 16; i < 64; i++) {
+      IntVector w15 = w[i - 15];
+      IntVector w2 = w[i - 2];
+      IntVector s0 = rotr(w15, 7).lanewise(VectorOperators.XOR, rotr(w15, 18))
+          .lanewise(VectorOperators.XOR,
+              w15.lanewise(VectorOperators.LSHR, 3));
+      IntVector s1 = rotr(w2, 17).lanewise(VectorOperators.XOR, rotr(w2, 19))
+          .lanewise(VectorOperators.XOR,
+              w2.lanewise(VectorOperators.LSHR, 10));
+      w[i] = w[i - 16].add(s0).add(w[i - 7]).add(s1);
+    } // for
+
+    IntVector a = s[0];
+    IntVector b = s[1];
+    IntVector c = s[2];
+    IntVector d = s[3];
+    IntVector e = s[4];
+    IntVector f = s[5];
+    IntVector g = s[6];
+    IntVector h = s[7];
+    for (int i = 0; i < 64; i++) {
+      IntVector s1 = rotr(e, 6).lanewise(VectorOperators.XOR, rotr(e, 11))
+          .lanewise(VectorOperators.XOR, rotr(e, 25));
+      IntVector ch = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+      IntVector t1 = h.add(s1).add(ch).add(Sha256.K[i]).add(w[i]);
+      IntVector s0 = rotr(a, 2).lanewise(VectorOperators.XOR, rotr(a, 13))
+          .lanewise(VectorOperators.XOR, rotr(a, 22));
+      IntVector maj = a.and(b).lanewise(VectorOperators.XOR, a.and(c))
+          .lanewise(VectorOperators.XOR, b.and(c));
+      h = g;
+      g = f;
+      f = e;
+      e = d.add(t1);
+      d = c;
+      c = b;
+      b = a;
+      a = t1.add(s0.add(maj));
+    } // for
+    s[0] = s[0].add(a);
+    s[1] = s[1].add(b);
+    s[2] = s[2].add(c);
+    s[3] = s[3].add(d);
+    s[4] = s[4].add(e);
+    s[5] = s[5].add(f);
+    s[6] = s[6].add(g);
+    s[7] = s[7].add(h);
+  } // compress(IntVector[])
+
+  /**
+   * Copy the final state of one lane.
+   *
+   * @param lane
+   *   The lane.
+   * @param out
+   *   Where to put the eight words of state.
+   */
+  void laneState(int lane, int[] out) {
+    for (int i = 0; i < 8; i++) {
+      out[i] = this.state[i][lane];
+    } // for
+  } // laneState(int, int[])
+} // class Sha256Lanes
@@ -0,0 +1,312 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshots of the index of a chain (the net balances and the users, in
+ * the order in which they first appear, with the number of times each
+ * appears) after some number of blocks, tagged with the hash of the
+ * last of those blocks.
+ *
+ * A snapshot file holds a magic number, the height (the number of
+ * blocks), the length of the hash and the hash, the balance of
+ * deposits, the number of users, then each user's name (a
+ * length-prefixed UTF-8 string), balance and appearances, and finally a
+ * CRC-32C checksum of everything before it. We name users, rather than
+ * using their ids, since ids only last as long as the program.
+ *
+ * @author Your Name Here
+ */
+final class Snapshot {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The first int of every snapshot file ("SNAP").
+   */
+  static final int MAGIC = 0x534E4150;
+
+  /**
+   * The start of the name of each snapshot file.
+   */
+  static final String PREFIX = "snapshot-";
+
+  /**
+   * The end of the name of each snapshot file.
+   */
+  static final String SUFFIX = ".bin";
+
+  /**
+   * The number of snapshots we keep, so that we have something to fall
+   * back on if the latest is damaged.
+   */
+  static final int KEEP = 2;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of blocks that the snapshot covers.
+   */
+  int height;
+
+  /**
+   * The hash of the last of those blocks.
+   */
+  Hash hash;
+
+  /**
+   * The net balance of deposits.
+   */
+  int deposits;
+
+  /**
+   * The users, in the order in which they first appear.
+   */
+  String[] names;
+
+  /**
+   * The balance of each user.
+   */
+  int[] balances;
+
+  /**
+   * The number of times each user appears.
+   */
+  int[] appearances;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a snapshot.
+   *
+   * @param height
+   *   The number of blocks that the snapshot covers.
+   * @param hash
+   *   The hash of the last of those blocks.
+   * @param deposits
+   *   The net balance of deposits.
+   * @param names
+   *   The users, in the order in which they first appear.
+   * @param balances
+   *   The balance of each user.
+   * @param appearances
+   *   The number of times each user appears.
+   */
+  Snapshot(int height, Hash hash, int deposits, String[] names,
+      int[] balances, int[] appearances) {
+    this.height = height;
+    this.hash = hash;
+    this.deposits = deposits;
+    this.names = names;
+    this.balances = balances;
+    this.appearances = appearances;
+  } // Snapshot(int, Hash, int, String[], int[], int[])
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Find the file for the snapshot at a particular height.
+   *
+   * @param dir
+   *   The directory that holds the snapshots.
+   * @param height
+   *   The height of the snapshot.
+   *
+   * @return the path to the file.
+   */
+  static Path file(Path dir, int height) {
+    return dir.resolve(PREFIX + height + SUFFIX);
+  } // file(Path, int)
+
+  /**
+   * Find the heights of the snapshots in a directory.
+   *
+   * @param dir
+   *   The directory that holds the snapshots.
+   *
+   * @return the heights, from highest to lowest.
+   *
+   * @throws IOException
+   *   If we cannot list the directory.
+   */
+  static List<Integer> heights(Path dir) throws IOException {
+    ArrayList<Integer> heights = new ArrayList<Integer>();
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          heights.add(Integer.parseInt(name.substring(PREFIX.length(),
+              name.length() - SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          // Not one of ours.
+        } // try/catch
+      } // for
+    } // try
+    Collections.sort(heights, Collections.reverseOrder());
+    return heights;
+  } // heights(Path)
+
+  /**
+   * Read a snapshot.
+   *
+   * @param file
+   *   The file that holds it.
+   *
+   * @return the snapshot.
+   *
+   * @throws IOException
+   *   If we cannot read the file.
+   * @throws IllegalArgumentException
+   *   If the file does not hold a complete, undamaged snapshot.
+   */
+  static Snapshot read(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    if (buffer.limit() < 2 * Integer.BYTES) {
+      throw new IllegalArgumentException("Truncated snapshot");
+    } // if
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.array(), 0, buffer.limit() - Integer.BYTES);
+    if ((buffer.getInt(0) != MAGIC)
+        || (buffer.getInt(buffer.limit() - Integer.BYTES)
+            != (int) crc.getValue())) {
+      throw new IllegalArgumentException("Damaged snapshot");
+    } // if
+    buffer.limit(buffer.limit() - Integer.BYTES).position(Integer.BYTES);
+    try {
+      int height = buffer.getInt();
+      int length = buffer.getInt();
+      if ((length < 0) || (length > buffer.remaining())) {
+        throw new IllegalArgumentException("Invalid hash length");
+      } // if
+      Hash hash = Hash.read(buffer, length);
+      int deposits = buffer.getInt();
+      int count = buffer.getInt();
+      // Each user takes at least three ints.
+      if ((count < 0) || (count > buffer.remaining() / (3 * Integer.BYTES))) {
+        throw new IllegalArgumentException("Invalid number of users");
+      } // if
+      String[] names = new String[count];
+      int[] balances = new int[count];
+      int[] appearances = new int[count];
+      for (int i = 0; i < count; i++) {
+        names[i] = Transaction.decodeString(buffer);
+        balances[i] = buffer.getInt();
+        appearances[i] = buffer.getInt();
+      } // for
+      if (buffer.hasRemaining()) {
+        throw new IllegalArgumentException("Extra bytes in snapshot");
+      } // if
+      return new Snapshot(height, hash, deposits, names, balances,
+          appearances);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated snapshot");
+    } // try/catch
+  } // read(Path)
+
+  /**
+   * Make the entries of a directory (e.g., a file we just renamed)
+   * durable.
+   *
+   * @param dir
+   *   The directory.
+   *
+   * @throws IOException
+   *   If we cannot sync the directory.
+   */
+  static void syncDirectory(Path dir) throws IOException {
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(dir, StandardOpenOption.READ);
+    } catch (IOException e) {
+      // Some platforms (e.g., Windows) can't open directories, and make
+      // renames durable without our help.
+      return;
+    } // try/catch
+    try (channel) {
+      channel.force(true);
+    } // try
+  } // syncDirectory(Path)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Write this snapshot to a directory, replacing the file atomically,
+   * and remove all but the latest snapshots. We sync the file before we
+   * rename it and the directory after, so that the snapshot survives a
+   * crash once we return.
+   *
+   * @param dir
+   *   The directory that holds the snapshots.
+   *
+   * @throws IOException
+   *   If we cannot write the snapshot.
+   */
+  void write(Path dir) throws IOException {
+    byte[][] encoded = new byte[this.names.length][];
+    int length = 6 * Integer.BYTES + this.hash.length();
+    for (int i = 0; i < this.names.length; i++) {
+      encoded[i] = this.names[i].getBytes(StandardCharsets.UTF_8);
+      length += 3 * Integer.BYTES + encoded[i].length;
+    } // for
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.putInt(MAGIC)
+        .putInt(this.height)
+        .putInt(this.hash.length())
+        .put(this.hash.data)
+        .putInt(this.deposits)
+        .putInt(this.names.length);
+    for (int i = 0; i < this.names.length; i++) {
+      buffer.putInt(encoded[i].length)
+          .put(encoded[i])
+          .putInt(this.balances[i])
+          .putInt(this.appearances[i]);
+    } // for
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.array(), 0, buffer.position());
+    buffer.putInt((int) crc.getValue()).flip();
+
+    Path temp = Files.createTempFile(dir, PREFIX, ".tmp");
+    try {
+      try (FileChannel channel =
+          FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        } // while
+        channel.force(true);
+      } // try
+      Files.move(temp, file(dir, this.height),
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    } // try/finally
+    syncDirectory(dir);
+
+    List<Integer> heights = heights(dir);
+    for (int i = KEEP; i < heights.size(); i++) {
+      Files.deleteIfExists(file(dir, heights.get(i)));
+    } // for
+  } // write(Path)
+} // class Snapshot
@@ -1,8 +1,20 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * A simple transaction.
  *
+ * Transactions have a canonical binary encoding: the length of the
+ * source (an int), the source in UTF-8, the length of the target, the
+ * target, and the amount (an int), all big-endian. Since transactions
+ * never change, we build the encoding once and cache it.
+ *
+ * Rather than keeping their own copies of the names of the source and
+ * target, transactions keep their ids in the shared
+ * <code>UserDictionary</code>.
+ *
  * @author
  *   Samuel A. Rebelsky
  */
@@ -12,20 +24,30 @@ public class Transaction {
   // +--------+
 
   /**
-   * The source of a transfer.
+   * The id of the source of a transfer.
    */
-  private String source;
+  private int source;
 
   /**
-   * The target of a transfer.
+   * The id of the target of a transfer.
    */
-  private String target;
+  private int target;
 
   /**
    * The amount transferred.
    */
   private int amount;
 
+  /**
+   * The encoding of the transaction, once we've built it.
+   */
+  private byte[] encoding;
+
+  /**
+   * The hash code, once we've computed it.
+   */
+  private int code;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -42,10 +64,116 @@ public class Transaction {
    *   The funds transfered.
    */
   public Transaction(String src, String tgt, int amt) {
+    this.source = UserDictionary.USERS.id(src);
+    this.target = UserDictionary.USERS.id(tgt);
+    this.amount = amt;
+  } // Transaction(src)
+
+  /**
+   * Create a new Transaction from the ids of its source and target in
+   * the shared <code>UserDictionary</code>.
+   *
+   * @param src
+   *   The id of the source.
+   * @param tgt
+   *   The id of the target.
+   * @param amt
+   *   The funds transferred.
+   */
+  Transaction(int src, int tgt, int amt) {
     this.source = src;
     this.target = tgt;
     this.amount = amt;
-  } // Transaction(src)
+  } // Transaction(int, int, int)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Read a transaction in the canonical encoding from the current
+   * position of a buffer, advancing the position past it.
+   *
+   * @param buffer
+   *   The buffer to read from.
+   *
+   * @return the transaction.
+   *
+   * @throws IllegalArgumentException
+   *   If the buffer does not hold a complete transaction.
+   */
+  public static Transaction decode(ByteBuffer buffer) {
+    String src = decodeString(buffer);
+    String tgt = decodeString(buffer);
+    if (buffer.remaining() < Integer.BYTES) {
+      throw new IllegalArgumentException("Truncated transaction");
+    } // if
+    return new Transaction(src, tgt, buffer.getInt());
+  } // decode(ByteBuffer)
+
+  // +----------------+----------------------------------------------
+  // | Static helpers |
+  // +----------------+
+
+  /**
+   * Read one length-prefixed UTF-8 string from a buffer.
+   *
+   * @param buffer
+   *   The buffer to read from.
+   *
+   * @return the string.
+   *
+   * @throws IllegalArgumentException
+   *   If the buffer does not hold a complete string.
+   */
+  static String decodeString(ByteBuffer buffer) {
+    if (buffer.remaining() < Integer.BYTES) {
+      throw new IllegalArgumentException("Truncated transaction");
+    } // if
+    int length = buffer.getInt();
+    if ((length < 0) || (length > buffer.remaining())) {
+      throw new IllegalArgumentException("Invalid string length in "
+          + "transaction (" + length + ")");
+    } // if
+    if (buffer.hasArray()) {
+      String result = new String(buffer.array(),
+          buffer.arrayOffset() + buffer.position(), length,
+          StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+      return result;
+    } // if
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  } // decodeString(ByteBuffer)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the canonical encoding of this transaction, building it if
+   * we haven't already.
+   *
+   * @return the encoding, which the caller must not change.
+   */
+  byte[] encoding() {
+    byte[] result = this.encoding;
+    if (result == null) {
+      byte[] src = this.getSource().getBytes(StandardCharsets.UTF_8);
+      byte[] tgt = this.getTarget().getBytes(StandardCharsets.UTF_8);
+      result = ByteBuffer.allocate(3 * Integer.BYTES + src.length
+              + tgt.length)
+          .putInt(src.length)
+          .put(src)
+          .putInt(tgt.length)
+          .put(tgt)
+          .putInt(this.amount)
+          .array();
+      this.encoding = result;
+    } // if
+    return result;
+  } // encoding()
 
   // +---------+-----------------------------------------------------
   // | Methods |
@@ -57,7 +185,7 @@ public class Transaction {
    * @return The source (or the empty string, if it'sa deposit).
    */
   public String getSource() {
-    return this.source;
+    return UserDictionary.USERS.name(this.source);
   } // getSource()
 
   /**
@@ -66,9 +194,36 @@ public class Transaction {
    * @return The target.
    */
   public String getTarget() {
-    return this.target;
+    return UserDictionary.USERS.name(this.target);
   } // getTarget()
 
+  /**
+   * Get the id of the source of the transaction.
+   *
+   * @return the id (<code>UserDictionary.DEPOSIT</code> for a deposit).
+   */
+  int getSourceId() {
+    return this.source;
+  } // getSourceId()
+
+  /**
+   * Get the id of the target of the transaction.
+   *
+   * @return the id.
+   */
+  int getTargetId() {
+    return this.target;
+  } // getTargetId()
+
+  /**
+   * Determine if the transaction is a deposit.
+   *
+   * @return true if the transaction has no source and false otherwise.
+   */
+  public boolean isDeposit() {
+    return this.source == UserDictionary.DEPOSIT;
+  } // isDeposit()
+
   /**
    * Get the amount of the transaction.
    *
@@ -78,6 +233,32 @@ public class Transaction {
     return this.amount;
   } // getAmount()
 
+  /**
+   * Get the number of bytes in the canonical encoding of this
+   * transaction.
+   *
+   * @return the number of bytes.
+   */
+  public int encodedLength() {
+    return this.encoding().length;
+  } // encodedLength()
+
+  /**
+   * Write the canonical encoding of this transaction at the current
+   * position of a buffer, advancing the position past it.
+   *
+   * @param buffer
+   *   The buffer to write to.
+   *
+   * @return the buffer.
+   *
+   * @throws java.nio.BufferOverflowException
+   *   If the buffer does not have room for the encoding.
+   */
+  public ByteBuffer encode(ByteBuffer buffer) {
+    return buffer.put(this.encoding());
+  } // encode(ByteBuffer)
+
   /**
    * Convert to string form.
    *
@@ -86,10 +267,8 @@ public class Transaction {
    *    a string in the form [Deposit, Target: target, Amount: amount].
    */
   public String toString() {
-    return String.format("[%s, Target: %s, Amount: %s]",
-        ("".equals(this.source)) ? "Deposit" : "Source: " + this.source,
-        this.target,
-        this.amount);
+    return "[" + (this.isDeposit() ? "Deposit" : "Source: " + this.getSource())
+        + ", Target: " + this.getTarget() + ", Amount: " + this.amount + "]";
   } // toString()
 
   /**
@@ -98,7 +277,12 @@ public class Transaction {
    * @return the hash code.
    */
   public int hashCode() {
-    return this.toString().hashCode();
+    int result = this.code;
+    if (result == 0) {
+      result = (31 * this.source + this.target) * 31 + this.amount;
+      this.code = result;
+    } // if
+    return result;
   } // hashCode()
 
   /**
@@ -125,8 +309,8 @@ public class Transaction {
    *   and value.
    */
   public boolean equals(Transaction other) {
-    return other.source.equals(this.source)
-        && other.target.equals(this.target)
+    return other.source == this.source
+        && other.target == this.target
         && other.amount == this.amount;
   } // equals(Transaction)
 } // class Transaction
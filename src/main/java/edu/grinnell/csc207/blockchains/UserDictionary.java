@@ -0,0 +1,169 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionaries that give each user name a small, dense integer id, so
+ * that transactions can store ids rather than their own copies of the
+ * names. The empty name, which we use as the source of deposits, always
+ * has id <code>DEPOSIT</code>.
+ *
+ * Ids are never reused or removed, so a dictionary grows with the number
+ * of distinct names it has seen. Dictionaries are thread safe.
+ *
+ * @author Your Name Here
+ */
+public final class UserDictionary {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The id of the empty name.
+   */
+  public static final int DEPOSIT = 0;
+
+  // +---------------+-----------------------------------------------
+  // | Static fields |
+  // +---------------+
+
+  /**
+   * The dictionary that transactions use.
+   */
+  static final UserDictionary USERS = new UserDictionary();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The ids of the names.
+   */
+  ConcurrentHashMap<String, Integer> ids =
+      new ConcurrentHashMap<String, Integer>();
+
+  /**
+   * The names, indexed by id. Only the first <code>size</code> are used.
+   * We replace (or reassign) the array after each addition, so that
+   * readers see the new name.
+   */
+  volatile String[] names = new String[16];
+
+  /**
+   * The number of names.
+   */
+  volatile int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new dictionary that knows only the empty name.
+   */
+  public UserDictionary() {
+    this.id("");
+  } // UserDictionary()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get the dictionary that transactions use.
+   *
+   * @return the dictionary.
+   */
+  public static UserDictionary users() {
+    return USERS;
+  } // users()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Add a name that may not yet be in the dictionary.
+   *
+   * @param name
+   *   The name to add.
+   *
+   * @return the id of the name.
+   */
+  synchronized int add(String name) {
+    Integer id = this.ids.get(name);
+    if (id != null) {
+      return id;
+    } // if
+    String[] current = this.names;
+    int result = this.size;
+    if (result == current.length) {
+      current = Arrays.copyOf(current, 2 * current.length);
+    } // if
+    current[result] = name;
+    this.names = current;
+    this.size = result + 1;
+    this.ids.put(name, result);
+    return result;
+  } // add(String)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the id of a name, adding the name if it's not already in the
+   * dictionary.
+   *
+   * @param name
+   *   The name.
+   *
+   * @return the id of the name.
+   */
+  public int id(String name) {
+    Integer id = this.ids.get(name);
+    return (id != null) ? id : this.add(name);
+  } // id(String)
+
+  /**
+   * Find the id of a name without adding it.
+   *
+   * @param name
+   *   The name.
+   *
+   * @return the id of the name, or -1 if it is not in the dictionary.
+   */
+  public int find(String name) {
+    Integer id = this.ids.get(name);
+    return (id != null) ? id : -1;
+  } // find(String)
+
+  /**
+   * Get the name with a particular id.
+   *
+   * @param id
+   *   The id.
+   *
+   * @return the name.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If no name has that id.
+   */
+  public String name(int id) {
+    if ((id < 0) || (id >= this.size)) {
+      throw new IndexOutOfBoundsException("No user with id " + id);
+    } // if
+    return this.names[id];
+  } // name(int)
+
+  /**
+   * Get the number of names in the dictionary, including the empty name.
+   * Ids run from 0 up to (but not including) the size.
+   *
+   * @return the number of names.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+} // class UserDictionary
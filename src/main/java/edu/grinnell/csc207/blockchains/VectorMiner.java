@@ -0,0 +1,139 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * A miner that hashes several nonces at once in the lanes of SIMD
+ * vectors, using the incubating vector API. Since that module is still
+ * incubating, we only build this class (and <code>Sha256Lanes</code>)
+ * in the <code>vector</code> Maven profile (<code>mvn -Pvector</code>).
+ * The JVM must be started with
+ * <code>--add-modules jdk.incubator.vector</code> for vector mining to
+ * work; if it is not, we fall back to another (scalar) miner.
+ *
+ * Like the other miners, it finds the smallest valid nonce.
+ *
+ * @author Your Name Here
+ */
+public class VectorMiner implements Miner {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Whether the vector API is available.
+   */
+  static final boolean AVAILABLE =
+      ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The miner we use when the vector API is not available.
+   */
+  Miner fallback;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that falls back to the sequential search in
+   * the block constructor.
+   */
+  public VectorMiner() {
+    this(Block::new);
+  } // VectorMiner()
+
+  /**
+   * Create a new miner with a particular fallback.
+   *
+   * @param fallback
+   *   The miner to use when the vector API is not available.
+   */
+  public VectorMiner(Miner fallback) {
+    this.fallback = fallback;
+  } // VectorMiner(Miner)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Determine if this JVM can use the vector API.
+   *
+   * @return true if vector mining is available and false if we will use
+   *   the fallback.
+   */
+  public static boolean isAvailable() {
+    return AVAILABLE;
+  } // isAvailable()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Mine for a block with the given contents whose hash meets the
+   * requirements of the validator.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the mined block, which has the smallest valid nonce.
+   */
+  public Block mine(int num, Transaction transaction, Hash prevHash,
+      HashValidator check) {
+    if (!AVAILABLE) {
+      return this.fallback.mine(num, transaction, prevHash, check);
+    } // if
+    return new Block(num, transaction, prevHash,
+        search(new NonceHasher(num, transaction, prevHash), check));
+  } // mine(int, Transaction, Hash, HashValidator)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Search the nonces, a vector's worth at a time, for the first one that
+   * gives a valid hash.
+   *
+   * @param hasher
+   *   The hasher for the block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the smallest valid nonce.
+   */
+  static long search(NonceHasher hasher, HashValidator check) {
+    Sha256Lanes lanes = new Sha256Lanes(hasher);
+    DifficultyValidator difficulty = (check instanceof DifficultyValidator)
+        ? (DifficultyValidator) check
+        : null;
+    Hash view = hasher.view();
+    for (long first = 0; first >= 0; first += lanes.lanes) {
+      lanes.compute(first);
+      for (int lane = 0; lane < lanes.lanes; lane++) {
+        lanes.laneState(lane, hasher.state);
+        if (difficulty != null) {
+          if (difficulty.isValid(hasher.state)) {
+            return first + lane;
+          } // if
+        } else {
+          Sha256.write(hasher.state, hasher.out);
+          if (check.isValid(view)) {
+            return first + lane;
+          } // if
+        } // if/else
+      } // for
+    } // for
+    throw new IllegalStateException("No valid nonce");
+  } // search(NonceHasher, HashValidator)
+} // class VectorMiner
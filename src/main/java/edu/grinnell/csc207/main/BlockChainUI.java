@@ -1,8 +1,11 @@
 package edu.grinnell.csc207.main;
 
+import edu.grinnell.csc207.blockchains.AdaptiveValidator;
 import edu.grinnell.csc207.blockchains.Block;
 import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.DifficultyValidator;
 import edu.grinnell.csc207.blockchains.HashValidator;
+import edu.grinnell.csc207.blockchains.MiningService;
 import edu.grinnell.csc207.blockchains.Transaction;
 
 import edu.grinnell.csc207.util.IOUtils;
@@ -11,6 +14,9 @@ import java.io.PrintWriter;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 
+import java.time.Duration;
+import java.util.Iterator;
+
 /**
  * A simple UI for our BlockChain class.
  *
@@ -23,10 +29,21 @@ public class BlockChainUI {
   // +-----------+
 
   /**
-   * The number of bytes we validate. Should be set to 3 before submitting.
+   * The number of bytes we validate at first. Should be set to 3 before
+   * submitting.
    */
   static final int VALIDATOR_BYTES = 0;
 
+  /**
+   * The number of blocks between changes in difficulty.
+   */
+  static final int RETARGET_INTERVAL = 4;
+
+  /**
+   * How long we'd like each block to take.
+   */
+  static final Duration BLOCK_TIME = Duration.ofSeconds(10);
+
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
@@ -40,7 +57,7 @@ public class BlockChainUI {
   public static void instructions(PrintWriter pen) {
     pen.println("""
       Valid commands:
-        mine: discovers the nonce for a given transaction
+        mine: discovers the nonce for a given transaction (in the background)
         append: appends a new block onto the end of the chain
         remove: removes the last block from the end of the chain
         check: checks that the block chain is valid
@@ -68,18 +85,10 @@ public class BlockChainUI {
 
     // Set up our blockchain.
     HashValidator validator =
-        (h) -> {
-          if (h.length() < VALIDATOR_BYTES) {
-            return false;
-          } // if
-          for (int v = 0; v < VALIDATOR_BYTES; v++) {
-            if (h.get(v) != 0) {
-              return false;
-            } // if
-          } // for
-          return true;
-        };
-    BlockChain chain = new BlockChain(validator);
+        new AdaptiveValidator(new DifficultyValidator(8 * VALIDATOR_BYTES),
+            RETARGET_INTERVAL, BLOCK_TIME);
+    MiningService miners = new MiningService();
+    BlockChain chain = new BlockChain(validator, miners);
 
     instructions(pen);
 
@@ -99,19 +108,39 @@ public class BlockChainUI {
 
       switch (command.toLowerCase()) {
         case "append":
-          pen.printf("Command '%s' is not yet implemented", command);
+          source = IOUtils.readLine(pen, eyes, "Source (return for deposit): ");
+          target = IOUtils.readLine(pen, eyes, "Target: ");
+          amount = IOUtils.readInt(pen, eyes, "Amount: ");
+          long nonce = IOUtils.readLong(pen, eyes, "Nonce: ");
+          try {
+            Block blk = new Block(chain.getSize(),
+                new Transaction(source, target, amount), chain.getHash(), nonce);
+            chain.append(blk);
+            pen.println("Appended: " + blk);
+          } catch (IllegalArgumentException e) {
+            pen.println("Could not append: " + e.getMessage());
+          } // try/catch
           break;
 
         case "balance":
-          pen.printf("Command '%s' is not yet implemented", command);
+          String user = IOUtils.readLine(pen, eyes, "User: ");
+          pen.printf("%s's balance is %d\n", user, chain.balance(user));
           break;
 
         case "blocks":
-          pen.printf("Command '%s' is not yet implemented", command);
+          Iterator<Block> blocks = chain.blocks();
+          while (blocks.hasNext()) {
+            pen.println(blocks.next());
+          } // while
           break;
 
         case "check":
-          pen.printf("Command '%s' is not yet implemented", command);
+          try {
+            chain.check();
+            pen.println("The blockchain checks out.");
+          } catch (Exception e) {
+            pen.println(e.getMessage());
+          } // try/catch
           break;
 
         case "help":
@@ -122,8 +151,16 @@ public class BlockChainUI {
           source = IOUtils.readLine(pen, eyes, "Source (return for deposit): ");
           target = IOUtils.readLine(pen, eyes, "Target: ");
           amount = IOUtils.readInt(pen, eyes, "Amount: ");
-          Block b = chain.mine(new Transaction(source, target, amount));
-          pen.println("Nonce: " + b.getNonce());
+          Transaction t = new Transaction(source, target, amount);
+          // Mine in the background so that other commands keep working.
+          miners.mineAsync(chain, t).whenComplete((b, e) -> {
+            if (e != null) {
+              pen.printf("\nCould not mine %s: %s\n", t, e);
+            } else {
+              pen.printf("\nNonce for %s: %d\n", t, b.getNonce());
+            } // if/else
+          });
+          pen.println("Mining in the background.");
           break;
 
         case "quit":
@@ -131,15 +168,24 @@ public class BlockChainUI {
           break;
 
         case "remove":
-          pen.printf("Command '%s' is not yet implemented", command);
+          if (chain.removeLast()) {
+            pen.println("Removed the last block.");
+          } else {
+            pen.println("Cannot remove the initial block.");
+          } // if/else
           break;
 
         case "transactions":
-          pen.printf("Command '%s' is not yet implemented", command);
+          for (Transaction trans : chain) {
+            pen.println(trans);
+          } // for
           break;
 
         case "users":
-          pen.printf("Command '%s' is not yet implemented", command);
+          Iterator<String> users = chain.users();
+          while (users.hasNext()) {
+            pen.println(users.next());
+          } // while
           break;
 
         default:
@@ -148,6 +194,7 @@ public class BlockChainUI {
       } // switch
     } // while
 
+    miners.close();
     pen.printf("\nGoodbye\n");
     eyes.close();
     pen.close();
@@ -0,0 +1,113 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.Transaction;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+
+/**
+ * Time balance lookups, user listings, and appends as a chain grows.
+ * With the balance index, the times should stay flat as the chain grows.
+ * At the end, compare sequential and parallel streams over the chain.
+ *
+ * @author Your Name Here
+ */
+public class ChainBenchmark {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of users in the chain.
+   */
+  static final int USERS = 1000;
+
+  /**
+   * The number of lookups we time at each size.
+   */
+  static final int LOOKUPS = 10000;
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make the transaction for a block.
+   *
+   * @param i
+   *   The number of the block.
+   *
+   * @return a transaction between two of our users.
+   */
+  static Transaction transaction(int i) {
+    return (i < USERS)
+        ? new Transaction("", "U" + i, 100)
+        : new Transaction("U" + (i % USERS), "U" + ((i * 7) % USERS), 1);
+  } // transaction(int)
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Grow a chain to the given number of blocks, timing operations at
+   * each power of ten.
+   *
+   * @param args
+   *   Command-line arguments: optionally, the number of blocks (one
+   *   million by default).
+   */
+  public static void main(String[] args) {
+    PrintWriter pen = new PrintWriter(System.out, true);
+    int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+
+    BlockChain chain = new BlockChain((hash) -> true);
+    pen.printf("%10s %14s %14s %14s\n", "blocks", "append (ns)",
+        "balance (ns)", "users (ns)");
+    long appendNanos = 0;
+    int appends = 0;
+    int sink = 0;
+    for (int next = 10; next <= size; next *= 10) {
+      while (chain.getSize() < next) {
+        Block blk = new Block(chain.getSize(), transaction(chain.getSize()),
+            chain.getHash(), 0L);
+        long start = System.nanoTime();
+        chain.append(blk);
+        appendNanos += System.nanoTime() - start;
+        appends++;
+      } // while
+
+      long start = System.nanoTime();
+      for (int i = 0; i < LOOKUPS; i++) {
+        sink += chain.balance("U" + (i % USERS));
+      } // for
+      long balanceNanos = (System.nanoTime() - start) / LOOKUPS;
+
+      start = System.nanoTime();
+      for (int i = 0; i < 10; i++) {
+        Iterator<String> users = chain.users();
+        while (users.hasNext()) {
+          sink += users.next().length();
+        } // while
+      } // for
+      long usersNanos = (System.nanoTime() - start) / 10;
+
+      pen.printf("%10d %14d %14d %14d\n", chain.getSize(),
+          appendNanos / appends, balanceNanos, usersNanos);
+      appendNanos = 0;
+      appends = 0;
+    } // for
+
+    long start = System.nanoTime();
+    long volume = chain.stream().mapToLong(Transaction::getAmount).sum();
+    long sequentialNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    volume -= chain.parallelStream().mapToLong(Transaction::getAmount).sum();
+    long parallelNanos = System.nanoTime() - start;
+    pen.printf("total volume: %d ms sequential, %d ms parallel\n",
+        sequentialNanos / 1_000_000, parallelNanos / 1_000_000);
+    pen.printf("(checksum %d)\n", sink + volume);
+  } // main(String[])
+} // class ChainBenchmark
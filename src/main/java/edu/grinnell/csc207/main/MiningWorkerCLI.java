@@ -0,0 +1,47 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.blockchains.MiningWorker;
+
+import java.io.PrintWriter;
+
+/**
+ * Run mining workers for a coordinator on this host.
+ *
+ * @author Your Name Here
+ */
+public class MiningWorkerCLI {
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Connect to a coordinator and mine until it goes away.
+   *
+   * @param args
+   *   Command-line arguments: the port the coordinator listens on and,
+   *   optionally, the number of workers to run (one per processor by
+   *   default).
+   */
+  public static void main(String[] args) throws Exception {
+    PrintWriter pen = new PrintWriter(System.err, true);
+    if ((args.length < 1) || (args.length > 2)) {
+      pen.println("Usage: MiningWorkerCLI port [workers]");
+      System.exit(1);
+    } // if
+    int port = Integer.parseInt(args[0]);
+    int count = (args.length > 1)
+        ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+
+    Thread[] threads = new Thread[count];
+    for (int i = 0; i < count; i++) {
+      threads[i] = new Thread(MiningWorker.connect(port));
+      threads[i].start();
+    } // for
+    pen.printf("Running %d workers for the coordinator on port %d\n",
+        count, port);
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+  } // main(String[])
+} // class MiningWorkerCLI
@@ -0,0 +1,113 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.BlockStore;
+import edu.grinnell.csc207.blockchains.ColumnarBlockStore;
+import edu.grinnell.csc207.blockchains.ObjectBlockStore;
+import edu.grinnell.csc207.blockchains.OffHeapBlockStore;
+import edu.grinnell.csc207.blockchains.Transaction;
+
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measure how much heap a chain uses with different block stores, and
+ * how long the garbage collector spends on it.
+ * Run with a large heap (e.g., -Xmx4g) for big chains.
+ *
+ * @author Your Name Here
+ */
+public class StoreBenchmark {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make a new store.
+   *
+   * @param kind
+   *   The kind of store.
+   *
+   * @return the store.
+   */
+  static BlockStore store(String kind) {
+    switch (kind) {
+      case "object":
+        return new ObjectBlockStore();
+      case "columnar":
+        return new ColumnarBlockStore();
+      case "offheap":
+        return new OffHeapBlockStore();
+      default:
+        throw new IllegalArgumentException("Unknown store: " + kind);
+    } // switch
+  } // store(String)
+
+  /**
+   * Find how much heap is in use, after collecting garbage.
+   *
+   * @return the number of bytes in use.
+   */
+  static long used() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    } // for
+    return runtime.totalMemory() - runtime.freeMemory();
+  } // used()
+
+  /**
+   * Find how long the garbage collectors have spent collecting.
+   *
+   * @return the number of milliseconds spent collecting.
+   */
+  static long collecting() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    } // for
+    return millis;
+  } // collecting()
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Build a chain in a store and report the heap it uses.
+   *
+   * @param args
+   *   Command-line arguments: the kind of store (object, columnar, or
+   *   offheap)
+   *   and, optionally, the number of blocks (ten million by default).
+   */
+  public static void main(String[] args) {
+    PrintWriter pen = new PrintWriter(System.out, true);
+    if ((args.length < 1) || (args.length > 2)) {
+      pen.println("Usage: StoreBenchmark object|columnar|offheap [blocks]");
+      System.exit(1);
+    } // if
+    int size = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000_000;
+
+    long before = used();
+    BlockChain chain = new BlockChain((hash) -> true, Block::new,
+        store(args[0]));
+    long collected = collecting();
+    long start = System.nanoTime();
+    while (chain.getSize() < size) {
+      int i = chain.getSize();
+      chain.append(new Block(i,
+          new Transaction("U" + (i % 1000), "U" + ((i * 7) % 1000), 1),
+          chain.getHash(), 0L));
+    } // while
+    long nanos = System.nanoTime() - start;
+    long gcMillis = collecting() - collected;
+    long bytes = used() - before;
+    pen.printf("%s: %d blocks, %d MB of heap (%d bytes per block), "
+        + "built in %d ms (%d ms collecting)\n", args[0], chain.getSize(),
+        bytes >> 20, bytes / chain.getSize(), nanos / 1_000_000, gcMillis);
+  } // main(String[])
+} // class StoreBenchmark
@@ -0,0 +1,225 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Closeable;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Some simple tests of our AdaptiveValidator class.
+ *
+ * @author Your Name Here
+ */
+public class TestAdaptiveValidator {
+  // +-----------+---------------------------------------------------
+  // | Utilities |
+  // +-----------+
+
+  /**
+   * Mine and append a block, advancing the clock beforehand.
+   */
+  static void add(BlockChain chain, AtomicLong clock, long nanos, int amount) {
+    clock.addAndGet(nanos);
+    chain.append(chain.mine(new Transaction("", "A", amount)));
+  } // add(BlockChain, AtomicLong, long, int)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Fast blocks make things harder and slow blocks make things easier,
+   * by no more than a factor of four at a time.
+   */
+  @Test
+  public void retargetTest() {
+    DifficultyValidator eight = new DifficultyValidator(8);
+    assertEquals(10, AdaptiveValidator.retarget(eight, 1, 1000).getZeroBits(),
+        "M: fast blocks are capped at four times harder");
+    assertEquals(6, AdaptiveValidator.retarget(eight, 1000, 1).getZeroBits(),
+        "M: slow blocks are capped at four times easier");
+    assertEquals(9, AdaptiveValidator.retarget(eight, 1, 2).getZeroBits(),
+        "M: twice as fast");
+    assertEquals(eight.getTarget(),
+        AdaptiveValidator.retarget(eight, 5, 5).getTarget(),
+        "M: on time");
+    assertEquals(0, AdaptiveValidator.retarget(new DifficultyValidator(0),
+        1000, 1).getZeroBits(),
+        "E: cannot get easier than every hash");
+    // Finer than a bit: two thirds of the target.
+    DifficultyValidator finer = AdaptiveValidator.retarget(eight, 2, 3);
+    assertEquals(8, finer.getZeroBits(), "M: finer than a bit");
+    assertTrue(new BigInteger(1, finer.getTarget().getBytes())
+        .compareTo(new BigInteger(1, eight.getTarget().getBytes())) < 0,
+        "M: finer target is smaller");
+  } // retargetTest()
+
+  /**
+   * A chain retargets every few blocks and still checks old blocks
+   * against the difficulty in force when they were mined.
+   */
+  @Test
+  public void chainTest() throws Exception {
+    AtomicLong clock = new AtomicLong();
+    AdaptiveValidator validator = new AdaptiveValidator(
+        new DifficultyValidator(0), 2, Duration.ofSeconds(1), clock::get);
+    BlockChain chain = new BlockChain(validator);
+    add(chain, clock, 1000, 10);
+    add(chain, clock, 1000, 10);
+    assertEquals(2, validator.current().getZeroBits(), "M: first retarget");
+    add(chain, clock, 1000, 10);
+    add(chain, clock, 1000, 10);
+    assertEquals(4, validator.current().getZeroBits(), "M: second retarget");
+    assertEquals(0, validator.forBlock(2).getZeroBits(), "M: old block");
+    assertEquals(2, validator.forBlock(3).getZeroBits(), "M: middle block");
+    assertEquals(4, validator.forBlock(5).getZeroBits(), "M: next block");
+    chain.check();
+
+    // Blocks must meet the current difficulty.
+    Block easy = new Block(5, new Transaction("", "A", 1), chain.getHash(),
+        (h) -> true);
+    if (!validator.current().isValid(easy.getHash())) {
+      assertThrows(IllegalArgumentException.class, () -> chain.append(easy),
+          "M: block for the wrong difficulty");
+    } // if
+
+    // Removing blocks forgets the retargets they caused.
+    chain.removeLast();
+    assertEquals(2, validator.current().getZeroBits(), "M: after remove");
+    add(chain, clock, 10_000_000_000L, 10);
+    assertEquals(0, validator.current().getZeroBits(), "M: slow retarget");
+    chain.check();
+  } // chainTest()
+
+  /**
+   * A chain only takes blocks whose times are believable, and since the
+   * hash covers the time, no one can change it after mining.
+   */
+  @Test
+  public void timeTest() {
+    AtomicLong clock = new AtomicLong(1_000_000_000_000L);
+    AdaptiveValidator validator = new AdaptiveValidator(
+        new DifficultyValidator(0), 2, Duration.ofSeconds(1), clock::get);
+    BlockChain chain = new BlockChain(validator);
+    add(chain, clock, 1000, 10);
+    long last = chain.getBlock(1).getTime();
+    assertEquals(clock.get(), last, "M: mined at our time");
+    Transaction t = new Transaction("", "A", 1);
+    DifficultyValidator v = validator.current();
+
+    long future = clock.get() + AdaptiveValidator.MAX_DRIFT + 1;
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.append(new Block(2, t, chain.getHash(), future, v)),
+        "E: far future");
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.append(new Block(2, t, chain.getHash(), last - 1, v)),
+        "E: earlier than the last block");
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.append(new Block(2, t, chain.getHash(), v)),
+        "E: no time");
+
+    // Moving the time of a mined block breaks its hash.
+    Block mined = chain.mine(t);
+    mined.time += AdaptiveValidator.MAX_DRIFT;
+    assertThrows(IllegalArgumentException.class, () -> chain.append(mined),
+        "E: changed time");
+    chain.append(chain.mine(t));
+    assertEquals(3, chain.getSize(), "M: good block");
+  } // timeTest()
+
+  /**
+   * We only remember the times of the blocks that start intervals.
+   */
+  @Test
+  public void boundaryTest() {
+    AtomicLong clock = new AtomicLong();
+    AdaptiveValidator validator = new AdaptiveValidator(
+        new DifficultyValidator(0), 3, Duration.ofSeconds(1), clock::get);
+    BlockChain chain = new BlockChain(validator);
+    for (int i = 0; i < 7; i++) {
+      add(chain, clock, 1_000_000_000L, 10);
+    } // for
+    assertEquals(3, validator.times.size(), "M: blocks 0, 3, and 6");
+    chain.removeLast();
+    assertEquals(3, validator.times.size(), "M: block 7 is not a boundary");
+    chain.removeLast();
+    assertEquals(2, validator.times.size(), "M: blocks 0 and 3");
+  } // boundaryTest()
+
+  /**
+   * A chain reopened from a store, with a new validator, works out the
+   * same targets from the times in the blocks.
+   */
+  @Test
+  public void reopenTest(@TempDir Path dir) throws Exception {
+    AtomicLong clock = new AtomicLong();
+    AdaptiveValidator validator = new AdaptiveValidator(
+        new DifficultyValidator(0), 2, Duration.ofSeconds(1), clock::get);
+    Path log = dir.resolve("chain.log");
+    Path snapshots = dir.resolve("snapshots");
+    int size;
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      BlockChain chain = new BlockChain(validator, Block::new, store,
+          snapshots, 3);
+      for (int i = 0; i < 6; i++) {
+        add(chain, clock, (i == 3) ? 3_000_000_000L : 1000, 10);
+      } // for
+      chain.check();
+      size = chain.getSize();
+    } // try
+    assertTrue(validator.current().getZeroBits() > 0, "M: retargeted");
+
+    for (int kind = 0; kind < 3; kind++) {
+      // The new validator's clock has nothing to do with the old one's.
+      AdaptiveValidator fresh = new AdaptiveValidator(
+          new DifficultyValidator(0), 2, Duration.ofSeconds(1),
+          () -> 1L << 60);
+      BlockStore store = (kind == 1) ? new MappedBlockStore(log)
+          : new FileBlockStore(log);
+      BlockChain reopened = (kind == 2)
+          ? new BlockChain(fresh, Block::new, store, snapshots, 3)
+          : new BlockChain(fresh, Block::new, store);
+      assertEquals(size, reopened.getSize(), "M: same size (" + kind + ")");
+      for (int i = 0; i <= size; i++) {
+        assertEquals(validator.forBlock(i).getTarget(),
+            fresh.forBlock(i).getTarget(),
+            "M: same target for block " + i + " (" + kind + ")");
+      } // for
+      reopened.check();
+      ((Closeable) store).close();
+    } // for
+  } // reopenTest(Path)
+
+  /**
+   * Ordinary validators use the same validator for every block.
+   */
+  @Test
+  public void defaultTest() {
+    HashValidator check = (h) -> true;
+    assertSame(check, check.forBlock(17), "M: same validator");
+  } // defaultTest()
+
+  /**
+   * Bad parameters.
+   */
+  @Test
+  public void badTest() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new AdaptiveValidator(new DifficultyValidator(0), 0,
+            Duration.ofSeconds(1)),
+        "E: zero interval");
+    assertThrows(IllegalArgumentException.class,
+        () -> new AdaptiveValidator(new DifficultyValidator(0), 1,
+            Duration.ZERO),
+        "E: zero block time");
+  } // badTest()
+} // class TestAdaptiveValidator
@@ -7,6 +7,9 @@ import java.security.NoSuchAlgorithmException;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -259,4 +262,71 @@ public class TestBlock {
   public void toStringDepositTest() {
   } // toStringDepositTest()
 
+  /**
+   * Test that blocks survive a round trip through their encoding.
+   */
+  @Test
+  public void encodingTest() {
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    Block single = new Block(4, new Transaction("A", "B", 5), ph, 77L);
+    Block batch = new Block(5, new Transaction[] {
+        new Transaction("A", "B", 5), new Transaction("", "C", 6)},
+        single.getHash(), 123456789L, 78L);
+    ByteBuffer buffer = ByteBuffer.allocate(single.encodedLength()
+        + batch.encodedLength());
+    single.encode(buffer);
+    assertEquals(single.encodedLength(), buffer.position(), "M: length");
+    batch.encode(buffer);
+    assertEquals(0, buffer.remaining(), "M: both lengths");
+    buffer.flip();
+
+    Block b = Block.decode(buffer);
+    assertEquals(single.toString(), b.toString(), "M: single round trip");
+    assertEquals(single.getHash(), b.getHash(), "M: single hash");
+    assertEquals(Block.NO_TIME, b.getTime(), "M: single has no time");
+    b = Block.decode(buffer);
+    assertEquals(batch.toString(), b.toString(), "M: batch round trip");
+    assertEquals(batch.getHash(), b.getHash(), "M: batch hash");
+    assertEquals(123456789L, b.getTime(), "M: batch time");
+
+    byte[] bad = new byte[single.encodedLength()];
+    single.encode(ByteBuffer.wrap(bad));
+    bad[4] = 7;
+    assertThrows(IllegalArgumentException.class,
+        () -> Block.decode(ByteBuffer.wrap(bad)), "E: unknown kind");
+    assertThrows(IllegalArgumentException.class,
+        () -> Block.decode(ByteBuffer.wrap(bad, 0, 3)), "E: truncated");
+  } // encodingTest()
+
+  /**
+   * Test that the hash covers the time of a block, if it has one.
+   */
+  @Test
+  public void timeTest() {
+    Transaction t = new Transaction("A", "B", 5);
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    Block untimed = new Block(4, t, ph, 77L);
+    Block timed = new Block(4, t, ph, 1000L, 77L);
+    assertNotEquals(untimed.getHash(), timed.getHash(), "M: time is hashed");
+    assertEquals(timed.getHash(), new Block(4, t, ph, 1000L, 77L).getHash(),
+        "M: same time, same hash");
+    assertTrue(timed.hashMatches(true), "M: specialized hash with time");
+
+    DifficultyValidator v = new DifficultyValidator(8);
+    Block mined = new Block(4, t, ph, 1000L, v);
+    assertEquals(1000L, mined.getTime(), "M: mined time");
+    assertTrue(v.isValid(mined.getHash()), "M: mined with time");
+    assertEquals(mined.getHash(),
+        new ParallelMiner().mine(4, t, ph, 1000L, v).getHash(),
+        "M: parallel miner with time");
+
+    // Changing the time in the encoding changes the hash.
+    ByteBuffer buffer =
+        mined.encode(ByteBuffer.allocate(mined.encodedLength()));
+    buffer.putLong(buffer.limit() - Long.BYTES, 2000L).flip();
+    Block changed = Block.decode(buffer);
+    assertEquals(2000L, changed.getTime(), "M: changed time");
+    assertNotEquals(mined.getHash(), changed.getHash(), "M: changed hash");
+  } // timeTest()
+
 } // class TestBlock
@@ -1,8 +1,17 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -12,6 +21,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 
 /**
@@ -463,4 +473,499 @@ public class TestBlockChain {
     assertCheckFails(chain, "E: modified chain is incorrect");
   } // testModifiedChain()
 
+  /**
+   * Make sure that checking with our own SHA-256 accepts correct chains
+   * and catches modified ones.
+   */
+  @Test
+  public void testSpecializedHashing() throws Exception {
+    HashValidator v =
+        (hash) ->
+            (hash.length() >= 2) && (hash.get(0) == 12) && (hash.get(1) == 12);
+    BlockChain chain = new BlockChain(v);
+    chain.setSpecializedHashing(true);
+
+    chain.append(chain.mine(new Transaction("", "F", 100)));
+    chain.append(chain.mine(new Transaction("F", "G", 10)));
+    assertTrue(chain.isCorrect(), "M: correct chain");
+    chain.check();
+
+    Block block = chain.mine(new Transaction("G", "F", 5));
+    ++block.nonce;
+    assertAppendFails(chain, block, "M: Appending block with modified nonce");
+
+    Iterator<Block> blocks = chain.blocks();
+    blocks.next();
+    blocks.next().transaction = new Transaction("", "F", 1000);
+    assertFalse(chain.isCorrect(), "M: modified chain is incorrect");
+  } // testSpecializedHashing()
+
+  /**
+   * Make sure that batched blocks work alongside single-transaction
+   * blocks.
+   */
+  @Test
+  public void testBatches() throws Exception {
+    HashValidator v =
+        (hash) -> (hash.length() >= 1) && (hash.get(0) == 7);
+    BlockChain chain = new BlockChain(v);
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    Transaction[] batch = new Transaction[] {
+        new Transaction("A", "B", 10), new Transaction("B", "C", 5),
+        new Transaction("", "D", 1)};
+    Block block = chain.mine(batch);
+    assertTrue(block.isBatch(), "M: batched block");
+    assertEquals(Arrays.asList(batch), block.getTransactions(),
+        "M: transactions of batched block");
+    batch[0] = new Transaction("A", "E", 90);
+    assertEquals("B", block.getTransactions().get(0).getTarget(),
+        "E: block keeps its own copy of the batch");
+    chain.append(block);
+    chain.append(chain.mine(new Transaction("C", "A", 5)));
+    assertTrue(chain.isCorrect(), "M: chain with a batch");
+    chain.check();
+    assertEquals(95, chain.balance("A"), "M: A's balance");
+    assertEquals(5, chain.balance("B"), "M: B's balance");
+    assertEquals(0, chain.balance("C"), "M: C's balance");
+    assertArrayEquals(new String[] {"A", "B", "C", "D"}, users(chain),
+        "M: users include everyone in the batch");
+    int count = 0;
+    for (Transaction t : chain) {
+      count++;
+    } // for
+    assertEquals(6, count, "M: iterate every transaction");
+
+    // Overdrafts within a batch are caught.
+    chain.append(chain.mine(new Transaction[] {
+        new Transaction("D", "A", 1), new Transaction("D", "A", 1)}));
+    assertCheckFails(chain, "M: overdraft within a batch");
+    chain.removeLast();
+    chain.check();
+
+    // Modifying a batch changes the Merkle root. We modify the block
+    // behind the chain's back, so we need to check everything.
+    chain.setFullRescan(true);
+    block.batch[1] = new Transaction("B", "C", 4);
+    assertFalse(chain.isCorrect(), "M: modified batch");
+    chain.setSpecializedHashing(true);
+    assertFalse(chain.isCorrect(), "M: modified batch, specialized");
+    block.batch[1] = new Transaction("B", "C", 5);
+    assertTrue(chain.isCorrect(), "M: restored batch, specialized");
+
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.mine(new Transaction[0]),
+        "E: empty batch");
+  } // testBatches()
+
+  /**
+   * Make sure that the balance and user index matches a walk of the
+   * chain as blocks come and go.
+   */
+  @Test
+  public void testIndex() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    java.util.Random random = new java.util.Random(207);
+    String[] names = new String[] {"", "P", "Q", "R", "S", "T"};
+    for (int round = 0; round < 500; round++) {
+      if ((chain.getSize() > 1) && (random.nextInt(3) == 0)) {
+        chain.removeLast();
+      } else if (random.nextInt(4) == 0) {
+        Transaction[] batch = new Transaction[1 + random.nextInt(4)];
+        for (int i = 0; i < batch.length; i++) {
+          batch[i] = new Transaction(names[random.nextInt(names.length)],
+              names[1 + random.nextInt(names.length - 1)], random.nextInt(20));
+        } // for
+        chain.append(new Block(chain.getSize(), batch, chain.getHash(), 0L));
+      } else {
+        chain.append(new Block(chain.getSize(),
+            new Transaction(names[random.nextInt(names.length)],
+                names[1 + random.nextInt(names.length - 1)],
+                random.nextInt(20)),
+            chain.getHash(), 0L));
+      } // if/else
+
+      java.util.HashMap<String, Integer> expected =
+          new java.util.HashMap<String, Integer>();
+      ArrayList<String> users = new ArrayList<String>();
+      for (Transaction t : chain) {
+        expected.merge(t.getSource(), -t.getAmount(), Integer::sum);
+        expected.merge(t.getTarget(), t.getAmount(), Integer::sum);
+        for (String user : new String[] {t.getSource(), t.getTarget()}) {
+          if (!"".equals(user) && !users.contains(user)) {
+            users.add(user);
+          } // if
+        } // for
+      } // for
+      for (String name : names) {
+        assertEquals((int) expected.getOrDefault(name, 0), chain.balance(name),
+            "M: balance of " + name + " in round " + round);
+      } // for
+      ArrayList<String> actual = new ArrayList<String>();
+      chain.users().forEachRemaining(actual::add);
+      assertEquals(users, actual, "M: users in order in round " + round);
+    } // for
+    assertEquals(0, chain.balance("Nobody"), "E: unknown user");
+  } // testIndex()
+
+  /**
+   * Make sure that parallel verification reports the same problem as
+   * sequential verification.
+   */
+  @Test
+  public void testParallelCheck() throws Exception {
+    java.util.concurrent.ExecutorService pool =
+        java.util.concurrent.Executors.newFixedThreadPool(4);
+    try {
+      BlockChain chain = new BlockChain((hash) -> true);
+      chain.setVerifiers(pool, 4);
+      chain.setFullRescan(true);
+      for (int i = 1; i < 5000; i++) {
+        chain.append(new Block(i, new Transaction("", "A", 1),
+            chain.getHash(), 0L));
+      } // for
+      chain.check();
+
+      chain.blocks.get(3000).nonce = 1;
+      chain.blocks.get(4000).nonce = 1;
+      assertEquals("Block 3000 has a hash that does not match its contents",
+          message(chain), "M: lowest bad hash");
+      chain.blocks.get(3000).nonce = 0;
+      chain.blocks.get(4000).nonce = 0;
+
+      while (chain.getSize() > 2000) {
+        chain.removeLast();
+      } // while
+      chain.append(new Block(2000, new Transaction("B", "A", 1),
+          chain.getHash(), 0L));
+      for (int i = 2001; i < 5000; i++) {
+        chain.append(new Block(i, new Transaction("", "A", 1),
+            chain.getHash(), 0L));
+      } // for
+      chain.blocks.get(3000).nonce = 1;
+      assertEquals("Block 2000: B has insufficient funds (0 < 1)",
+          message(chain), "M: bad balance before bad hash");
+      chain.blocks.get(1999).nonce = 1;
+      String parallel = message(chain);
+      chain.setVerifiers(pool, 1);
+      assertEquals(message(chain), parallel, "M: same as sequential");
+      assertEquals("Block 1999 has a hash that does not match its contents",
+          parallel, "M: bad hash before bad balance");
+
+      assertThrows(IllegalArgumentException.class,
+          () -> chain.setVerifiers(pool, 0), "E: no workers");
+    } finally {
+      pool.shutdown();
+    } // try/finally
+  } // testParallelCheck()
+
+  /**
+   * Make sure that checks only verify new blocks, and that the watermark
+   * follows removals.
+   */
+  @Test
+  public void testWatermark() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    for (int i = 1; i < 10; i++) {
+      chain.append(new Block(i, new Transaction("", "A", 10), chain.getHash(),
+          0L));
+    } // for
+    assertEquals(0, chain.getVerifiedSize(), "M: nothing verified yet");
+    chain.check();
+    assertEquals(10, chain.getVerifiedSize(), "M: everything verified");
+
+    // A change behind the chain's back goes unnoticed, since we don't
+    // verify those blocks again ...
+    chain.blocks.get(5).nonce = 1;
+    chain.append(new Block(10, new Transaction("A", "B", 85), chain.getHash(),
+        0L));
+    chain.check();
+    assertEquals(11, chain.getVerifiedSize(), "M: new block verified");
+
+    // ... unless we ask for a full rescan.
+    chain.setFullRescan(true);
+    assertEquals(0, chain.getVerifiedSize(), "M: full rescan");
+    assertCheckFails(chain, "M: full rescan finds the change");
+    chain.blocks.get(5).nonce = 0;
+    chain.check();
+    chain.setFullRescan(false);
+
+    // Removing blocks moves the watermark back, along with the balances.
+    chain.removeLast();
+    chain.removeLast();
+    assertEquals(9, chain.getVerifiedSize(), "M: after removal");
+    chain.append(new Block(9, new Transaction("A", "B", 85), chain.getHash(),
+        0L));
+    assertCheckFails(chain, "M: A only has 80 after the removal");
+    assertEquals(9, chain.getVerifiedSize(), "M: failed check");
+    chain.removeLast();
+    chain.append(new Block(9, new Transaction("A", "B", 80), chain.getHash(),
+        0L));
+    chain.check();
+    assertEquals(10, chain.getVerifiedSize(), "M: after the fix");
+
+    // Handing out blocks means we can no longer trust the watermark.
+    chain.blocks();
+    assertEquals(0, chain.getVerifiedSize(), "E: blocks handed out");
+  } // testWatermark()
+
+  /**
+   * Make sure that chains start from the latest snapshot that matches
+   * their blocks.
+   */
+  @Test
+  public void testSnapshots(@TempDir Path dir) throws Exception {
+    HashValidator v = (hash) -> true;
+    Path snapshots = dir.resolve("snapshots");
+    ColumnarBlockStore store = new ColumnarBlockStore();
+    BlockChain chain = new BlockChain(v, Block::new, store, snapshots, 4);
+    for (int i = 1; i < 10; i++) {
+      chain.append(new Block(i, new Transaction((i % 2 == 0) ? "" : "A",
+          "B" + (i % 3), i), chain.getHash(), 0L));
+    } // for
+    assertEquals(List.of(8, 4), Snapshot.heights(snapshots),
+        "M: latest two snapshots");
+
+    // Count the blocks that a chain looks at as it starts.
+    int[] gets = new int[] {0};
+    BlockStore counting = new BlockStore() {
+      public int size() {
+        return store.size();
+      } // size()
+
+      public Block get(int num) {
+        gets[0]++;
+        return store.get(num);
+      } // get(int)
+
+      public Hash getHash(int num) {
+        return store.getHash(num);
+      } // getHash(int)
+
+      public void add(Block blk) {
+        store.add(blk);
+      } // add(Block)
+
+      public void removeLast() {
+        store.removeLast();
+      } // removeLast()
+    };
+    BlockChain reopened = new BlockChain(v, Block::new, counting, snapshots,
+        4);
+    assertEquals(2, gets[0], "M: only the blocks after the snapshot");
+    assertIndexMatches(chain, reopened);
+
+    // A damaged snapshot is skipped.
+    Path latest = Snapshot.file(snapshots, 8);
+    byte[] bytes = Files.readAllBytes(latest);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(latest, bytes);
+    gets[0] = 0;
+    reopened = new BlockChain(v, Block::new, counting, snapshots, 4);
+    assertEquals(6, gets[0], "M: fell back to the earlier snapshot");
+    assertIndexMatches(chain, reopened);
+
+    // So is a snapshot from a different chain.
+    Path others = dir.resolve("others");
+    BlockChain other = new BlockChain(v, Block::new, new ObjectBlockStore(),
+        others, 8);
+    for (int i = 1; i < 8; i++) {
+      other.append(new Block(i, new Transaction("", "C", i), other.getHash(),
+          0L));
+    } // for
+    Files.copy(Snapshot.file(others, 8), latest,
+        StandardCopyOption.REPLACE_EXISTING);
+    gets[0] = 0;
+    reopened = new BlockChain(v, Block::new, counting, snapshots, 4);
+    assertEquals(6, gets[0], "M: skipped the other chain's snapshot");
+    assertIndexMatches(chain, reopened);
+
+    // We can remove blocks from before the snapshot.
+    for (int i = 0; i < 7; i++) {
+      reopened.removeLast();
+    } // for
+    assertIndexMatches(new BlockChain(v, Block::new, store), reopened);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> new BlockChain(v, Block::new, store, snapshots, 0),
+        "E: bad interval");
+  } // testSnapshots(Path)
+
+  /**
+   * Make sure that a snapshot we can't write doesn't stop a block from
+   * being appended, and that we write it later.
+   */
+  @Test
+  public void testSnapshotFailure(@TempDir Path dir) throws Exception {
+    HashValidator v = (hash) -> true;
+    Path snapshots = dir.resolve("snapshots");
+    BlockChain chain = new BlockChain(v, Block::new, new ObjectBlockStore(),
+        snapshots, 2);
+    // Put a file where the snapshots go.
+    Files.delete(snapshots);
+    Files.write(snapshots, new byte[] {1});
+    chain.append(new Block(1, new Transaction("", "A", 1), chain.getHash(),
+        0L));
+    assertEquals(2, chain.getSize(), "M: appended anyway");
+    assertTrue(chain.getSnapshotFailure() != null, "M: failure recorded");
+
+    // Once the directory is back, the next block writes the snapshot.
+    Files.delete(snapshots);
+    Files.createDirectory(snapshots);
+    chain.append(new Block(2, new Transaction("", "B", 2), chain.getHash(),
+        0L));
+    assertEquals(null, chain.getSnapshotFailure(), "M: failure cleared");
+    assertEquals(List.of(3), Snapshot.heights(snapshots), "M: caught up");
+  } // testSnapshotFailure(Path)
+
+  /**
+   * Make sure that we can find blocks by number and by hash as blocks
+   * come and go.
+   */
+  @Test
+  public void testLookup() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    ArrayList<Hash> hashes = new ArrayList<Hash>();
+    hashes.add(chain.getHash());
+    assertEquals(0, chain.indexOf(chain.getHash()), "M: initial block");
+
+    Random random = new Random(207);
+    ArrayList<Hash> removed = new ArrayList<Hash>();
+    for (int round = 0; round < 2000; round++) {
+      if ((random.nextInt(3) == 0) && (chain.getSize() > 1)) {
+        removed.add(hashes.remove(hashes.size() - 1));
+        chain.removeLast();
+      } else {
+        chain.append(new Block(chain.getSize(),
+            new Transaction("", "A", random.nextInt(100)), chain.getHash(),
+            0L));
+        hashes.add(chain.getHash());
+      } // if/else
+    } // for
+    for (int i = 0; i < hashes.size(); i++) {
+      assertEquals(i, chain.indexOf(hashes.get(i)), "M: hash of block " + i);
+      assertEquals(hashes.get(i), chain.getBlock(i).getHash(),
+          "M: block " + i);
+    } // for
+    for (Hash hash : removed) {
+      if (!hashes.contains(hash)) {
+        assertEquals(-1, chain.indexOf(hash), "M: removed block");
+      } // if
+    } // for
+    assertEquals(-1, chain.indexOf(new Hash(new byte[] {1, 2, 3})),
+        "M: no such block");
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> chain.getBlock(chain.getSize()), "E: past the end");
+
+    // Looking up blocks doesn't cost us the index or the watermark.
+    chain.check();
+    int balance = chain.balance("A");
+    Block blk = chain.getBlock(1);
+    blk.transaction = new Transaction("", "A", 1000);
+    assertFalse(chain.exposed, "M: blocks not handed out");
+    assertEquals(chain.getSize(), chain.getVerifiedSize(), "M: watermark");
+    assertEquals(balance, chain.balance("A"), "M: copy changed, not chain");
+    assertTrue(chain.isCorrect(), "M: chain unchanged");
+  } // testLookup()
+
+  /**
+   * Make sure that streams see the same transactions as the iterator,
+   * in parallel or not.
+   */
+  @Test
+  public void testStreams() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Random random = new Random(207);
+    for (int i = 1; i < 1000; i++) {
+      if (i % 10 == 0) {
+        chain.append(new Block(i, new Transaction[] {
+            new Transaction("", "A", random.nextInt(100)),
+            new Transaction("A", "B", 1)}, chain.getHash(), 0L));
+      } else {
+        chain.append(new Block(i, new Transaction("", "U" + (i % 7),
+            random.nextInt(100)), chain.getHash(), 0L));
+      } // if/else
+    } // for
+
+    ArrayList<Transaction> expected = new ArrayList<Transaction>();
+    chain.iterator().forEachRemaining(expected::add);
+    assertEquals(expected, chain.stream().collect(Collectors.toList()),
+        "M: same transactions");
+    assertEquals(expected,
+        chain.parallelStream().collect(Collectors.toList()),
+        "M: same transactions, in order, in parallel");
+    assertEquals(chain.stream().mapToLong(Transaction::getAmount).sum(),
+        chain.parallelStream().mapToLong(Transaction::getAmount).sum(),
+        "M: same volume");
+    assertEquals(expected.stream().filter((t) -> t.getTarget().equals("A"))
+        .mapToInt(Transaction::getAmount).sum(),
+        chain.parallelStream().collect(Collectors.groupingByConcurrent(
+            Transaction::getTarget,
+            Collectors.summingInt(Transaction::getAmount))).get("A"),
+        "M: per-user sums");
+    assertEquals(chain.getSize(), chain.blockStream().parallel().count(),
+        "M: every block");
+
+    // Splits are even and exact.
+    Spliterator<Block> rest = new BlockSpliterator(chain, 0, 1000);
+    Spliterator<Block> first = rest.trySplit();
+    assertEquals(500, first.getExactSizeIfKnown(), "M: first half");
+    assertEquals(500, rest.getExactSizeIfKnown(), "M: second half");
+    assertTrue(rest.hasCharacteristics(Spliterator.SUBSIZED
+        | Spliterator.ORDERED), "M: characteristics");
+    assertFalse(rest.hasCharacteristics(Spliterator.IMMUTABLE),
+        "M: the chain can change");
+    assertEquals(null, new BlockSpliterator(chain, 3, 4).trySplit(),
+        "M: one block doesn't split");
+
+    // Streams cover the chain as it was when we made them.
+    Stream<Block> blocks = chain.blockStream();
+    chain.append(new Block(1000, new Transaction("", "A", 1), chain.getHash(),
+        0L));
+    assertEquals(1000, blocks.count(), "M: snapshot of the chain");
+
+    // Removing blocks while streaming fails fast.
+    Spliterator<Transaction> transactions = chain.stream().spliterator();
+    transactions.tryAdvance((t) -> { });
+    chain.removeLast();
+    assertThrows(ConcurrentModificationException.class,
+        () -> transactions.forEachRemaining((t) -> { }), "E: block removed");
+
+    // Streaming blocks doesn't cost us the index or the watermark.
+    chain.check();
+    chain.blockStream().forEach((blk) -> blk.nonce++);
+    assertFalse(chain.exposed, "M: blocks not handed out");
+    assertEquals(chain.getSize(), chain.getVerifiedSize(), "M: watermark");
+    assertTrue(chain.isCorrect(), "M: chain unchanged");
+  } // testStreams()
+
+  /**
+   * Make sure that two chains have the same users, in the same order,
+   * and the same balances.
+   */
+  static void assertIndexMatches(BlockChain expected, BlockChain chain) {
+    ArrayList<String> users = new ArrayList<String>();
+    for (Iterator<String> it = expected.users(); it.hasNext(); ) {
+      String user = it.next();
+      users.add(user);
+      assertEquals(expected.balance(user), chain.balance(user),
+          "M: balance of " + user);
+    } // for
+    ArrayList<String> others = new ArrayList<String>();
+    chain.users().forEachRemaining(others::add);
+    assertEquals(users, others, "M: same users");
+    assertEquals(expected.balance(""), chain.balance(""), "M: deposits");
+  } // assertIndexMatches(BlockChain, BlockChain)
+
+  /**
+   * Get the message from a failed check.
+   */
+  static String message(BlockChain chain) {
+    try {
+      chain.check();
+    } catch (Exception e) {
+      return e.getMessage();
+    } // try/catch
+    return null;
+  } // message(BlockChain)
+
 } // class TestBlockChain
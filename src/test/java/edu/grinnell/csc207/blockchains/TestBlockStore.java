@@ -0,0 +1,472 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that every kind of block store should pass, along with some
+ * tests of the default (object) store.
+ *
+ * @author Your Name Here
+ */
+public class TestBlockStore {
+  // +-----------+---------------------------------------------------
+  // | Utilities |
+  // +-----------+
+
+  /**
+   * Make a random transaction.
+   */
+  static Transaction transaction(Random random) {
+    String[] names = new String[] {"", "Ann", "Ben", "Cal", "Déb"};
+    return new Transaction(names[random.nextInt(names.length)],
+        names[1 + random.nextInt(names.length - 1)], random.nextInt(10));
+  } // transaction(Random)
+
+  /**
+   * Get all the strings from an iterator.
+   */
+  static ArrayList<String> strings(Iterator<?> it) {
+    ArrayList<String> result = new ArrayList<String>();
+    while (it.hasNext()) {
+      result.add(it.next().toString());
+    } // while
+    return result;
+  } // strings(Iterator<?>)
+
+  /**
+   * Make sure that a chain that keeps its blocks in a store behaves just
+   * like one that keeps them in an object store, as blocks come and go.
+   *
+   * @param store
+   *   An empty store.
+   *
+   * @return the chain that uses the store.
+   */
+  static BlockChain exercise(BlockStore store) throws Exception {
+    HashValidator v = (hash) -> (hash.get(0) & 0x3) == 0;
+    BlockChain expected = new BlockChain(v);
+    BlockChain chain = new BlockChain(v, Block::new, store);
+    Random random = new Random(207);
+    for (int round = 0; round < 200; round++) {
+      if ((random.nextInt(4) == 0) && (expected.getSize() > 1)) {
+        assertTrue(chain.removeLast(), "M: remove in round " + round);
+        expected.removeLast();
+      } else if (random.nextInt(5) == 0) {
+        Transaction[] batch = new Transaction[1 + random.nextInt(5)];
+        for (int i = 0; i < batch.length; i++) {
+          batch[i] = transaction(random);
+        } // for
+        Block blk = expected.mine(batch);
+        expected.append(blk);
+        chain.append(blk);
+      } else {
+        Block blk = expected.mine(transaction(random));
+        expected.append(blk);
+        chain.append(blk);
+      } // if/else
+      assertEquals(expected.getSize(), store.size(), "M: size");
+      assertEquals(expected.getHash(), chain.getHash(), "M: last hash");
+    } // for
+    assertEquals(strings(expected.blocks()), strings(chain.blocks()),
+        "M: same blocks");
+    assertEquals(strings(expected.iterator()), strings(chain.iterator()),
+        "M: same transactions");
+    assertEquals(strings(expected.users()), strings(chain.users()),
+        "M: same users");
+    for (String user : new String[] {"", "Ann", "Ben", "Cal", "Déb"}) {
+      assertEquals(expected.balance(user), chain.balance(user),
+          "M: balance of " + user);
+    } // for
+    assertEquals(expected.isCorrect(), chain.isCorrect(), "M: correctness");
+    for (int i = 0; i < store.size(); i++) {
+      assertEquals(store.get(i).getHash(), store.getHash(i), "M: hash " + i);
+      assertEquals(i, store.get(i).getNum(), "M: number " + i);
+    } // for
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> store.get(store.size()), "E: past the end");
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.append(new Block(chain.getSize() + 1,
+            new Transaction("", "A", 1), chain.getHash(), v)),
+        "E: wrong number");
+    return chain;
+  } // exercise(BlockStore)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * The object store.
+   */
+  @Test
+  public void objectTest() throws Exception {
+    ObjectBlockStore store = new ObjectBlockStore();
+    exercise(store);
+    assertTrue(store.sharesBlocks(), "M: object stores share blocks");
+    assertSame(store.get(1), store.get(1), "M: the same block");
+  } // objectTest()
+
+  /**
+   * The columnar store.
+   */
+  @Test
+  public void columnarTest() throws Exception {
+    ColumnarBlockStore store = new ColumnarBlockStore();
+    BlockChain chain = exercise(store);
+    assertFalse(store.sharesBlocks(), "M: columnar stores build blocks");
+
+    // Changing a built block doesn't change the store.
+    long nonce = store.get(0).getNonce();
+    chain.blocks().next().nonce = nonce + 1;
+    assertEquals(nonce, store.get(0).getNonce(), "M: views are copies");
+
+    Block other = new Block(store.size(), new Transaction("", "A", 1),
+        new Hash(new byte[32]), 0L);
+    assertThrows(IllegalArgumentException.class, () -> store.add(other),
+        "E: block does not follow");
+  } // columnarTest()
+
+  /**
+   * The off-heap store, with chunks small enough that records fill them
+   * quickly and batches need chunks of their own.
+   */
+  @Test
+  public void offHeapTest() throws Exception {
+    OffHeapBlockStore store = new OffHeapBlockStore(72);
+    exercise(store);
+    assertFalse(store.sharesBlocks(), "M: off-heap stores build blocks");
+    assertTrue(store.chunks.size() > 1, "M: many chunks");
+    assertTrue(store.chunks.get(0).isDirect(), "M: off the heap");
+
+    // Removing blocks lets us reuse their space.
+    int chunks = store.chunks.size();
+    Block last = store.get(store.size() - 1);
+    store.removeLast();
+    store.add(last);
+    assertEquals(chunks, store.chunks.size(), "M: space reused");
+    assertEquals(last.toString(), store.get(last.getNum()).toString(),
+        "M: same block");
+
+    assertThrows(IllegalArgumentException.class,
+        () -> new OffHeapBlockStore(8), "E: chunks too small");
+  } // offHeapTest()
+
+  /**
+   * The file store survives being closed and opened again.
+   */
+  @Test
+  public void fileTest(@TempDir Path dir) throws Exception {
+    Path log = dir.resolve("chain.log");
+    FileBlockStore store = new FileBlockStore(log);
+    BlockChain chain = exercise(store);
+    store.close();
+
+    try (FileBlockStore reopened = new FileBlockStore(log)) {
+      assertEquals(chain.getSize(), reopened.size(), "M: same size");
+      BlockChain again = new BlockChain((hash) -> (hash.get(0) & 0x3) == 0,
+          Block::new, reopened);
+      assertEquals(strings(chain.blocks()), strings(again.blocks()),
+          "M: same blocks");
+      assertEquals(chain.balance("Ann"), again.balance("Ann"),
+          "M: same balance");
+    } // try
+  } // fileTest(Path)
+
+  /**
+   * Opening a log drops a torn record at the end.
+   */
+  @Test
+  public void tornTest(@TempDir Path dir) throws Exception {
+    Path log = dir.resolve("chain.log");
+    long whole;
+    Block last;
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      BlockChain chain = new BlockChain((hash) -> true, Block::new, store);
+      for (int i = 0; i < 5; i++) {
+        chain.append(chain.mine(new Transaction("", "Ann", i)));
+      } // for
+      whole = Files.size(log);
+      last = chain.mine(new Transaction("Ann", "Ben", 3));
+      chain.append(last);
+    } // try
+
+    // Cut the last record short.
+    try (FileChannel channel = FileChannel.open(log,
+        StandardOpenOption.WRITE)) {
+      channel.truncate(Files.size(log) - 3);
+    } // try
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      assertEquals(6, store.size(), "M: torn record dropped");
+      assertEquals(whole, Files.size(log), "M: log cut");
+      store.add(last);
+      assertEquals(7, store.size(), "M: can append again");
+    } // try
+
+    // Scribble on the last record.
+    try (FileChannel channel = FileChannel.open(log,
+        StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {1, 2}), Files.size(log) - 2);
+    } // try
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      assertEquals(6, store.size(), "M: bad checksum dropped");
+      assertEquals(whole, Files.size(log), "M: log cut again");
+    } // try
+  } // tornTest(Path)
+
+  /**
+   * Opening a log refuses a damaged record before the last one, and
+   * leaves the records after it alone.
+   */
+  @Test
+  public void damagedTest(@TempDir Path dir) throws Exception {
+    Path log = dir.resolve("chain.log");
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      BlockChain chain = new BlockChain((hash) -> true, Block::new, store);
+      for (int i = 0; i < 5; i++) {
+        chain.append(chain.mine(new Transaction("", "Ann", i)));
+      } // for
+    } // try
+    byte[] bytes = Files.readAllBytes(log);
+
+    // Find the third record and change the last byte of its payload.
+    int at = 0;
+    for (int i = 0; i < 3; i++) {
+      at += FileBlockStore.HEADER + ByteBuffer.wrap(bytes).getInt(at);
+    } // for
+    at -= 1;
+    byte[] damaged = bytes.clone();
+    damaged[at] ^= 1;
+    Files.write(log, damaged);
+    assertThrows(IOException.class, () -> new FileBlockStore(log),
+        "E: damaged record in the middle");
+    assertEquals(bytes.length, Files.size(log), "M: log left alone");
+
+    // A damaged length that runs past the end of the log is not a torn
+    // record, since the header checksum covers the length.
+    damaged = bytes.clone();
+    at = FileBlockStore.HEADER + ByteBuffer.wrap(bytes).getInt(0);
+    ByteBuffer.wrap(damaged).putInt(at, bytes.length);
+    Files.write(log, damaged);
+    assertThrows(IOException.class, () -> new FileBlockStore(log),
+        "E: damaged length in the middle");
+    assertEquals(bytes.length, Files.size(log), "M: log left alone again");
+
+    // Once the damage is repaired, every block is still there.
+    Files.write(log, bytes);
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      assertEquals(6, store.size(), "M: later records survive");
+    } // try
+
+    // Zeros at the end (space the file system gave us before a crash)
+    // are cut, like any other torn record.
+    byte[] padded = Arrays.copyOf(bytes, bytes.length + 100);
+    Files.write(log, padded);
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      assertEquals(6, store.size(), "M: zeros dropped");
+      assertEquals(bytes.length, Files.size(log), "M: zeros cut");
+    } // try
+  } // damagedTest(Path)
+
+  /**
+   * A change whose sync fails is undone, in the store and in the chain.
+   */
+  @Test
+  public void syncFailureTest(@TempDir Path dir) throws Exception {
+    Path log = dir.resolve("chain.log");
+    boolean[] fail = new boolean[] {false};
+    try (FileBlockStore store = new FileBlockStore(log) {
+          @Override
+          void sync(long end) {
+            if (fail[0]) {
+              fail[0] = false;
+              throw new UncheckedIOException(new IOException("Disk full"));
+            } // if
+            super.sync(end);
+          } // sync(long)
+        }) {
+      BlockChain chain = new BlockChain((hash) -> true, Block::new, store);
+      chain.append(chain.mine(new Transaction("", "Ann", 10)));
+      Hash hash = chain.getHash();
+      assertEquals(1, chain.indexOf(hash), "M: indexed");
+      long length = Files.size(log);
+
+      fail[0] = true;
+      Block blk = chain.mine(new Transaction("Ann", "Ben", 3));
+      assertThrows(UncheckedIOException.class, () -> chain.append(blk),
+          "E: sync fails");
+      assertEquals(2, store.size(), "M: block left the store");
+      assertEquals(2, chain.getSize(), "M: block left the chain");
+      assertEquals(10, chain.balance("Ann"), "M: balance unchanged");
+      assertEquals(-1, chain.indexOf(blk.getHash()), "M: not in hash index");
+      assertEquals(length, Files.size(log), "M: record cut from the log");
+
+      fail[0] = true;
+      assertThrows(UncheckedIOException.class, () -> chain.removeLast(),
+          "E: sync fails");
+      assertEquals(2, chain.getSize(), "M: block still in the chain");
+      assertEquals(hash, store.getHash(1), "M: block still in the store");
+      assertEquals(1, chain.indexOf(hash), "M: still in hash index");
+      assertEquals(10, chain.balance("Ann"), "M: balance still there");
+
+      // Once the disk recovers, we carry on.
+      chain.append(blk);
+      assertEquals(7, chain.balance("Ann"), "M: appended after all");
+    } // try
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      assertEquals(3, store.size(), "M: the log agrees");
+    } // try
+  } // syncFailureTest(Path)
+
+  /**
+   * Appenders that run together share syncs.
+   */
+  @Test
+  public void groupCommitTest(@TempDir Path dir) throws Exception {
+    Path log = dir.resolve("chain.log");
+    int threads = 4;
+    int appends = 10;
+    try (FileBlockStore store = new FileBlockStore(log,
+        new ObjectBlockStore(), Duration.ofMillis(20))) {
+      store.add(new Block(0, new Transaction("", "", 0),
+          new Hash(new byte[] {}), 0L));
+      Thread[] appenders = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+        appenders[t] = new Thread(() -> {
+          for (int i = 0; i < appends; i++) {
+            long end;
+            synchronized (store) {
+              int num = store.size();
+              end = store.write(new Block(num,
+                  new Transaction("", "Ann", 1), store.getHash(num - 1), 0L));
+            } // synchronized
+            store.sync(end);
+          } // for
+        });
+        appenders[t].start();
+      } // for
+      for (Thread appender : appenders) {
+        appender.join();
+      } // for
+      assertTrue(store.syncs < threads * appends, "M: fewer syncs ("
+          + store.syncs + ") than appends");
+      assertEquals(store.written, store.durable, "M: all durable");
+    } // try
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      assertEquals(1 + threads * appends, store.size(), "M: all there");
+    } // try
+  } // groupCommitTest(Path)
+
+  /**
+   * The mapped store sees just what the file store wrote.
+   */
+  @Test
+  public void mappedTest(@TempDir Path dir) throws Exception {
+    Path log = dir.resolve("chain.log");
+    BlockChain chain;
+    try (FileBlockStore store = new FileBlockStore(log)) {
+      chain = exercise(store);
+    } // try
+
+    try (MappedBlockStore store = new MappedBlockStore(log)) {
+      assertEquals(chain.getSize(), store.size(), "M: same size");
+      BlockChain mapped = new BlockChain((hash) -> (hash.get(0) & 0x3) == 0,
+          Block::new, store);
+      assertEquals(strings(chain.blocks()), strings(mapped.blocks()),
+          "M: same blocks");
+      assertEquals(chain.getHash(), mapped.getHash(), "M: same last hash");
+      for (int i = 0; i < store.size(); i++) {
+        assertEquals(chain.blocks.getHash(i), store.getHash(i),
+            "M: hash " + i);
+      } // for
+      assertEquals(chain.isCorrect(), mapped.isCorrect(), "M: same check");
+      assertThrows(UnsupportedOperationException.class,
+          () -> store.add(chain.blocks.get(1)), "E: read-only");
+    } // try
+
+    // Change the nonce of a block in the middle.
+    int victim = chain.getSize() / 2;
+    int at;
+    int bytes;
+    try (MappedBlockStore store = new MappedBlockStore(log)) {
+      // Small logs fit in one region, which starts at the beginning.
+      assertEquals(1, store.regions.size(), "M: one region");
+      at = (int) store.locations[victim];
+      bytes = FileBlockStore.HEADER + store.payload(victim).limit();
+    } // try
+    byte[] contents = Files.readAllBytes(log);
+    contents[at + bytes - 1] ^= 1;
+    Files.write(log, contents);
+
+    // The file store refuses the damaged record; the mapped store finds
+    // it when we use the block, or when we ask it to verify.
+    assertThrows(IOException.class, () -> new FileBlockStore(log),
+        "E: file store sees the damage");
+    try (MappedBlockStore store = new MappedBlockStore(log)) {
+      assertEquals(chain.getSize(), store.size(), "M: opens anyway");
+      assertEquals(chain.blocks.get(0).toString(), store.get(0).toString(),
+          "M: other blocks are fine");
+      assertThrows(UncheckedIOException.class, () -> store.get(victim),
+          "E: mapped store sees the damage");
+      assertThrows(UncheckedIOException.class,
+          () -> store.getHash(victim - 1), "E: damaged hash source");
+      assertThrows(IOException.class, () -> store.verify(),
+          "E: verify sees the damage");
+    } // try
+
+    // A damaged length is caught when we open the log.
+    byte[] length = Files.readAllBytes(log);
+    ByteBuffer.wrap(length).putInt(at, length.length);
+    Files.write(log, length);
+    assertThrows(IOException.class, () -> new MappedBlockStore(log),
+        "E: damaged length");
+
+    // With a matching checksum, the change is only caught by checking.
+    ByteBuffer record = ByteBuffer.wrap(contents, at, bytes).slice();
+    record.putInt(Integer.BYTES, FileBlockStore.checksum(record));
+    record.putInt(FileBlockStore.HEADER_CHECKSUM,
+        FileBlockStore.headerChecksum(record));
+    Files.write(log, contents);
+    try (MappedBlockStore store = new MappedBlockStore(log)) {
+      BlockChain mapped = new BlockChain((hash) -> (hash.get(0) & 0x3) == 0,
+          Block::new, store);
+      assertFalse(mapped.isCorrect(), "M: tampering detected");
+    } // try
+  } // mappedTest(Path)
+
+  /**
+   * A chain can continue with a store that already holds blocks.
+   */
+  @Test
+  public void reopenTest() throws Exception {
+    ColumnarBlockStore store = new ColumnarBlockStore();
+    BlockChain chain = exercise(store);
+    BlockChain reopened = new BlockChain((hash) -> (hash.get(0) & 0x3) == 0,
+        Block::new, store);
+    assertEquals(chain.getSize(), reopened.getSize(), "M: same size");
+    assertEquals(strings(chain.users()), strings(reopened.users()),
+        "M: same users");
+    assertEquals(chain.balance("Ann"), reopened.balance("Ann"),
+        "M: same balance");
+    assertEquals(chain.isCorrect(), reopened.isCorrect(), "M: same check");
+  } // reopenTest()
+} // class TestBlockStore
@@ -0,0 +1,98 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our DifficultyValidator class.
+ *
+ * @author Your Name Here
+ */
+public class TestDifficultyValidator {
+  // +-----------+---------------------------------------------------
+  // | Utilities |
+  // +-----------+
+
+  /**
+   * Build a 32-byte hash that starts with the given bytes and is
+   * otherwise filled with a fixed byte.
+   */
+  static Hash hash(int fill, int... start) {
+    byte[] bytes = new byte[32];
+    java.util.Arrays.fill(bytes, (byte) fill);
+    for (int i = 0; i < start.length; i++) {
+      bytes[i] = (byte) start[i];
+    } // for
+    return new Hash(bytes);
+  } // hash(int, int...)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Check leading zero bits.
+   */
+  @Test
+  public void zeroBitsTest() {
+    DifficultyValidator v = new DifficultyValidator(12);
+    assertEquals(12, v.getZeroBits(), "M: zero bits");
+    assertTrue(v.isValid(hash(0xff, 0, 0x0f)), "M: exactly 12 zero bits");
+    assertTrue(v.isValid(hash(0, 0, 0)), "M: all zero bits");
+    assertFalse(v.isValid(hash(0, 0, 0x10)), "M: only 11 zero bits");
+    assertFalse(v.isValid(hash(0, 0, 0x80)), "M: only 8 zero bits");
+    assertFalse(v.isValid(new Hash(new byte[] {0, 0})), "M: short hash");
+
+    assertTrue(new DifficultyValidator(0).isValid(hash(0xff)), "M: 0 bits");
+    assertTrue(new DifficultyValidator(256).isValid(hash(0)), "M: 256 bits");
+    byte[] one = new byte[32];
+    one[31] = 1;
+    assertFalse(new DifficultyValidator(256).isValid(new Hash(one)),
+        "M: 255 bits");
+    assertThrows(IllegalArgumentException.class,
+        () -> new DifficultyValidator(257), "E: too many bits");
+  } // zeroBitsTest()
+
+  /**
+   * Check targets that aren't a number of zero bits.
+   */
+  @Test
+  public void targetTest() {
+    Hash target = hash(0, 0, 0x30, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x05);
+    DifficultyValidator v = new DifficultyValidator(target);
+    assertEquals(target, v.getTarget(), "M: target");
+    assertEquals(10, v.getZeroBits(), "M: zero bits of target");
+    assertTrue(v.isValid(target), "M: the target itself");
+    assertTrue(v.isValid(hash(0xff, 0, 0x2f)), "M: below in the first word");
+    assertTrue(v.isValid(hash(0xff, 0, 0x30, 0, 0, 0, 0, 0, 0, 0x04)),
+        "M: below in the second word");
+    assertFalse(v.isValid(hash(0, 0, 0x30, 0, 0, 0, 0, 0, 0, 0x05, 1)),
+        "M: above in the second word");
+    assertFalse(v.isValid(hash(0, 0, 0x31)), "M: above in the first word");
+  } // targetTest()
+
+  /**
+   * Make sure that mining with the fast path gives the same blocks as
+   * mining with the validator hidden behind a lambda.
+   */
+  @Test
+  public void sameBlocksTest() {
+    DifficultyValidator v = new DifficultyValidator(11);
+    HashValidator slow = (h) -> v.isValid(h);
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    for (int i = 0; i < 5; i++) {
+      Transaction t = new Transaction("A", "B", i);
+      Block fast = new Block(i, t, ph, v);
+      assertEquals(new Block(i, t, ph, slow).getNonce(), fast.getNonce(),
+          "M: same nonce for block " + i);
+      assertEquals(new ParallelMiner().mine(i, t, ph, v).getNonce(),
+          fast.getNonce(), "M: same parallel nonce for block " + i);
+      assertTrue(v.isValid(fast.getHash()), "M: valid hash for block " + i);
+    } // for
+  } // sameBlocksTest()
+} // class TestDifficultyValidator
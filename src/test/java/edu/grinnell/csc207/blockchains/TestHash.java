@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.junit.jupiter.api.Test;
 
@@ -106,5 +107,102 @@ public class TestHash {
     assertFalse(h.equals(new Hash(bytes)), 
        "M: a hash does not equal a hash made from its modified bytes");
   } // testReturnBytes
+
+  /**
+   * Compare hashes as unsigned numbers.
+   */
+  @Test
+  public void testCompare() {
+    Hash small = new Hash(new byte[] {0, 127, 5});
+    Hash big = new Hash(new byte[] {0, (byte) 128, 0});
+    assertTrue(small.compareTo(big) < 0, "M: bytes are unsigned");
+    assertTrue(big.compareTo(small) > 0, "M: and the other way");
+    assertEquals(0, small.compareTo(new Hash(small.getBytes())),
+        "M: equal hashes");
+    assertTrue(new Hash(new byte[] {}).compareTo(small) < 0,
+        "E: the empty hash comes first");
+  } // testCompare
+
+  /**
+   * Hex strings and hash codes.
+   */
+  @Test
+  public void testHexAndCodes() {
+    Hash h = new Hash(new byte[] {0, 10, (byte) 255, (byte) 0xA5});
+    assertEquals("000AFFA5", h.toString(), "M: hex");
+    assertEquals("", new Hash(new byte[] {}).toString(), "E: empty hex");
+    assertEquals(h.hashCode(), new Hash(h.getBytes()).hashCode(),
+        "M: equal hashes have equal codes");
+    assertEquals(h.hashCode(), h.hashCode(), "M: cached code");
+
+    byte[] bytes = new byte[] {1, 2, 3};
+    Hash view = Hash.view(bytes);
+    int before = view.hashCode();
+    bytes[0] = 9;
+    assertEquals(new Hash(bytes).hashCode(), view.hashCode(),
+        "E: views follow their bytes");
+    assertNotEquals(before, view.hashCode(), "E: view code changed");
+    assertTrue(view.equals(new Hash(bytes)), "E: view equality");
+  } // testHexAndCodes
+
+  /**
+   * Read-only buffers share the bytes without letting clients change them.
+   */
+  @Test
+  public void testByteBuffer() {
+    Hash h = new Hash(new byte[] {3, 1, 4, 1});
+    java.nio.ByteBuffer buffer = h.asByteBuffer();
+    assertTrue(buffer.isReadOnly(), "M: read-only");
+    assertEquals(4, buffer.remaining(), "M: length");
+    assertEquals(0x03010401, buffer.getInt(), "M: contents");
+    assertThrows(java.nio.ReadOnlyBufferException.class,
+        () -> h.asByteBuffer().put((byte) 0), "E: cannot write");
+  } // testByteBuffer
+
+  /**
+   * Convert to and from hex.
+   */
+  @Test
+  public void testHex() {
+    Hash h = Hash.fromHex("00aBff7E");
+    assertArrayEquals(new byte[] {0, (byte) 0xAB, (byte) 0xFF, 0x7E},
+        h.getBytes(), "M: parse mixed case");
+    assertEquals("00ABFF7E", h.toString(), "M: round trip");
+    assertEquals(0, Hash.fromHex("").length(), "E: empty hex");
+    assertThrows(IllegalArgumentException.class, () -> Hash.fromHex("ABC"),
+        "E: odd length");
+    assertThrows(IllegalArgumentException.class, () -> Hash.fromHex("0G"),
+        "E: not a digit");
+    assertThrows(IllegalArgumentException.class,
+        () -> Hash.fromHex("0\u0660"), "E: not an ASCII digit");
+
+    StringBuilder builder = new StringBuilder("hash: ");
+    assertEquals("hash: 00ABFF7E", h.appendHex(builder).toString(),
+        "M: append to a builder");
+    java.nio.CharBuffer chars = java.nio.CharBuffer.allocate(10);
+    chars.put('[');
+    h.putHex(chars).put(']').flip();
+    assertEquals("[00ABFF7E]", chars.toString(), "M: put into a buffer");
+    assertThrows(java.nio.BufferOverflowException.class,
+        () -> h.putHex(java.nio.CharBuffer.allocate(7)), "E: no room");
+  } // testHex
+
+  /**
+   * Read hashes from byte buffers.
+   */
+  @Test
+  public void testRead() {
+    java.nio.ByteBuffer buffer =
+        java.nio.ByteBuffer.wrap(new byte[] {9, 1, 2, 3, 4, 5, 6});
+    assertEquals("0203", Hash.read(buffer, 2, 2).toString(), "M: absolute");
+    assertEquals(0, buffer.position(), "M: absolute leaves position");
+    buffer.get();
+    assertEquals("010203", Hash.read(buffer, 3).toString(), "M: relative");
+    assertEquals(4, buffer.position(), "M: relative advances position");
+    assertThrows(java.nio.BufferUnderflowException.class,
+        () -> Hash.read(buffer, 4), "E: not enough bytes");
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> Hash.read(buffer, 5, 4), "E: past the end");
+  } // testRead
   
 } // class TestHash
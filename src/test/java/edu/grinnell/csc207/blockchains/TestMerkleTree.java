@@ -0,0 +1,85 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our Merkle roots.
+ *
+ * @author Your Name Here
+ */
+public class TestMerkleTree {
+  // +-----------+---------------------------------------------------
+  // | Utilities |
+  // +-----------+
+
+  /**
+   * Make a batch of distinct transactions.
+   */
+  static Transaction[] batch(int size) {
+    Transaction[] batch = new Transaction[size];
+    for (int i = 0; i < size; i++) {
+      batch[i] = new Transaction("U" + i, "V" + i, i);
+    } // for
+    return batch;
+  } // batch(int)
+
+  /**
+   * Hash two child hashes into their parent.
+   */
+  static byte[] node(byte[] left, byte[] right) {
+    byte[] pair = new byte[1 + left.length + right.length];
+    pair[0] = MerkleTree.NODE;
+    System.arraycopy(left, 0, pair, 1, left.length);
+    System.arraycopy(right, 0, pair, 1 + left.length, right.length);
+    return Sha256.hash(pair);
+  } // node(byte[], byte[])
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Small trees, built by hand.
+   */
+  @Test
+  public void smallTest() {
+    Transaction[] ts = batch(3);
+    byte[] a = MerkleTree.leaf(ts[0]);
+    byte[] b = MerkleTree.leaf(ts[1]);
+    byte[] c = MerkleTree.leaf(ts[2]);
+    assertArrayEquals(a, MerkleTree.root(batch(1)).getBytes(), "M: one");
+    assertArrayEquals(node(a, b), MerkleTree.root(batch(2)).getBytes(),
+        "M: two");
+    assertArrayEquals(node(node(a, b), c),
+        MerkleTree.root(ts).getBytes(), "M: three (odd one moves up)");
+  } // smallTest()
+
+  /**
+   * Different batches get different roots, even when one batch
+   * repeats the last transaction of the other.
+   */
+  @Test
+  public void distinctTest() {
+    HashSet<Hash> roots = new HashSet<Hash>();
+    for (int size = 1; size <= 20; size++) {
+      roots.add(MerkleTree.root(batch(size)));
+    } // for
+    assertEquals(20, roots.size(), "M: distinct roots");
+
+    Transaction[] three = batch(3);
+    Transaction[] four = new Transaction[] {three[0], three[1], three[2],
+        three[2]};
+    assertNotEquals(MerkleTree.root(three), MerkleTree.root(four),
+        "E: repeating the last transaction changes the root");
+    assertNotEquals(MerkleTree.root(new Transaction[] {
+        new Transaction("ab", "c", 1)}),
+        MerkleTree.root(new Transaction[] {new Transaction("a", "bc", 1)}),
+        "E: names are not run together");
+  } // distinctTest()
+} // class TestMerkleTree
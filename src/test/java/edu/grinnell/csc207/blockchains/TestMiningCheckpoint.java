@@ -0,0 +1,85 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our MiningCheckpoint class.
+ *
+ * @author Your Name Here
+ */
+public class TestMiningCheckpoint {
+  /**
+   * Make sure that mining in small steps finds the same block as
+   * mining all at once.
+   */
+  @Test
+  public void resumeTest() {
+    HashValidator v = new DifficultyValidator(12);
+    Transaction t = new Transaction("A", "B", 5);
+    Hash ph = new Hash(new byte[] {4, 5, 6});
+    long expected = new Block(7, t, ph, v).getNonce();
+
+    MiningCheckpoint cp = new MiningCheckpoint(7, t, ph);
+    int steps = 0;
+    while (!cp.isDone()) {
+      long before = cp.getSearched();
+      cp = cp.resume(v, 1000);
+      if (!cp.isDone()) {
+        assertEquals(before + 1000, cp.getSearched(), "M: searched 1000 more");
+        assertNull(cp.getBlock(), "M: no block yet");
+      } // if
+      ++steps;
+    } // while
+    assertEquals(expected / 1000 + 1, steps, "M: number of steps");
+    assertEquals(expected, cp.getBlock().getNonce(), "M: same nonce");
+    assertEquals(expected + 1, cp.getSearched(), "M: searched through nonce");
+    assertSame(cp, cp.resume(v, 1000), "M: done checkpoints stay done");
+  } // resumeTest()
+
+  /**
+   * Make sure that time budgets stop the search.
+   */
+  @Test
+  public void budgetTest() {
+    HashValidator never = (h) -> h.get(0) > 127;
+    MiningCheckpoint cp = new MiningCheckpoint(1, new Transaction("", "A", 1),
+        new Hash(new byte[] {}));
+    cp = cp.resume(never, Duration.ofMillis(20));
+    assertFalse(cp.isDone(), "M: impossible block not found");
+    assertTrue(cp.getSearched() > 0, "M: some nonces searched");
+    long searched = cp.getSearched();
+    cp = cp.resume(never, Duration.ofMillis(20));
+    assertTrue(cp.getSearched() > searched, "M: resume searches further");
+  } // budgetTest()
+
+  /**
+   * Make sure that chains only resume checkpoints for their next block.
+   */
+  @Test
+  public void chainTest() {
+    BlockChain chain = new BlockChain(new DifficultyValidator(8));
+    MiningCheckpoint cp =
+        chain.mine(new Transaction("", "A", 10), Duration.ofMillis(0));
+    assertFalse(cp.isDone(), "M: no time to mine");
+    cp = chain.resume(cp, Duration.ofSeconds(60));
+    assertTrue(cp.isDone(), "M: enough time to mine");
+    chain.append(cp.getBlock());
+    assertEquals(10, chain.balance("A"), "M: block appended");
+
+    MiningCheckpoint stale = new MiningCheckpoint(1,
+        new Transaction("", "B", 10), cp.getBlock().getPrevHash());
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.resume(stale, Duration.ofSeconds(1)),
+        "E: checkpoint for a block already in the chain");
+  } // chainTest()
+} // class TestMiningCheckpoint
@@ -0,0 +1,196 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our MiningCoordinator class.
+ *
+ * @author Your Name Here
+ */
+public class TestMiningCoordinator {
+  /**
+   * Make sure that loopback workers find the same blocks as the
+   * sequential search, and that those blocks can be appended.
+   */
+  @Test
+  public void loopbackTest() throws Exception {
+    DifficultyValidator v = new DifficultyValidator(14);
+    try (MiningCoordinator coordinator = new MiningCoordinator()) {
+      for (int i = 0; i < 3; i++) {
+        coordinator.addLoopbackWorker();
+      } // for
+      assertEquals(3, coordinator.getWorkerCount(), "M: three workers");
+      BlockChain chain = new BlockChain(v, coordinator);
+      for (int i = 1; i <= 3; i++) {
+        Transaction t = new Transaction("", "Person " + i, 10 * i);
+        Block block = chain.mine(t);
+        assertEquals(new Block(i, t, chain.getHash(), v).getNonce(),
+            block.getNonce(), "M: nonce for block " + i);
+        chain.append(block);
+      } // for
+      chain.check();
+    } // try
+  } // loopbackTest()
+
+  /**
+   * Make sure that workers in separate threads can mine over localhost
+   * TCP.
+   */
+  @Test
+  public void socketTest() throws Exception {
+    DifficultyValidator v = new DifficultyValidator(12);
+    Transaction t = new Transaction("Sam", "Rebelsky", 207);
+    Hash ph = new Hash(new byte[] {2, 0, 7});
+    try (MiningCoordinator coordinator = new MiningCoordinator()) {
+      int port = coordinator.listen(0);
+      for (int i = 0; i < 2; i++) {
+        Thread worker = new Thread(MiningWorker.connect(port));
+        worker.setDaemon(true);
+        worker.start();
+      } // for
+      Block block = coordinator.mine(4, t, ph, v);
+      assertEquals(new Block(4, t, ph, v).getNonce(), block.getNonce(),
+          "M: nonce over sockets");
+      assertTrue(v.isValid(block.getHash()), "M: valid hash");
+    } // try
+  } // socketTest()
+
+  /**
+   * Make sure that a range held by a worker that goes away is given
+   * to another worker.
+   */
+  @Test
+  public void lostWorkerTest() throws Exception {
+    DifficultyValidator v = new DifficultyValidator(18);
+    Transaction t = new Transaction("A", "B", 1);
+    Hash ph = new Hash(new byte[] {1});
+    try (MiningCoordinator coordinator = new MiningCoordinator()) {
+      // A worker that takes a range and then disconnects.
+      MiningLink[] ends = MiningLink.pair();
+      coordinator.connect(ends[0]);
+      Thread flaky = new Thread(() -> {
+        try {
+          while (!ends[1].receive().startsWith("RANGE")) {
+            // Skip the job.
+          } // while
+        } catch (java.io.IOException e) {
+          // Ignore.
+        } // try/catch
+        ends[1].close();
+      });
+      flaky.start();
+      coordinator.addLoopbackWorker();
+      assertEquals(new Block(9, t, ph, v).getNonce(),
+          coordinator.mine(9, t, ph, v).getNonce(), "M: nonce with lost worker");
+    } // try
+  } // lostWorkerTest()
+
+  /**
+   * Make sure that we check the nonces that workers report, and drop a
+   * worker that reports one that isn't valid.
+   */
+  @Test
+  public void badNonceTest() throws Exception {
+    DifficultyValidator v = new DifficultyValidator(16);
+    Transaction t = new Transaction("C", "D", 2);
+    Hash ph = new Hash(new byte[] {3});
+    try (MiningCoordinator coordinator = new MiningCoordinator()) {
+      // A worker that claims its range starts with a valid nonce.
+      MiningLink[] ends = MiningLink.pair();
+      coordinator.connect(ends[0]);
+      CompletableFuture<String> after = CompletableFuture.supplyAsync(() -> {
+        try {
+          String line;
+          while (!(line = ends[1].receive()).startsWith("RANGE")) {
+            // Skip the job.
+          } // while
+          String[] fields = line.split(" ");
+          long start = Long.parseLong(fields[2]);
+          while (v.isValid(new Block(5, t, ph, start).getHash())) {
+            start++;
+          } // while
+          ends[1].send(String.format("DONE %s %s %s %d", fields[1],
+              fields[2], fields[3], start));
+          return ends[1].receive();
+        } catch (java.io.IOException e) {
+          return "failed";
+        } // try/catch
+      });
+      coordinator.addLoopbackWorker();
+      Block block = coordinator.mine(5, t, ph, v);
+      assertEquals(new Block(5, t, ph, v).getNonce(), block.getNonce(),
+          "M: nonce with a lying worker");
+      assertTrue(v.isValid(block.getHash()), "M: valid hash");
+      assertNull(after.get(), "M: lying worker dropped");
+    } // try
+  } // badNonceTest()
+
+  /**
+   * Make sure that a worker that is slow to take our messages does not
+   * hold up other callers.
+   */
+  @Test
+  public void slowWorkerTest() throws Exception {
+    DifficultyValidator v = new DifficultyValidator(10);
+    Transaction t = new Transaction("E", "F", 3);
+    Hash ph = new Hash(new byte[] {4});
+    CountDownLatch stuck = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BlockingQueue<String> there = new LinkedBlockingQueue<String>();
+    BlockingQueue<String> back = new LinkedBlockingQueue<String>();
+    MiningLink slow = new MiningLink.QueueLink(back, there) {
+      @Override
+      void send(String line) {
+        stuck.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } // try/catch
+        super.send(line);
+      } // send(String)
+    };
+    Thread worker =
+        new Thread(new MiningWorker(new MiningLink.QueueLink(there, back)));
+    worker.setDaemon(true);
+    worker.start();
+    try (MiningCoordinator coordinator = new MiningCoordinator()) {
+      coordinator.connect(slow);
+      CompletableFuture<Block> mined =
+          CompletableFuture.supplyAsync(() -> coordinator.mine(3, t, ph, v));
+      stuck.await();
+      assertTimeoutPreemptively(Duration.ofSeconds(5),
+          () -> assertEquals(1, coordinator.getWorkerCount(),
+              "M: not blocked by a slow worker"));
+      release.countDown();
+      assertEquals(new Block(3, t, ph, v).getNonce(), mined.get().getNonce(),
+          "M: nonce from a slow worker");
+    } // try
+  } // slowWorkerTest()
+
+  /**
+   * Make sure that we only accept validators that workers can use.
+   */
+  @Test
+  public void lambdaTest() {
+    try (MiningCoordinator coordinator = new MiningCoordinator()) {
+      assertThrows(IllegalArgumentException.class,
+          () -> coordinator.mine(1, new Transaction("", "A", 1),
+              new Hash(new byte[] {}), (h) -> true),
+          "E: lambda validator");
+    } // try
+  } // lambdaTest()
+} // class TestMiningCoordinator
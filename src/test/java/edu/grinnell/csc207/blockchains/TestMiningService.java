@@ -0,0 +1,96 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our MiningService class.
+ *
+ * @author Your Name Here
+ */
+public class TestMiningService {
+  /**
+   * A validator that never accepts anything.
+   */
+  static final HashValidator NEVER = (h) -> h.get(0) > 127;
+
+  /**
+   * Make sure that many jobs at once get the same nonces as the
+   * sequential search.
+   */
+  @Test
+  public void manyJobsTest() throws Exception {
+    HashValidator v = (h) -> (h.get(0) == 5) && (h.get(1) < 64);
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    try (MiningService service = new MiningService(2)) {
+      List<CompletableFuture<Block>> futures =
+          new ArrayList<CompletableFuture<Block>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(service.mineAsync(i, new Transaction("", "A", i), ph, v));
+      } // for
+      for (int i = 0; i < 8; i++) {
+        assertEquals(new Block(i, new Transaction("", "A", i), ph, v).getNonce(),
+            futures.get(i).get().getNonce(), "M: nonce for job " + i);
+      } // for
+    } // try
+  } // manyJobsTest()
+
+  /**
+   * Make sure that cancelled and timed-out jobs stop and don't keep
+   * other jobs from finishing.
+   */
+  @Test
+  public void cancelTest() throws Exception {
+    Hash ph = new Hash(new byte[] {});
+    try (MiningService service = new MiningService(1)) {
+      CompletableFuture<Block> forever =
+          service.mineAsync(1, new Transaction("", "A", 1), ph, NEVER);
+      CompletableFuture<Block> timed = service.mineAsync(1,
+          new Transaction("", "B", 1), ph, NEVER, Duration.ofMillis(50));
+      CompletableFuture<Block> easy =
+          service.mineAsync(1, new Transaction("", "C", 1), ph, (h) -> true);
+      assertEquals(0, easy.get().getNonce(), "M: easy job finishes");
+
+      ExecutionException e = assertThrows(ExecutionException.class,
+          () -> timed.get(), "M: timed out");
+      assertTrue(e.getCause() instanceof TimeoutException, "M: timeout");
+
+      forever.cancel(true);
+      assertThrows(CancellationException.class, () -> forever.join(),
+          "M: cancelled");
+
+      // The workers for the stopped jobs give up the thread.
+      assertEquals(0, service.mine(2, new Transaction("", "D", 1), ph,
+          (h) -> true).getNonce(), "M: later job finishes");
+    } // try
+  } // cancelTest()
+
+  /**
+   * Make sure that failures in the validator get reported.
+   */
+  @Test
+  public void failingValidatorTest() {
+    HashValidator v = (h) -> {
+      throw new ArithmeticException("Oops");
+    };
+    try (MiningService service = new MiningService(2)) {
+      ExecutionException e = assertThrows(ExecutionException.class,
+          () -> service.mineAsync(1, new Transaction("", "A", 1),
+              new Hash(new byte[] {}), v).get(),
+          "E: validator failure");
+      assertTrue(e.getCause() instanceof ArithmeticException, "E: cause");
+    } // try
+  } // failingValidatorTest()
+} // class TestMiningService
@@ -0,0 +1,66 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our NonceHasher class.
+ *
+ * @author Your Name Here
+ */
+public class TestNonceHasher {
+  /**
+   * Make sure that the hasher computes the same hashes as the block,
+   * for prefixes of many lengths.
+   */
+  @Test
+  public void sameHashTest() {
+    Hash ph = new Hash(new byte[] {10, 20, 30, 40, 50});
+    for (int len = 0; len < 150; len += 7) {
+      Transaction t = new Transaction("Sam", "S".repeat(len), 50);
+      NonceHasher hasher = new NonceHasher(5, t, ph);
+      for (long nonce : new long[] {0, 1, 2, 100, -1, Long.MAX_VALUE}) {
+        assertArrayEquals(new Block(5, t, ph, nonce).getHash().getBytes(),
+            hasher.hash(nonce), "M: hash for nonce " + nonce);
+      } // for
+    } // for
+  } // sameHashTest()
+
+  /**
+   * Make sure that searching for a nonce allocates nothing per attempt.
+   */
+  @Test
+  public void noAllocationTest() {
+    java.lang.management.ThreadMXBean bean =
+        ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean,
+        "Need allocation counts");
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    NonceHasher hasher = new NonceHasher(3,
+        new Transaction("Source", "Target", 100), new Hash(new byte[32]));
+    HashValidator never = (h) -> h.get(0) > 127;
+    AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+    // Warm up, so that the loop is compiled.
+    hasher.search(0, 200_000, never, best);
+
+    long id = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(id);
+    assertEquals(-1, hasher.search(0, 100_000, never, best), "no valid nonce");
+    long after = threads.getThreadAllocatedBytes(id);
+    // Allow a little for the measurement itself.
+    assertTrue(after - before < 1024,
+        "M: allocated " + (after - before) + " bytes for 100000 attempts");
+  } // noAllocationTest()
+} // class TestNonceHasher
@@ -0,0 +1,70 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our ParallelMiner class.
+ *
+ * @author Your Name Here
+ */
+public class TestParallelMiner {
+  /**
+   * Make sure that the parallel miner picks the same nonce as the
+   * sequential search.
+   */
+  @Test
+  public void sameNonceTest() {
+    HashValidator v = (h) -> (h.get(0) == 3) && (h.get(1) == 4);
+    Transaction t = new Transaction("Here", "There", 12);
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    Block expected = new Block(3, t, ph, v);
+    Block actual = new ParallelMiner().mine(3, t, ph, v);
+    assertEquals(expected.getNonce(), actual.getNonce(), "M: same nonce");
+    assertEquals(expected.getHash(), actual.getHash(), "M: same hash");
+    assertTrue(v.isValid(actual.getHash()), "M: valid hash");
+  } // sameNonceTest()
+
+  /**
+   * Make sure that we get the same nonce no matter how many workers
+   * we use.
+   */
+  @Test
+  public void manyWorkersTest() {
+    HashValidator v = (h) -> (h.get(0) == 0) && (h.get(1) < 16);
+    Transaction t = new Transaction("", "Deposited", 888);
+    Hash ph = new Hash(new byte[] {8, 8, 8});
+    long expected = new Block(8, t, ph, v).getNonce();
+    ExecutorService pool = Executors.newFixedThreadPool(3);
+    try {
+      for (int workers = 1; workers <= 7; workers++) {
+        assertEquals(expected,
+            new ParallelMiner(pool, workers).mine(8, t, ph, v).getNonce(),
+            "M: nonce with " + workers + " workers");
+      } // for
+    } finally {
+      pool.shutdown();
+    } // try/finally
+  } // manyWorkersTest()
+
+  /**
+   * Make sure that failures in the validator get reported.
+   */
+  @Test
+  public void failingValidatorTest() {
+    HashValidator v = (h) -> {
+      throw new ArithmeticException("Oops");
+    };
+    assertThrows(IllegalStateException.class,
+        () -> new ParallelMiner().mine(1, new Transaction("", "A", 1),
+            new Hash(new byte[] {}), v),
+        "E: validator failure");
+  } // failingValidatorTest()
+} // class TestParallelMiner
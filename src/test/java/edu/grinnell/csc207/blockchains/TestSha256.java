@@ -0,0 +1,51 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our Sha256 class.
+ *
+ * @author Your Name Here
+ */
+public class TestSha256 {
+  /**
+   * Make sure that we get the same hashes as the standard digest for
+   * messages of many different lengths (in particular, around the
+   * block boundaries).
+   */
+  @Test
+  public void sameAsDigestTest() {
+    MessageDigest md = Block.newDigest();
+    Random random = new Random(207);
+    for (int length = 0; length < 300; length++) {
+      byte[] message = new byte[length];
+      random.nextBytes(message);
+      assertArrayEquals(md.digest(message), Sha256.hash(message),
+          "M: hash of message of length " + length);
+    } // for
+  } // sameAsDigestTest()
+
+  /**
+   * Make sure that the specialized block hash matches the digest, for
+   * blocks of many lengths.
+   */
+  @Test
+  public void sameBlockHashTest() {
+    MessageDigest md = Block.newDigest();
+    Hash ph = new Hash(new byte[] {10, 20, 30, 40, 50});
+    for (int len = 0; len < 200; len++) {
+      Transaction t = new Transaction("", "T".repeat(len), len);
+      for (long nonce : new long[] {0, 17, -1, Long.MIN_VALUE}) {
+        assertArrayEquals(Block.computeHash(md, len, t, ph, nonce),
+            Block.computeHash(len, t, ph, nonce),
+            "M: hash of block with target of length " + len);
+      } // for
+    } // for
+  } // sameBlockHashTest()
+} // class TestSha256
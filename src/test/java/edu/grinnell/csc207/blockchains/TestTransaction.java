@@ -1,6 +1,10 @@
 package edu.grinnell.csc207.blockchains;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
 
 import org.junit.jupiter.api.Test;
 
@@ -38,4 +42,36 @@ public class TestTransaction {
         trans.toString(),
         "M: String representation of deposit");
   } // depositTest()
+
+  /**
+   * Test the canonical encoding.
+   */
+  @Test
+  public void encodingTest() {
+    Transaction trans = new Transaction("Al", "B\u00e9", 258);
+    assertEquals(17, trans.encodedLength(), "M: encoded length");
+    ByteBuffer buffer = ByteBuffer.allocate(20);
+    buffer.put((byte) 99);
+    trans.encode(buffer);
+    assertArrayEquals(new byte[] {99, 0, 0, 0, 2, 'A', 'l', 0, 0, 0, 3, 'B',
+        (byte) 0xC3, (byte) 0xA9, 0, 0, 1, 2, 0, 0}, buffer.array(),
+        "M: encoded bytes");
+    buffer.flip().get();
+    assertEquals(trans, Transaction.decode(buffer), "M: decode");
+    assertEquals(18, buffer.position(), "M: decode advances");
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(17);
+    trans.encode(direct).flip();
+    assertEquals(trans, Transaction.decode(direct), "M: decode direct");
+
+    assertThrows(IllegalArgumentException.class,
+        () -> Transaction.decode(ByteBuffer.wrap(new byte[] {0, 0, 0, 9, 1})),
+        "E: string longer than buffer");
+    assertThrows(IllegalArgumentException.class,
+        () -> Transaction.decode(ByteBuffer.wrap(new byte[] {0, 0, 0, 0,
+            0, 0, 0, 0, 1})),
+        "E: truncated amount");
+    assertEquals(new Transaction("a", "b", 1).hashCode(),
+        new Transaction("a", "b", 1).hashCode(), "M: equal hash codes");
+  } // encodingTest()
 } // class TestTransaction
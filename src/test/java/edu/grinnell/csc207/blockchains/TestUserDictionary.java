@@ -0,0 +1,86 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our UserDictionary class.
+ *
+ * @author Your Name Here
+ */
+public class TestUserDictionary {
+  /**
+   * Names get dense ids, and the empty name is reserved.
+   */
+  @Test
+  public void basicTest() {
+    UserDictionary dict = new UserDictionary();
+    assertEquals(UserDictionary.DEPOSIT, dict.find(""), "M: deposits");
+    assertEquals(-1, dict.find("Alice"), "M: not yet added");
+    assertEquals(1, dict.id("Alice"), "M: first id");
+    assertEquals(2, dict.id("Bob"), "M: second id");
+    assertEquals(1, dict.id(new String("Alice")), "M: same name, same id");
+    assertEquals(3, dict.size(), "M: size");
+    for (int i = 0; i < 100; i++) {
+      assertEquals(3 + i, dict.id("U" + i), "M: many names");
+    } // for
+    assertEquals("Bob", dict.name(2), "M: name");
+    assertEquals("U99", dict.name(102), "M: name after growing");
+    assertThrows(IndexOutOfBoundsException.class, () -> dict.name(103),
+        "E: no such id");
+  } // basicTest()
+
+  /**
+   * Transactions share names through the dictionary.
+   */
+  @Test
+  public void transactionTest() {
+    Transaction a = new Transaction("", new String("Carol"), 5);
+    Transaction b = new Transaction(new String("Carol"), "Dave", 5);
+    assertTrue(a.isDeposit(), "M: deposit");
+    assertEquals(a.getTargetId(), b.getSourceId(), "M: same id");
+    assertSame(a.getTarget(), b.getSource(), "M: one copy of the name");
+  } // transactionTest()
+
+  /**
+   * Many threads adding the same names agree on their ids.
+   */
+  @Test
+  public void concurrentTest() throws Exception {
+    UserDictionary dict = new UserDictionary();
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+      for (int t = 0; t < 4; t++) {
+        results.add(pool.submit(() -> {
+          int[] ids = new int[1000];
+          for (int i = 0; i < ids.length; i++) {
+            ids[i] = dict.id("N" + i);
+          } // for
+          return ids;
+        }));
+      } // for
+      int[] first = results.get(0).get();
+      for (Future<int[]> result : results) {
+        int[] ids = result.get();
+        for (int i = 0; i < ids.length; i++) {
+          assertEquals(first[i], ids[i], "M: same id in every thread");
+          assertEquals("N" + i, dict.name(ids[i]), "M: right name");
+        } // for
+      } // for
+      assertEquals(1001, dict.size(), "M: no duplicates");
+    } finally {
+      pool.shutdown();
+    } // try/finally
+  } // concurrentTest()
+} // class TestUserDictionary
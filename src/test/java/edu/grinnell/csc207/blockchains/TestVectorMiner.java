@@ -0,0 +1,62 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our VectorMiner class.
+ *
+ * @author Your Name Here
+ */
+public class TestVectorMiner {
+  /**
+   * Make sure that every lane computes the same hash as the standard
+   * digest, for prefixes of many lengths.
+   */
+  @Test
+  public void sameAsDigestTest() {
+    assumeTrue(VectorMiner.isAvailable(), "Vector API not enabled");
+    MessageDigest md = Block.newDigest();
+    Hash ph = new Hash(new byte[] {10, 20, 30, 40, 50});
+    int[] state = new int[8];
+    byte[] actual = new byte[32];
+    for (int len = 0; len < 150; len += 3) {
+      Transaction t = new Transaction("Sam", "S".repeat(len), 50);
+      Sha256Lanes lanes = new Sha256Lanes(new NonceHasher(5, t, ph));
+      for (long first : new long[] {0, 255, 1L << 40, -16}) {
+        lanes.compute(first);
+        for (int lane = 0; lane < lanes.lanes; lane++) {
+          lanes.laneState(lane, state);
+          Sha256.write(state, actual);
+          assertArrayEquals(Block.computeHash(md, 5, t, ph, first + lane),
+              actual, "M: hash for length " + len + ", nonce " + (first + lane));
+        } // for
+      } // for
+    } // for
+  } // sameAsDigestTest()
+
+  /**
+   * Make sure that we find the same nonces as the sequential search,
+   * whether or not the vector API is available.
+   */
+  @Test
+  public void sameNonceTest() {
+    HashValidator lambda = (h) -> (h.get(0) == 3) && (h.get(1) < 32);
+    HashValidator difficulty = new DifficultyValidator(10);
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    for (int i = 0; i < 4; i++) {
+      Transaction t = new Transaction("", "A".repeat(20 * i), i);
+      for (HashValidator v : new HashValidator[] {lambda, difficulty}) {
+        assertEquals(new Block(i, t, ph, v).getNonce(),
+            new VectorMiner().mine(i, t, ph, v).getNonce(),
+            "M: same nonce for block " + i);
+      } // for
+    } // for
+  } // sameNonceTest()
+} // class TestVectorMiner